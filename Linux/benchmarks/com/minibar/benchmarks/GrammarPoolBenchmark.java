@@ -0,0 +1,54 @@
+package com.minibar.benchmarks;
+
+import com.minibar.model.GrammarPool;
+import org.grammaticalframework.pgf.PGF;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing throughput of a GrammarPool as replicas are added, each parse on the next sentence of a small corpus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GrammarPoolBenchmark {
+    private static final int BATCH = 256;   //Parses per invocation, enough to keep every replica busy
+    private static final String LANGUAGE = "FoodsEng";
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int replicas;
+
+    private GrammarPool pool;
+    private String category;
+    private final List<String> sentences = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        pool = new GrammarPool(BenchmarkData.FOODS, replicas);
+        PGF grammar = pool.getReplicas().get(0).getGrammar();
+        category = grammar.getStartCat();
+        for (int words = 4; words <= 12; words++) sentences.add(BenchmarkData.sentence(grammar, LANGUAGE, words));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parse() {
+        List<CompletableFuture<List<String>>> parses = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            parses.add(pool.parse(LANGUAGE, category, sentences.get(i % sentences.size()), 1));
+        CompletableFuture.allOf(parses.toArray(new CompletableFuture<?>[0])).join();
+    }
+}
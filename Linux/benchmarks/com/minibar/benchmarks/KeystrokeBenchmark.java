@@ -0,0 +1,127 @@
+package com.minibar.benchmarks;
+
+import com.minibar.model.Prediction;
+import com.minibar.model.SuggestionCursor;
+import com.minibar.model.SymbolTable;
+import com.minibar.model.WordHistory;
+import org.grammaticalframework.pgf.PGF;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done on each keystroke, letter by letter with the completions cached as the application has them.
+ * Run with the allocation profiler to see the bytes allocated per keystroke, gc.alloc.rate.norm:
+ * make benchmark ARGS="KeystrokeBenchmark -prof gc"
+ * The ranking of the suggestions is measured by keystrokes saved with com.minibar.cli.RankingEvaluator instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeystrokeBenchmark {
+    private static final int SUGGESTIONS = 9;   //A row of suggestion buttons
+    @Param({"FoodsEng", "LetterEng"})
+    public String language;
+
+    private Prediction prediction;
+    private String category, sentence;
+    private String[] texts, partialWords;   //What is typed at each keystroke
+    private WordHistory history;
+    private int[] vocabulary;
+    private List<String> vocabularyWords;
+
+    @Setup
+    public void setUp() throws FileNotFoundException {
+        PGF grammar = PGF.readPGF(BenchmarkData.grammarOf(language));
+        prediction = new Prediction(grammar);
+        category = grammar.getStartCat();
+        sentence = BenchmarkData.sentence(grammar, language, 8);
+        List<String> texts = new ArrayList<>(), partialWords = new ArrayList<>();
+        String text = "";
+        for (String word : sentence.split(" ")) {
+            for (int letters = 0; letters <= word.length(); letters++) {
+                texts.add(text);
+                partialWords.add(word.substring(0, letters));
+            }
+            text = text.isEmpty() ? word : text + " " + word;
+        }
+        this.texts = texts.toArray(new String[0]);
+        this.partialWords = partialWords.toArray(new String[0]);
+        for (int i = 0; i < this.texts.length; i++)     //Fill the completion cache
+            prediction.predictNextWord(this.texts[i], this.partialWords[i], language, category);
+
+        SymbolTable symbols = SymbolTable.of(grammar.getAbstractName());
+        history = new WordHistory(WordHistory.DEFAULT_CAPACITY, symbols);
+        vocabularyWords = Arrays.asList(sentence.split(" "));
+        vocabulary = new int[vocabularyWords.size()];
+        for (int i = 0; i < vocabulary.length; i++) vocabulary[i] = symbols.intern(vocabularyWords.get(i));
+    }
+
+    /**
+     * Typing the sentence letter by letter, suggesting words after every letter
+     */
+    @Benchmark
+    public void typeSentence(Blackhole blackhole) {
+        for (int i = 0; i < texts.length; i++)
+            blackhole.consume(prediction.predictNextWord(texts[i], partialWords[i], language, category));
+    }
+
+    /**
+     * Typing the sentence letter by letter, picking the best row of suggestions after every letter
+     */
+    @Benchmark
+    public void typeSentenceBest(Blackhole blackhole) {
+        for (int i = 0; i < texts.length; i++)
+            blackhole.consume(prediction.suggest(texts[i], partialWords[i], language, category, SUGGESTIONS));
+    }
+
+    /**
+     * Typing the sentence letter by letter, opening the suggestions and taking their first row after every letter,
+     * as the application does
+     */
+    @Benchmark
+    public void typeSentenceLazily(Blackhole blackhole) {
+        SuggestionCursor open = null;
+        for (int i = 0; i < texts.length; i++) {
+            SuggestionCursor next = prediction.openSuggestions(texts[i], partialWords[i], language, category);
+            if (open != null) open.close();     //After opening the next, which may narrow it down
+            open = next;
+            blackhole.consume(open.next(SUGGESTIONS));
+        }
+        if (open != null) open.close();
+    }
+
+    /**
+     * Storing the words of a translated sentence in the history
+     */
+    @Benchmark
+    public void storeWords() {
+        prediction.storeWords(sentence);
+    }
+
+    /**
+     * Ranking the words of the sentence by the history, by their IDs
+     */
+    @Benchmark
+    public int[] rankIds() {
+        for (int id : vocabulary) history.use(id);
+        return history.rank(vocabulary, vocabulary.length);
+    }
+
+    /**
+     * Ranking the words of the sentence by the history, by their strings
+     */
+    @Benchmark
+    public ArrayList<String> rankWords() {
+        for (String word : vocabularyWords) history.use(word);
+        return history.rank(vocabularyWords);
+    }
+}
@@ -0,0 +1,40 @@
+package com.minibar.benchmarks;
+
+import com.minibar.controller.SentenceController;
+import com.minibar.model.Sentence;
+import org.grammaticalframework.pgf.PGF;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of random sentences for the "Random" button, for each language.
+ * The sentences are random, so their length varies from one call to the next.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomSentenceBenchmark {
+    @Param({"FoodsEng", "FoodsGer", "FoodsFin", "LetterEng", "LetterFre"})
+    public String language;
+
+    private PGF grammar;
+    private String category;
+
+    @Setup
+    public void setUp() throws FileNotFoundException {
+        grammar = PGF.readPGF(BenchmarkData.grammarOf(language));
+        category = grammar.getStartCat();
+    }
+
+    @Benchmark
+    public Sentence randomSentence() {
+        SentenceController sentenceController = new SentenceController(new Sentence());
+        sentenceController.randomSentence(grammar, language, category);
+        return sentenceController.getSentence();
+    }
+}
@@ -0,0 +1,26 @@
+package com.minibar.benchmarks;
+
+import org.grammaticalframework.pgf.PGF;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken to load each of the bundled grammars
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadPGFBenchmark {
+    @Param({BenchmarkData.FOODS, BenchmarkData.LETTER})
+    public String grammar;
+
+    @Benchmark
+    public PGF readPGF() throws FileNotFoundException {
+        return PGF.readPGF(grammar);
+    }
+}
@@ -56,6 +56,8 @@ typedef struct {
 	jbyte *buf;
 } JInStream;
 
+#define JPGF_STREAM_BUFFER_SIZE (64*1024)
+
 static const uint8_t*
 jpgf_jstream_begin_buffer(GuInStream* self, size_t* sz_out, GuExn* err)
 {
@@ -67,6 +69,8 @@ jpgf_jstream_begin_buffer(GuInStream* self, size_t* sz_out, GuExn* err)
 		gu_raise(err, PgfExn);
 		return NULL;
 	}
+	if (sz < 0)		// end of stream
+		sz = 0;
 
 	jboolean isCopy;
 	jstream->buf = (*jstream->env)->GetByteArrayElements(jstream->env, jstream->buf_array, &isCopy);
@@ -103,7 +107,9 @@ jpgf_new_java_stream(JNIEnv* env, jobject java_stream, GuPool* pool)
 		return NULL;
 	}
 
-	jstream->buf_array = (*env)->NewByteArray(env, 1024);
+	// A large buffer, so that reading a grammar costs one upcall
+	// to Java per JPGF_STREAM_BUFFER_SIZE bytes instead of per kilobyte.
+	jstream->buf_array = (*env)->NewByteArray(env, JPGF_STREAM_BUFFER_SIZE);
 	if (!jstream->buf_array) {
 		return NULL;
 	}
@@ -147,6 +153,40 @@ Java_org_grammaticalframework_pgf_PGF_readPGF__Ljava_io_InputStream_2(JNIEnv *en
 	return (*env)->NewObject(env, cls, constrId, p2l(pool), p2l(pgf));
 }
 
+JNIEXPORT jobject JNICALL
+Java_org_grammaticalframework_pgf_PGF_readPGFDirect(JNIEnv *env, jclass cls, jobject jbuffer, jint offset, jint length)
+{
+	uint8_t* data = (*env)->GetDirectBufferAddress(env, jbuffer);
+	if (data == NULL) {
+		throw_string_exception(env, "java/lang/IllegalArgumentException", "The buffer is not direct");
+		return NULL;
+	}
+
+	GuPool* pool = gu_new_pool();
+	GuPool* tmp_pool = gu_local_pool();
+
+	// The reader works directly on the memory of the buffer,
+	// there are no copies and no calls back to Java.
+	GuIn* in = gu_data_in(data + offset, length, tmp_pool);
+
+	// Create an exception frame that catches all errors.
+	GuExn* err = gu_exn(tmp_pool);
+
+	// Read the PGF grammar.
+	PgfPGF* pgf = pgf_read_in(in, pool, tmp_pool, err);
+	if (!gu_ok(err)) {
+		throw_string_exception(env, "org/grammaticalframework/pgf/PGFError", "The grammar cannot be loaded");
+		gu_pool_free(pool);
+		gu_pool_free(tmp_pool);
+		return NULL;
+	}
+
+	gu_pool_free(tmp_pool);
+
+	jmethodID constrId = (*env)->GetMethodID(env, cls, "<init>", "(JJ)V");
+	return (*env)->NewObject(env, cls, constrId, p2l(pool), p2l(pgf));
+}
+
 JNIEXPORT jstring JNICALL 
 Java_org_grammaticalframework_pgf_PGF_getAbstractName(JNIEnv* env, jobject self)
 {
@@ -651,6 +691,8 @@ Java_org_grammaticalframework_pgf_Completer_complete(JNIEnv* env, jclass clazz,
 			throw_string_exception(env, "org/grammaticalframework/pgf/PGFError", msg);
 		} else if (gu_exn_caught(parse_err, PgfParseError)) {
 			throw_parse_error(env, (PgfParseError*) gu_exn_caught_data(parse_err));
+		} else {
+			throw_string_exception(env, "org/grammaticalframework/pgf/PGFError", "The completion failed");
 		}
 
 		gu_pool_free(pool);
@@ -708,6 +750,57 @@ Java_org_grammaticalframework_pgf_TokenIterator_fetchTokenProb(JNIEnv* env, jcla
 	return jtp;
 }
 
+// Not in the libraries shipped in lib/, which were built before it
+// and could not be rebuilt, so this function has never been compiled
+// or run. TokenIterator falls back to fetchTokenProb one at a time
+// when it is missing.
+JNIEXPORT jint JNICALL
+Java_org_grammaticalframework_pgf_TokenIterator_fetchTokenProbs(JNIEnv* env, jclass clazz, jlong enumRef, jobject jpool, jobjectArray jbuffer)
+{
+	GuEnum* res = (GuEnum*) l2p(enumRef);
+	GuPool* pool = get_ref(env, jpool);
+
+	jclass tp_class = (*env)->FindClass(env, "org/grammaticalframework/pgf/TokenProb");
+	jmethodID tp_constrId = (*env)->GetMethodID(env, tp_class, "<init>", "(DLjava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
+
+	// Consecutive tokens usually share the category and the function,
+	// in that case the Java strings are reused.
+	GuString cat = NULL, fun = NULL;
+	jstring jcat = NULL, jfun = NULL;
+
+	jsize size = (*env)->GetArrayLength(env, jbuffer);
+	jsize n_tps = 0;
+	while (n_tps < size) {
+		PgfTokenProb* tp = gu_next(res, PgfTokenProb*, pool);
+		if (tp == NULL)
+			break;
+
+		if (tp->cat != cat) {
+			if (jcat != NULL)
+				(*env)->DeleteLocalRef(env, jcat);
+			cat  = tp->cat;
+			jcat = gu2j_string(env, cat);
+		}
+		if (tp->fun != fun) {
+			if (jfun != NULL)
+				(*env)->DeleteLocalRef(env, jfun);
+			fun  = tp->fun;
+			jfun = gu2j_string(env, fun);
+		}
+
+		jstring jtok = gu2j_string(env, tp->tok);
+		jobject jtp  = (*env)->NewObject(env, tp_class, tp_constrId, (double) tp->prob, jtok, jcat, jfun);
+		if (jtp == NULL)
+			break;
+		(*env)->SetObjectArrayElement(env, jbuffer, n_tps++, jtp);
+
+		(*env)->DeleteLocalRef(env, jtp);
+		(*env)->DeleteLocalRef(env, jtok);
+	}
+
+	return n_tps;
+}
+
 JNIEXPORT jobject JNICALL 
 Java_org_grammaticalframework_pgf_ExprIterator_fetchExprProb
   (JNIEnv* env, jclass clazz, jlong enumRef, jobject jpool, jobject gr)
@@ -728,6 +821,37 @@ Java_org_grammaticalframework_pgf_ExprIterator_fetchExprProb
 	return jexpprob;
 }
 
+// Unverified, like fetchTokenProbs. ExprIterator falls back to
+// fetchExprProb when it is missing.
+JNIEXPORT jint JNICALL
+Java_org_grammaticalframework_pgf_ExprIterator_fetchExprProbs
+  (JNIEnv* env, jclass clazz, jlong enumRef, jobject jpool, jobject gr, jobjectArray jbuffer)
+{
+	GuEnum* res = (GuEnum*) l2p(enumRef);
+	GuPool* pool = get_ref(env, jpool);
+
+	jclass expprob_class = (*env)->FindClass(env, "org/grammaticalframework/pgf/ExprProb");
+	jmethodID methodId = (*env)->GetStaticMethodID(env, expprob_class, "mkExprProb", 
+	           "(Lorg/grammaticalframework/pgf/Pool;Lorg/grammaticalframework/pgf/PGF;JD)Lorg/grammaticalframework/pgf/ExprProb;");
+
+	jsize size = (*env)->GetArrayLength(env, jbuffer);
+	jsize n_eps = 0;
+	while (n_eps < size) {
+		PgfExprProb* ep = gu_next(res, PgfExprProb*, pool);
+		if (ep == NULL)
+			break;
+
+		jobject jexpprob = (*env)->CallStaticObjectMethod(env, expprob_class, methodId, 
+		           jpool, gr, p2l(gu_variant_to_ptr(ep->expr)), (double) ep->prob);
+		if (jexpprob == NULL)
+			break;
+		(*env)->SetObjectArrayElement(env, jbuffer, n_eps++, jexpprob);
+		(*env)->DeleteLocalRef(env, jexpprob);
+	}
+
+	return n_eps;
+}
+
 JNIEXPORT jstring JNICALL
 Java_org_grammaticalframework_pgf_Concr_linearize(JNIEnv* env, jobject self, jobject jexpr)
 {
@@ -1234,6 +1358,68 @@ Java_org_grammaticalframework_pgf_FullFormIterator_fetchFullFormEntry
 	return jentry;
 }
 
+// Unverified, like fetchTokenProbs. FullFormIterator falls back to
+// fetchFullFormEntry when it is missing.
+JNIEXPORT jint JNICALL
+Java_org_grammaticalframework_pgf_FullFormIterator_fetchFullFormEntries
+  (JNIEnv* env, jobject clazz, jlong enumRef, jobject jpool, jobject jconcr, jobjectArray jbuffer)
+{
+	GuEnum* res = (GuEnum*) l2p(enumRef);
+	GuPool* pool = get_ref(env, jpool);
+
+	jclass list_class = (*env)->FindClass(env, "java/util/ArrayList");
+	jmethodID list_constrId = (*env)->GetMethodID(env, list_class, "<init>", "()V");
+	jmethodID addId = (*env)->GetMethodID(env, list_class, "add", "(Ljava/lang/Object;)Z");
+
+	jclass an_class = (*env)->FindClass(env, "org/grammaticalframework/pgf/MorphoAnalysis");
+	jmethodID an_constrId = (*env)->GetMethodID(env, an_class, "<init>", "(Ljava/lang/String;Ljava/lang/String;D)V");
+
+	jclass entry_class = (*env)->FindClass(env, "org/grammaticalframework/pgf/FullFormEntry");
+	jmethodID entry_constrId = (*env)->GetMethodID(env, entry_class, "<init>", "(Ljava/lang/String;DLjava/util/List;)V");
+
+	GuPool* tmp_pool = gu_local_pool();
+	GuExn* err = gu_exn(tmp_pool);
+
+	jsize size = (*env)->GetArrayLength(env, jbuffer);
+	jsize n_entries = 0;
+	while (n_entries < size) {
+		PgfFullFormEntry* entry = gu_next(res, PgfFullFormEntry*, pool);
+		if (entry == NULL)
+			break;
+
+		GuString form = pgf_fullform_get_string(entry);
+
+		jobject analyses = (*env)->NewObject(env, list_class, list_constrId);
+
+		JMorphoCallback callback = { { jpgf_collect_morpho }, analyses, 0, env, addId, an_class, an_constrId };
+		pgf_fullform_get_analyses(entry, &callback.fn, err);
+		if (!gu_ok(err)) {
+			if (gu_exn_caught(err, PgfExn)) {
+				GuString msg = (GuString) gu_exn_caught_data(err);
+				throw_string_exception(env, "org/grammaticalframework/pgf/PGFError", msg);
+			} else {
+				throw_string_exception(env, "org/grammaticalframework/pgf/PGFError", "The lookup failed");
+			}
+			(*env)->DeleteLocalRef(env, analyses);
+			break;
+		}
+
+		jstring jform = gu2j_string(env, form);
+		jobject jentry = (*env)->NewObject(env, entry_class, entry_constrId, jform, - log(callback.prob), analyses);
+		if (jentry == NULL)
+			break;
+		(*env)->SetObjectArrayElement(env, jbuffer, n_entries++, jentry);
+
+		(*env)->DeleteLocalRef(env, jentry);
+		(*env)->DeleteLocalRef(env, jform);
+		(*env)->DeleteLocalRef(env, analyses);
+	}
+
+	gu_pool_free(tmp_pool);
+
+	return n_entries;
+}
+
 JNIEXPORT jboolean JNICALL
 Java_org_grammaticalframework_pgf_Concr_hasLinearization(JNIEnv* env, jobject self, jstring jid)
 {
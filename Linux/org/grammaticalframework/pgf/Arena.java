@@ -0,0 +1,119 @@
+package org.grammaticalframework.pgf;
+
+import java.util.*;
+
+/** A scope for the native memory used by the runtime.
+ * While an arena is open, every pool that the current thread allocates
+ * for parsing, completion, expressions and iterators belongs to it, and
+ * closing the arena frees all of them at once instead of waiting for the
+ * garbage collector:
+ * <pre>
+ * String translation = Arena.call(() -&gt; {
+ *     Expr e = concr.parse(startCat, s).iterator().next().getExpr();
+ *     return target.linearize(e);
+ * });
+ * </pre>
+ * An arena can also be opened with {@link #open()} in a try-with-resources
+ * statement, when the body needs the arena itself.
+ * Objects obtained inside the arena, for example {@link Expr}, must not be
+ * used after it is closed. Strings and other plain Java values can be kept.
+ * Arenas are confined to the thread which opened them and they nest.
+ */
+public final class Arena implements AutoCloseable {
+	private static final ThreadLocal<Arena> current = new ThreadLocal<Arena>();
+
+	private final Arena parent;
+	private final Thread owner;
+	private final ArrayList<Pool> pools;
+	private boolean closed;
+
+	private Arena(Arena parent) {
+		this.parent = parent;
+		this.owner  = Thread.currentThread();
+		this.pools  = new ArrayList<Pool>();
+	}
+
+	/** Opens a new arena on the current thread. */
+	public static Arena open() {
+		Arena arena = new Arena(current.get());
+		current.set(arena);
+		return arena;
+	}
+
+	/** Runs an action in a new arena, which is closed when it returns.
+	 * @return the result of the action.
+	 */
+	public static <T, E extends Exception> T call(Action<T, E> action) throws E {
+		Arena arena = open();
+		try {
+			return action.run();
+		} finally {
+			arena.close();
+		}
+	}
+
+	/** Runs a block in a new arena, which is closed when it returns. */
+	public static <E extends Exception> void run(Block<E> block) throws E {
+		Arena arena = open();
+		try {
+			block.run();
+		} finally {
+			arena.close();
+		}
+	}
+
+	/** An action with a result, run by {@link #call}. */
+	public interface Action<T, E extends Exception> {
+		T run() throws E;
+	}
+
+	/** An action without a result, run by {@link #run}. */
+	public interface Block<E extends Exception> {
+		void run() throws E;
+	}
+
+	/** Returns the number of pools owned by this arena so far. */
+	public int size() {
+		return pools.size();
+	}
+
+	/** Frees all the pools of the arena, the most recent one first. */
+	public void close() {
+		if (closed)
+			return;
+		if (Thread.currentThread() != owner || current.get() != this)
+			throw new IllegalStateException("Arenas must be closed by their thread, innermost first");
+		closed = true;
+		if (parent == null)
+			current.remove();
+		else
+			current.set(parent);
+		for (int i = pools.size()-1; i >= 0; i--) {
+			pools.get(i).close();
+		}
+		pools.clear();
+	}
+
+	static void register(Pool pool) {
+		Arena arena = current.get();
+		if (arena != null)
+			arena.pools.add(pool);
+	}
+
+	/** Returns the number of native pools which are not freed yet. */
+	public static long getLivePools() {
+		return Pool.allocated.get() - Pool.freed.get();
+	}
+
+	/** Returns the number of native pools allocated so far. */
+	public static long getAllocatedPools() {
+		return Pool.allocated.get();
+	}
+
+	/** Returns the number of native pools which were never closed and
+	 * were freed by the garbage collector instead.
+	 */
+	public static long getReclaimedPools() {
+		return Pool.reclaimed.get();
+	}
+}
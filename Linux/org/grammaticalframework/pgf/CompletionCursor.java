@@ -0,0 +1,43 @@
+package org.grammaticalframework.pgf;
+
+import java.util.*;
+
+/** A cursor over the completions of an input, fetched from the parser
+ * as they are asked for, the most probable first. The parser state is
+ * freed by {@link #close()}, or as soon as the last token is fetched.
+ * <p>
+ * A cursor is not thread safe and should be used from one thread at a time.
+ */
+public class CompletionCursor implements AutoCloseable {
+	private final TokenIterator iter;
+	private int fetched;
+
+	CompletionCursor(TokenIterator iter) {
+		this.iter = iter;
+	}
+
+	/** Returns up to n more completions, fewer only if there are no more. */
+	public List<TokenProb> next(int n) {
+		ArrayList<TokenProb> tokens = new ArrayList<TokenProb>(Math.min(n, 64));
+		while (tokens.size() < n && iter.hasNext()) {
+			tokens.add(iter.next());
+		}
+		fetched += tokens.size();
+		return tokens;
+	}
+
+	/** Returns true if there may be more completions to fetch. */
+	public boolean hasMore() {
+		return iter.hasNext();
+	}
+
+	/** Returns the number of completions fetched so far. */
+	public int getFetched() {
+		return fetched;
+	}
+
+	/** Frees the parser state, no more completions are fetched. */
+	public void close() {
+		iter.close();
+	}
+}
@@ -0,0 +1,76 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Base class of the Java Flight Recorder events of the runtime.
+ * The events carry no stack trace and do nothing unless a recording
+ * is running, so they can stay enabled in production.
+ * <p>
+ * Operations which return an iterator last from the call until the
+ * last result fetched. Their event is committed once the iterator is
+ * used up or its pool is freed, which may happen on another thread.
+ */
+@Category("Grammatical Framework")
+@StackTrace(false)
+abstract class GrammarEvent extends Event {
+	@Label("Grammar")
+	String grammar;
+
+	@Label("Language")
+	String language;
+
+	@Label("Start Category")
+	String startCategory;
+
+	@Label("Input")
+	String input;
+
+	@Label("Input Length")
+	@Description("The characters of the input, or the bytes of a grammar file")
+	long inputLength;
+
+	@Label("Result Count")
+	int resultCount;
+
+	private transient boolean finished;
+
+	/** Starts timing an operation, if the event is enabled.
+	 * @param gr the grammar.
+	 * @param concr the concrete syntax, or null.
+	 * @param startCat the start category, or null.
+	 * @param s the input, or null.
+	 */
+	final void start(PGF gr, Concr concr, String startCat, String s) {
+		if (!isEnabled())
+			return;
+		grammar       = gr.getAbstractName();
+		language      = concr == null ? null : concr.getName();
+		startCategory = startCat;
+		input         = s;
+		inputLength   = s == null ? 0 : s.length();
+		begin();
+	}
+
+	/** Adds the results fetched by an iterator, the operation
+	 * lasts at least until they are fetched.
+	 */
+	final synchronized void fetched(int count) {
+		resultCount += count;
+		end();
+	}
+
+	/** Commits the event, only the first call has an effect. */
+	final synchronized void finish() {
+		if (finished)
+			return;
+		finished = true;
+		if (shouldCommit())
+			commit();
+	}
+
+	/** Finishes the event when the pool of an iterator is freed. */
+	final void finishWith(Pool pool) {
+		if (isEnabled())
+			pool.onFree(this::finish);
+	}
+}
@@ -10,14 +10,14 @@ class Lexicon implements Iterable<FullFormEntry> {
 	public Lexicon(Concr concr, String prefix) {
 		this.concr    = concr;
 		this.prefix   = prefix;
-		this.iter     = lookupWordPrefix(concr, prefix);
+		this.iter     = doLookup();
 	}
 
 	public Iterator<FullFormEntry> iterator() {
 		if (iter == null) {
 			// If someone has asked for a second iterator over
 			// the same parse results then we have to parse again.
-			return lookupWordPrefix(concr, prefix);
+			return doLookup();
 		} else {
 			FullFormIterator tmp_iter = iter;
 			iter = null;
@@ -25,5 +25,13 @@ class Lexicon implements Iterable<FullFormEntry> {
 		}
 	}
 
+	private FullFormIterator doLookup() {
+		LexiconEvent event = new LexiconEvent();
+		event.start(concr.gr, concr, null, prefix);
+		FullFormIterator iter = lookupWordPrefix(concr, prefix);
+		iter.record(event);
+		return iter;
+	}
+
 	static private native FullFormIterator lookupWordPrefix(Concr concr, String prefix);
 }
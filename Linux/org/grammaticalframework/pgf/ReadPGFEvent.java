@@ -0,0 +1,28 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Loading of a grammar, the result count is its number of languages.
+ * The native readPGF methods record nothing, a caller which uses them
+ * begins the event before the load and calls {@link #loaded} after it.
+ */
+@Name("org.grammaticalframework.pgf.ReadPGF")
+@Label("Grammar Load")
+public class ReadPGFEvent extends GrammarEvent {
+	/** Commits the event of a grammar load.
+	 * @param gr the grammar loaded.
+	 * @param path the file it was read from, or null.
+	 * @param bytes the size of the grammar, or 0 if not known.
+	 * @return the grammar. */
+	public PGF loaded(PGF gr, String path, long bytes) {
+		end();
+		if (shouldCommit()) {
+			grammar     = gr.getAbstractName();
+			input       = path;
+			inputLength = bytes;
+			resultCount = gr.getLanguages().size();
+			commit();
+		}
+		return gr;
+	}
+}
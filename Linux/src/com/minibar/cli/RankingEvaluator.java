@@ -0,0 +1,155 @@
+package com.minibar.cli;
+
+import com.minibar.model.NgramModel;
+import com.minibar.model.Prediction;
+import org.grammaticalframework.pgf.PGF;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how well the suggestions are ranked, as the keystrokes saved typing a test corpus. Each word is typed
+ * letter by letter until it is among the first suggestions, then picked with one more keystroke; a word never
+ * suggested costs its letters and a space. The test corpus is typed three times: ranked by the grammar's
+ * probabilities alone, then with the n-gram model trained on the training corpus, then learning each test sentence
+ * once it is typed, as the application does. The time per keystroke is reported with each.
+ * <p>
+ * The corpora have one sentence per line, e.g. a column of the output of CorpusGenerator.
+ * <p>
+ * Usage: java -cp bin com.minibar.cli.RankingEvaluator --grammar grammars/Foods.pgf --language FoodsEng
+ * --train train.txt --test test.txt [--limit 9]
+ */
+public class RankingEvaluator {
+    private final Prediction prediction;
+    private final String language, category;
+    private final int limit;
+
+    /**
+     * @param grammar  is the grammar typed with
+     * @param language is the language typed in
+     * @param limit    is the number of suggestions shown
+     */
+    public RankingEvaluator(PGF grammar, String language, int limit) {
+        this.prediction = new Prediction(grammar, new ArrayList<>());   //No history, only the ranking is measured
+        this.language = language;
+        this.category = grammar.getStartCat();
+        this.limit = limit;
+    }
+
+    /**
+     * @return the n-gram model the suggestions are ranked by
+     */
+    public NgramModel getModel() {
+        return prediction.getModel(language);
+    }
+
+    /**
+     * Types the sentences
+     *
+     * @param sentences are the sentences, words separated by spaces
+     * @param learn     is whether each sentence is learnt once typed
+     * @return the keystrokes typed and saved
+     */
+    public Result type(List<String> sentences, boolean learn) {
+        Result result = new Result();
+        for (String sentence : sentences) {
+            String text = "";
+            for (String word : sentence.trim().split(" +")) {
+                if (word.isEmpty()) continue;
+                result.characters += word.length() + 1;     //With the space after it
+                int letters = 0;
+                while (true) {
+                    long start = System.nanoTime();
+                    List<String> suggestions = prediction.suggest(text, word.substring(0, letters), language, category, limit);
+                    result.nanos += System.nanoTime() - start;
+                    result.suggestions++;
+                    if (suggestions.contains(word)) {
+                        result.keystrokes += letters + 1;   //Picked
+                        result.suggested++;
+                        break;
+                    }
+                    if (letters == word.length()) {
+                        result.keystrokes += letters + 1;   //Typed out
+                        break;
+                    }
+                    letters++;
+                }
+                result.words++;
+                text = text.isEmpty() ? word : text + " " + word;
+            }
+            if (learn) prediction.learn(language, sentence.trim());
+        }
+        return result;
+    }
+
+    /**
+     * Keystrokes typed for a corpus
+     */
+    public static final class Result {
+        private long characters, keystrokes, words, suggested, suggestions, nanos;
+
+        /**
+         * @return the fraction of the characters that did not have to be typed
+         */
+        public double getKeystrokesSaved() {
+            return characters == 0 ? 0 : 1 - (double) keystrokes / characters;
+        }
+
+        /**
+         * @return the fraction of the words picked from the suggestions
+         */
+        public double getWordsSuggested() {
+            return words == 0 ? 0 : (double) suggested / words;
+        }
+
+        /**
+         * @return the mean time taken to suggest words, in microseconds
+         */
+        public double getMicrosPerKeystroke() {
+            return suggestions == 0 ? 0 : nanos / 1e3 / suggestions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f%% keystrokes saved, %.1f%% of the words suggested, %.1f us per keystroke",
+                    getKeystrokesSaved() * 100, getWordsSuggested() * 100, getMicrosPerKeystroke());
+        }
+    }
+
+    /**
+     * @param args are the command line options, see usage()
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) usage("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("grammar") || !options.containsKey("language") || !options.containsKey("test"))
+            usage("--grammar, --language and --test are required");
+
+        PGF grammar = PGF.readPGF(Paths.get(options.get("grammar")));
+        RankingEvaluator evaluator = new RankingEvaluator(grammar, options.get("language"),
+                Integer.parseInt(options.getOrDefault("limit", "9")));
+        List<String> test = Files.readAllLines(Paths.get(options.get("test")), StandardCharsets.UTF_8);
+        System.out.println("Grammar probabilities: " + evaluator.type(test, false));
+        if (options.containsKey("train")) {
+            int sentences = evaluator.getModel().train(Paths.get(options.get("train")));
+            System.out.println("With " + sentences + " training sentences: " + evaluator.type(test, false));
+        }
+        System.out.println("Learning each sentence typed: " + evaluator.type(test, true));
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: RankingEvaluator --grammar <file.pgf> --language <language> --test <file>"
+                + " [--train <file>] [--limit <n>]");
+        System.exit(2);
+    }
+}
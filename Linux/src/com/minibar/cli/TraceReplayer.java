@@ -0,0 +1,204 @@
+package com.minibar.cli;
+
+import com.minibar.controller.PredictionController;
+import com.minibar.controller.SentenceController;
+import com.minibar.model.Analysis;
+import com.minibar.model.KeystrokeTrace;
+import com.minibar.model.KeystrokeTrace.Keystroke;
+import com.minibar.model.Sentence;
+import com.minibar.model.Translation;
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.PGF;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays keystroke traces recorded by the application (started with -Dminibar.trace=trace.tsv) without the UI,
+ * and reports the latency of each kind of operation. Every session replays a trace on its own controllers, like a
+ * user typing on their own copy of the application, and the sessions run at the same time. A keystroke predicts the
+ * next word, ENTER parses the sentence and translates it, the same way MainController does.
+ * <p>
+ * Usage: java -cp bin com.minibar.cli.TraceReplayer --trace trace.tsv[,trace2.tsv...] [--sessions 4] [--speedup 1]
+ */
+public class TraceReplayer {
+    public static final String PREDICT = "predict", PARSE = "parse", TRANSLATE = "translate";
+
+    private final List<List<Keystroke>> traces;
+    private final Map<String, PGF> grammars = new HashMap<>();     //Shared by the sessions, like the registry does
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final int sessions;
+    private final double speedup;
+
+    /**
+     * Creates a replayer and loads the grammars the traces use
+     *
+     * @param traces   are the traces, session i replays trace i modulo their number
+     * @param sessions is the number of sessions replayed at the same time
+     * @param speedup  is how many times faster than recorded the keystrokes are typed, 0 to type without pauses
+     * @throws IOException if a grammar can not be loaded
+     */
+    public TraceReplayer(List<List<Keystroke>> traces, int sessions, double speedup) throws IOException {
+        if (traces.isEmpty() || sessions <= 0 || speedup < 0)
+            throw new IllegalArgumentException("At least one trace and session are needed, the speedup can not be negative");
+        this.traces = traces;
+        this.sessions = sessions;
+        this.speedup = speedup;
+        for (List<Keystroke> trace : traces) {
+            for (Keystroke keystroke : trace) {
+                if (!grammars.containsKey(keystroke.getGrammar()))
+                    grammars.put(keystroke.getGrammar(), PGF.readPGF(Paths.get(keystroke.getGrammar())));
+            }
+        }
+        for (String operation : new String[]{PREDICT, PARSE, TRANSLATE}) latencies.put(operation, new LatencyHistogram());
+    }
+
+    /**
+     * Replays the traces and waits for every session to finish
+     *
+     * @return the latencies of each kind of operation
+     * @throws IOException if the replay is interrupted or a session fails
+     */
+    public Map<String, LatencyHistogram> run() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(sessions, task -> {
+            Thread thread = new Thread(task, "trace-replay-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> replays = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                List<Keystroke> trace = traces.get(i % traces.size());
+                //Each session has its own word history, created here as the histories are registered in a shared map
+                Map<String, PredictionController> predictionControllers = new HashMap<>();
+                for (Map.Entry<String, PGF> grammar : grammars.entrySet())
+                    predictionControllers.put(grammar.getKey(), new PredictionController(grammar.getValue(), new ArrayList<>()));
+                replays.add(pool.submit(() -> {
+                    replay(trace, predictionControllers);
+                    return null;
+                }));
+            }
+            for (Future<?> replay : replays) replay.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replay interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    /**
+     * Replays a trace as one session, keeping the pauses between keystrokes
+     *
+     * @param trace                 is the trace to replay
+     * @param predictionControllers are the prediction controllers of the session, by grammar path
+     */
+    private void replay(List<Keystroke> trace, Map<String, PredictionController> predictionControllers) throws InterruptedException {
+        SentenceController sentenceController = new SentenceController(new Sentence());
+        long start = System.nanoTime();
+        for (Keystroke keystroke : trace) {
+            if (speedup > 0) {
+                long wait = start + (long) (keystroke.getMicros() * 1000 / speedup) - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            PGF grammar = grammars.get(keystroke.getGrammar());
+            PredictionController predictionController = predictionControllers.get(keystroke.getGrammar());
+            String lastWord = updateSentenceController(sentenceController, keystroke.getText());
+            if (keystroke.getType() == KeystrokeTrace.Type.ENTER) {
+                if (!lastWord.equals("")) sentenceController.appendWord(lastWord);
+                translate(grammar, sentenceController, predictionController, keystroke);
+            } else {
+                long begin = System.nanoTime();
+                predictionController.predictNextWord(sentenceController.getSentence().toString(), lastWord,
+                        keystroke.getFrom(), keystroke.getCategory());
+                latencies.get(PREDICT).record(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    /**
+     * Splits the text of the sentence field like MainController.updateSentenceController
+     *
+     * @return the word still being typed
+     */
+    private static String updateSentenceController(SentenceController sentenceController, String sentenceOnScreen) {
+        if (sentenceOnScreen.contains(" ")) {
+            sentenceController.setSentence(new Sentence(sentenceOnScreen.substring(0, sentenceOnScreen.lastIndexOf(" ") + 1)));
+            return sentenceOnScreen.substring(sentenceOnScreen.lastIndexOf(' ') + 1);
+        }
+        sentenceController.setSentence(new Sentence());
+        return sentenceOnScreen;
+    }
+
+    /**
+     * Parses the sentence once and translates it, like MainController.displayTranslations
+     */
+    private void translate(PGF grammar, SentenceController sentenceController, PredictionController predictionController,
+                           Keystroke keystroke) {
+        Arena.run(() -> {
+            long begin = System.nanoTime();
+            Analysis analysis = sentenceController.analyze(grammar, keystroke.getFrom(), keystroke.getCategory());
+            long parsed = System.nanoTime();
+            latencies.get(PARSE).record(parsed - begin);
+            if (!analysis.isComplete()) return;
+            predictionController.storeWords(sentenceController.getSentence().toString());
+            Translation translation = new Translation(grammar);
+            if (keystroke.getTo().equals("All")) translation.translateToAllLanguages(analysis);
+            else translation.translate(analysis, keystroke.getTo());
+            latencies.get(TRANSLATE).record(System.nanoTime() - parsed);
+        });
+    }
+
+    /**
+     * @param latencies are the latencies of each kind of operation
+     * @return a table of the percentiles of each kind of operation, in milliseconds
+     */
+    public static String report(Map<String, LatencyHistogram> latencies) {
+        StringBuilder report = new StringBuilder(String.format("%-10s %8s %9s %9s %9s %9s%n",
+                "operation", "count", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, LatencyHistogram> operation : latencies.entrySet()) {
+            LatencyHistogram histogram = operation.getValue();
+            report.append(String.format("%-10s %8d %9.2f %9.2f %9.2f %9.2f%n", operation.getKey(), histogram.getCount(),
+                    histogram.percentile(50), histogram.percentile(90), histogram.percentile(99), histogram.max()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Replays traces from the command line
+     *
+     * @param args are the command line options, see usage()
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) usage("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("trace")) usage("--trace is required");
+
+        List<List<Keystroke>> traces = new ArrayList<>();
+        for (String trace : options.get("trace").split(",")) traces.add(KeystrokeTrace.read(Paths.get(trace)));
+        TraceReplayer replayer = new TraceReplayer(traces, Integer.parseInt(options.getOrDefault("sessions", "1")),
+                Double.parseDouble(options.getOrDefault("speedup", "1")));
+        long start = System.nanoTime();
+        Map<String, LatencyHistogram> latencies = replayer.run();
+        System.out.printf("Replayed %d sessions in %.2f s%n", replayer.sessions, (System.nanoTime() - start) / 1e9);
+        System.out.print(report(latencies));
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: TraceReplayer --trace <file>[,<file>...] [--sessions <n>] [--speedup <x>, 0 for no pauses]");
+        System.exit(2);
+    }
+}
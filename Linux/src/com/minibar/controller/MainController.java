@@ -1,7 +1,15 @@
 package com.minibar.controller;
 
+import com.minibar.model.Analysis;
+import com.minibar.model.GrammarRegistry;
+import com.minibar.model.HistoryJournal;
+import com.minibar.model.KeystrokeTrace;
+import com.minibar.model.LanguageLoader;
+import com.minibar.model.ParallelLinearizer;
 import com.minibar.model.Sentence;
+import com.minibar.model.SuggestionCursor;
 import com.minibar.model.Translation;
+import com.minibar.model.TranslationMemory;
 import com.minibar.ui.ExpandableVBox;
 import com.minibar.ui.ParseTreeGraph;
 import com.minibar.ui.SentencePanel;
@@ -9,6 +17,7 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
@@ -19,9 +28,16 @@ import javafx.stage.Stage;
 import org.grammaticalframework.pgf.*;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 
 import static javafx.scene.input.KeyCode.ENTER;
 
@@ -31,13 +47,34 @@ import static javafx.scene.input.KeyCode.ENTER;
 public class MainController {
     private final HashMap<String, String> filePaths = new HashMap<>();
     private final SentenceController sentenceController = new SentenceController(new Sentence());
-    private final String historyFilePath = "./HistoryData.txt";
-    private ArrayList<String> words;
+    private final String historyFilePath = "./HistoryData.txt";     //Written by the versions before the journal
+    private final String historyJournalPath = "./HistoryData.journal";
+    private static final long PREDICTION_DELAY_MILLIS = 30;    //Wait for further keystrokes before predicting
+    private static final int SUGGESTIONS_PER_ROW = 9;
+    private static final int SUGGESTIONS_PER_PAGE = 3 * SUGGESTIONS_PER_ROW;     //Suggestions shown before "More"
+    private static final String TRACE_PROPERTY = "minibar.trace";   //File to record keystrokes to, if set
+    private ArrayList<String> words;    //Page of suggestions being displayed
     private String selectedCategory, lastWord = "";
     private HBox suggestionsHBox;
     private PGF grammar = null;
+    private String grammarPath;     //Path of the grammar currently loaded
+    private final GrammarRegistry grammarRegistry = new GrammarRegistry();  //Grammars loaded so far
+    private final Map<String, LanguageLoader> languageLoaders = new HashMap<>();  //Language loader of each grammar path
+    private volatile LanguageLoader languageLoader;     //Loader of the grammar in use, trimmed when memory runs low
+    private LanguageLoader.Hold selectedLanguages;      //Languages selected in the from and to choice boxes
     private PredictionController predictionController;
     private VBox suggestWordVBox;
+    private final Map<VBox, Analysis> analyses = new WeakHashMap<>();    //Analysis of the sentence translated on each panel
+    private final Map<VBox, CompletableFuture<Void>> linearizations = new WeakHashMap<>();  //Translations still being linearized
+    private final Map<VBox, CompletableFuture<Analysis>> confirmations = new WeakHashMap<>();  //Remembered translations being parsed again
+    private final String translationMemoryPath = "./TranslationMemory.tsv";
+    private final String corpusDirectoryPath = "./Corpora";     //Sentences the suggestions are ranked by, per grammar and language
+    private TranslationMemory translationMemory;    //Translations of the sentences translated before
+    private String grammarFingerprint;  //Fingerprint of the grammar in use, for the translation memory
+    private HistoryJournal historyJournal;      //Journal of the words stored in the histories
+    private KeystrokeTrace.Recorder traceRecorder;      //Records the keystrokes, when asked to
+    private final Map<VBox, Integer> panelNumbers = new WeakHashMap<>();   //Number of each panel in the trace
+    private int panelCount;
     private Stage primaryStage;
     @FXML
     private ScrollPane mainScrollPane;
@@ -87,18 +124,83 @@ public class MainController {
         newSentencePanel(); //Add a panel
         makeResponsive();   //Makes controls responsive
         grammarChoiceBox.setOnAction(this::handleGrammarSelection);
+        fromChoiceBox.valueProperty().addListener((observable, previous, language) -> holdSelectedLanguages());
+        toChoiceBox.valueProperty().addListener((observable, previous, language) -> holdSelectedLanguages());
+        LanguageLoader.watchMemory(() -> {     //Unload the languages not in use when the heap runs low
+            LanguageLoader loader = languageLoader;
+            if (loader != null) loader.trim(0);
+        });
         loadHistoricalData();
+        openTranslationMemory();
+        PredictionController.setCorpusDirectory(Paths.get(corpusDirectoryPath));
+        startTraceRecording();
     }
 
     /**
-     * Loads cached data of users previous words type for each grammar
+     * Opens the translation memory, its file is read in the background
+     */
+    private void openTranslationMemory() {
+        try {
+            translationMemory = TranslationMemory.open(Paths.get(translationMemoryPath), TranslationMemory.DEFAULT_MAX_ENTRIES);
+        } catch (IOException e) {
+            System.out.println("Translation memory not available: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the keystrokes to a trace if the application was started with -Dminibar.trace=file,
+     * the trace can be replayed with com.minibar.cli.TraceReplayer
+     */
+    private void startTraceRecording() {
+        String tracePath = System.getProperty(TRACE_PROPERTY);
+        if (tracePath == null) return;
+        try {
+            traceRecorder = new KeystrokeTrace.Recorder(Paths.get(tracePath));
+            System.out.println("Recording keystrokes to " + tracePath);
+        } catch (IOException e) {
+            System.out.println("Could not record keystrokes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a keystroke on a sentence panel, if recording
+     *
+     * @param sentencePanel is the panel typed on
+     * @param type          is the kind of keystroke
+     */
+    private void recordKeystroke(VBox sentencePanel, KeystrokeTrace.Type type) {
+        if (traceRecorder == null || grammar == null) return;
+        Integer panel = panelNumbers.get(sentencePanel);
+        if (panel == null) {
+            panel = ++panelCount;
+            panelNumbers.put(sentencePanel, panel);
+        }
+        try {
+            traceRecorder.record(panel, type, grammarPath, fromChoiceBox.getValue(), toChoiceBox.getValue(),
+                    startCatChoiceBox.getValue(), sentenceField.getText());
+        } catch (IOException e) {
+            System.out.println("Stopped recording keystrokes: " + e.getMessage());
+            traceRecorder = null;
+        }
+    }
+
+    /**
+     * Opens the journal of the words previously typed with each grammar, their history is read from it in the
+     * background. The data cached by the versions before the journal is imported once
      */
     public void loadHistoricalData() {
+        boolean newJournal = !Files.exists(Paths.get(historyJournalPath));
         try {
-            FileInputStream fos = new FileInputStream(historyFilePath); //reads cached data file if present
-            ObjectInputStream ois = new ObjectInputStream(fos); //take file data as input stream
+            historyJournal = HistoryJournal.open(Paths.get(historyJournalPath));
             predictionController = new PredictionController();
-            predictionController.setHistoricalData((Map<String, ArrayList<String>>) ois.readObject()); // set file historical data to previous session
+            predictionController.setHistoryJournal(historyJournal);
+        } catch (IOException e) {
+            System.out.println("History journal not available: " + e.getMessage());
+            return;
+        }
+        if (!newJournal) return;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(historyFilePath))) { //reads cached data file if present
+            historyJournal.importHistory((Map<String, ArrayList<String>>) ois.readObject());
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Cached data not found");
         }
@@ -109,18 +211,103 @@ public class MainController {
     }
 
     /**
-     * Populates "from , to and startCat" choice boxes based on the grammar
+     * Loads the selected grammar on the background thread, showing the progress on the grammar label,
+     * then populates "from , to and startCat" choice boxes based on the grammar
      */
     public void populateChoiceBoxes() {
-        try {
-            String path = filePaths.get(grammarChoiceBox.getValue());
-            grammar = PGF.readPGF(path);
-            predictionController = new PredictionController(grammar);
-            displayCategories();
-            displayLanguages();
-        } catch (Exception e) {
-            e.printStackTrace();
+        String path = filePaths.get(grammarChoiceBox.getValue());
+        if (path == null) return;
+        grammarRegistry.load(path, progress -> Platform.runLater(() ->
+                        grammarLabel.setText(String.format("Grammar %d%% :  ", Math.round(progress * 100)))))
+                .whenComplete((loaded, error) -> Platform.runLater(() -> {
+                    grammarLabel.setText("Grammar :  ");
+                    if (error != null) {
+                        error.printStackTrace();
+                    } else if (path.equals(filePaths.get(grammarChoiceBox.getValue()))) {  //Still the selected grammar
+                        useGrammar(path, loaded);
+                    }
+                }));
+    }
+
+    /**
+     * Switches to a loaded grammar
+     *
+     * @param path   is the path of the grammar
+     * @param loaded is the grammar
+     */
+    private void useGrammar(String path, PGF loaded) {
+        PGF previous = grammar;
+        grammar = loaded;
+        if (predictionController != null) predictionController.cancelAllPredictions();   //Results for the old grammar
+        predictionController = new PredictionController(grammar);
+        LanguageLoader loader = languageLoaders.get(path);
+        if (loader == null || loader.getGrammar() != loaded) {   //Grammar not seen before or reloaded from disk
+            loader = new LanguageLoader(loaded, path, LanguageLoader.DEFAULT_BUDGET);
+            languageLoaders.put(path, loader);
+        }
+        languageLoader = loader;
+        if (loaded != previous) {   //Also when reloaded from the same path
+            predictionController.clearCompletionCache();    //Cached completions belong to the previous grammar
+            fingerprintGrammar(path, loaded);
+        }
+        grammarPath = path;
+        displayCategories();
+        displayLanguages();
+    }
+
+    /**
+     * Fingerprints the grammar file on a background thread, the translation memory is not used until it is done
+     *
+     * @param path   is the path of the grammar
+     * @param loaded is the grammar read from it
+     */
+    private void fingerprintGrammar(String path, PGF loaded) {
+        grammarFingerprint = null;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return TranslationMemory.fingerprint(Paths.get(path));
+            } catch (IOException e) {   //Translations are not remembered for this grammar
+                return null;
+            }
+        }).thenAcceptAsync(fingerprint -> {
+            if (grammar == loaded) grammarFingerprint = fingerprint;    //Not switched to another grammar since
+        }, Platform::runLater);
+    }
+
+    /**
+     * Loads the languages selected in the from and to choice boxes and keeps them loaded while they are selected.
+     * The languages selected before are released once the prediction running on them is done
+     */
+    private void holdSelectedLanguages() {
+        LanguageLoader.Hold previous = selectedLanguages;
+        selectedLanguages = null;
+        String from = fromChoiceBox.getValue(), to = toChoiceBox.getValue();
+        if (languageLoader != null && from != null) {
+            List<String> languages = new ArrayList<>();
+            languages.add(from);
+            if (to != null && !to.equals("All")) languages.add(to);
+            try {
+                selectedLanguages = languageLoader.acquire(languages);
+            } catch (RuntimeException e) {      //E.g. the file of a language is missing
+                System.out.println("Could not load " + languages + ": " + e.getMessage());
+            }
+        }
+        if (previous != null) {
+            if (predictionController != null && !previous.getNames().get(0).equals(from))
+                predictionController.cancelAllPredictions();    //Predictions in the previous language
+            PredictionController.afterRunningPrediction(previous::close);
+        }
+    }
+
+    /**
+     * @param analysis is the analysis of a sentence
+     * @return the language loader of the grammar the sentence was parsed with, null if there is none
+     */
+    private LanguageLoader languageLoaderOf(Analysis analysis) {
+        for (LanguageLoader loader : languageLoaders.values()) {
+            if (loader.getGrammar() == analysis.getGrammar()) return loader;
         }
+        return null;
     }
 
     /**
@@ -181,6 +368,8 @@ public class MainController {
             suggestionsHBox.setPadding(new Insets(10, 10, 10, 10));
             suggestionsHBox.setPrefHeight(45);
             suggestionsHBox.setPrefWidth(701);
+            predictionController.cancelPredictions(suggestWordVBox);    //Do not let late predictions replace translations
+            cancelLinearizations(suggestWordVBox);
             suggestWordVBox.getChildren().clear();
 
             displayTranslations(suggestWordVBox);
@@ -207,53 +396,144 @@ public class MainController {
      */
     public void handleClear() {
         sentenceField.clear();  //Clear sentence field
+        if (predictionController != null) predictionController.cancelPredictions(suggestWordVBox);
         suggestWordVBox.getChildren().clear();  //Remove translations/suggestions
+        analyses.remove(suggestWordVBox);
+        cancelLinearizations(suggestWordVBox);
         sentenceController.setSentence(new Sentence()); //Clear sentence
     }
 
     /**
-     * Calls sentence controller to translate sentence and renders the translations on the ui
+     * Calls sentence controller to translate sentence and renders the translations on the ui.
+     * A sentence translated before is shown at once from the translation memory and parsed again in the background
      *
      * @param clonedBox is the VBox to place translations on
      */
     private void displayTranslations(VBox clonedBox) {
-        if (sentenceController.isComplete(grammar, fromChoiceBox.getValue(), selectedCategory)) {
-            // store translated sentences
-            predictionController.storeWords(sentenceController.getSentence().toString());
-            Translation translation = new Translation(grammar);     //Translation object
-            if (toChoiceBox.getValue().equals("All")) {     //If translating to all languages
-                HashMap<String, String> translations = translation.translateToAllLanguages(sentenceController.getSentence(), fromChoiceBox.getValue(), selectedCategory);
-                Label abstractLabel = new Label("Abstract" + ": " + translations.get("Abstract"));  //Show abstract expression
-                abstractLabel.getStyleClass().add("translationLabel");
-                clonedBox.getChildren().add(abstractLabel);     //Add label to the ui
-                for (Map.Entry<String, String> entry : translations.entrySet()) {   //Loop through other translations
-                    if (!entry.getKey().equals("Abstract")) {   //Ignore the abstract expression
-                        Label translationLabel = new Label(entry.getKey() + ": " + entry.getValue());
-                        translationLabel.getStyleClass().add("translationLabel");
-                        Button graphBtn = new Button("");   //Button to show graph visualization
-                        graphBtn.getStyleClass().add("graph-btn");
-                        graphBtn.setOnAction(this::onGraphButtonClick);     //Event handler
-                        HBox translationHBox = new HBox();
-                        translationHBox.getChildren().addAll(graphBtn, translationLabel);   //Place label and button on HBox
-                        clonedBox.getChildren().add(translationHBox);   //Render on ui
-                    }
+        String sentence = sentenceController.getSentence().toString(), from = fromChoiceBox.getValue();
+        String to = toChoiceBox.getValue(), category = selectedCategory;
+        Collection<String> languages = to.equals("All") ? grammar.getLanguages().keySet() : Collections.singletonList(to);
+        TranslationMemory.Match match = translationMemory == null || grammarFingerprint == null ? null : translationMemory.lookup(grammarFingerprint,
+                from, category, sentence, TranslationMemory.DEFAULT_MIN_SIMILARITY);
+        if (match != null && match.isExact() && match.getTranslations().keySet().containsAll(languages)) {
+            Map<String, Label> translationLabels = displayTranslationRows(clonedBox, languages);
+            translationLabels.forEach((language, label) -> label.setText(language + ": " + match.getTranslations().get(language)));
+            PGF parsedWith = grammar;
+            CompletableFuture<Analysis> confirmation = CompletableFuture.supplyAsync(() ->
+                    Analysis.parse(parsedWith, new Sentence(sentence), from, category));  //Check it still parses
+            confirmations.put(clonedBox, confirmation);
+            confirmation.thenAcceptAsync(analysis -> {
+                if (confirmations.get(clonedBox) != confirmation || grammar != parsedWith) return;  //Panel cleared or translated again
+                confirmations.remove(clonedBox);
+                if (analysis.isComplete()) {
+                    linearizeTranslations(clonedBox, analysis, to, translationLabels);
+                } else {    //Remembered translations that no longer parse are never shown again
+                    translationMemory.remove(grammarFingerprint, from, category, sentence);
+                    clonedBox.getChildren().clear();
                 }
-            } else {        //If translating to only one sentence
-                HashMap<String, String> translatedSentence = translation.translate(sentenceController.getSentence(), fromChoiceBox.getValue(), toChoiceBox.getValue(), selectedCategory);
-                Label abstractLabel = new Label("Abstract" + ": " + translatedSentence.get("Abstract")); //Abstract expression
-                abstractLabel.getStyleClass().add("translationLabel");
-                Label toLabel = new Label(toChoiceBox.getValue() + ": " + translatedSentence.get(toChoiceBox.getValue()));  //Translation
-                toLabel.getStyleClass().add("translationLabel");
-                Button graphBtn = new Button("");   //Button for graph visualization
-                graphBtn.getStyleClass().add("graph-btn");
-                graphBtn.setOnAction(this::onGraphButtonClick); //Event handler
-                HBox translationHBox = new HBox();
-                translationHBox.getChildren().addAll(graphBtn, toLabel);
-                clonedBox.getChildren().add(translationHBox);
+            }, Platform::runLater);
+            return;
+        }
+        Analysis analysis = sentenceController.analyze(grammar, from, category);  //Parse once
+        if (analysis.isComplete()) {
+            linearizeTranslations(clonedBox, analysis, to, displayTranslationRows(clonedBox, languages));
+        } else if (match != null) {     //Show the translations of the most similar sentence translated before
+            Label similarLabel = new Label("Similar: " + match.getSentence());
+            similarLabel.getStyleClass().add("translationLabel");
+            clonedBox.getChildren().add(similarLabel);
+            for (String language : languages) {
+                String translation = match.getTranslations().get(language);
+                if (translation == null) continue;
+                Label translationLabel = new Label(language + ": " + translation);
+                translationLabel.getStyleClass().add("translationLabel");
+                clonedBox.getChildren().add(translationLabel);
             }
         }
     }
 
+    /**
+     * Adds the rows of the translations to a panel: the abstract expression, then one row with a graph button per
+     * language, filled in as the translations are ready
+     *
+     * @param clonedBox is the VBox to place translations on
+     * @param languages are the languages translated to
+     * @return the labels of the rows by language, and the label of the abstract expression under "Abstract"
+     */
+    private Map<String, Label> displayTranslationRows(VBox clonedBox, Collection<String> languages) {
+        Map<String, Label> translationLabels = new HashMap<>();
+        Label abstractLabel = new Label("Abstract: ");  //Show abstract expression
+        abstractLabel.getStyleClass().add("translationLabel");
+        clonedBox.getChildren().add(abstractLabel);     //Add label to the ui
+        translationLabels.put("Abstract", abstractLabel);
+        for (String language : languages) {
+            Label translationLabel = new Label(language + ": ");
+            translationLabel.getStyleClass().add("translationLabel");
+            translationLabels.put(language, translationLabel);
+            Button graphBtn = new Button("");   //Button to show graph visualization
+            graphBtn.getStyleClass().add("graph-btn");
+            graphBtn.setOnAction(this::onGraphButtonClick);     //Event handler
+            HBox translationHBox = new HBox();
+            translationHBox.getChildren().addAll(graphBtn, translationLabel);   //Place label and button on HBox
+            clonedBox.getChildren().add(translationHBox);   //Render on ui
+        }
+        return translationLabels;
+    }
+
+    /**
+     * Fills in the rows of the translations of a parsed sentence and remembers the translations
+     *
+     * @param clonedBox         is the VBox the translations are placed on
+     * @param analysis          is the analysis of the sentence, complete
+     * @param to                is the language translated to, or All
+     * @param translationLabels are the labels of the rows, see displayTranslationRows
+     */
+    private void linearizeTranslations(VBox clonedBox, Analysis analysis, String to, Map<String, Label> translationLabels) {
+        // store translated sentences, on the prediction thread so a running prediction does not hold up the UI
+        predictionController.storeWordsAsync(analysis.getSentence());
+        predictionController.learnAsync(analysis.getLanguage(), analysis.getSentence());
+        analyses.put(clonedBox, analysis);  //Reused by the graph buttons of this panel
+        String abstractExpr = analysis.getExpr().toString();
+        translationLabels.get("Abstract").setText("Abstract: " + abstractExpr);
+        Map<String, String> translations = new HashMap<>();
+        translations.put("Abstract", abstractExpr);
+        String fingerprint = grammarFingerprint;
+        if (to.equals("All")) {     //If translating to all languages
+            Map<String, Concr> languages = grammar.getLanguages();
+            LanguageLoader.Hold allLanguages = languageLoader.acquire(languages.keySet());   //Released once linearized
+            //Linearize to all the languages in parallel, showing each translation as soon as it is ready
+            linearizations.put(clonedBox, ParallelLinearizer.linearizeAll(analysis, languages, Platform::runLater,
+                    (language, linearization) -> {
+                        translationLabels.get(language).setText(language + ": " + linearization);
+                        translations.put(language, linearization);
+                        if (!language.equals(analysis.getLanguage())) predictionController.learnAsync(language, linearization);
+                    }, allLanguages::close).thenRun(() -> remember(fingerprint, analysis, translations)));
+        } else {        //If translating to only one sentence
+            HashMap<String, String> translatedSentence = new Translation(grammar).translate(analysis, to);
+            translationLabels.get(to).setText(to + ": " + translatedSentence.get(to));  //Translation
+            if (!to.equals(analysis.getLanguage())) predictionController.learnAsync(to, translatedSentence.get(to));
+            remember(fingerprint, analysis, translatedSentence);
+        }
+    }
+
+    /**
+     * Stores translations in the translation memory
+     */
+    private void remember(String fingerprint, Analysis analysis, Map<String, String> translations) {
+        if (translationMemory == null || fingerprint == null) return;
+        translationMemory.put(fingerprint, analysis.getLanguage(), analysis.getCategory(), analysis.getSentence(), translations);
+    }
+
+    /**
+     * Stops filling in the translations of a panel that are still being linearized or confirmed
+     *
+     * @param targetVBox is the VBox the translations are placed on
+     */
+    private void cancelLinearizations(VBox targetVBox) {
+        CompletableFuture<Void> pending = linearizations.remove(targetVBox);
+        if (pending != null) pending.cancel(false);
+        confirmations.remove(targetVBox);   //The parse runs to the end, its result is ignored
+    }
+
     /**
      * Event handler for the buttons to show graphical visualization of parse tree
      *
@@ -265,29 +545,43 @@ public class MainController {
         Label translationLabel = (Label) container.getChildren().get(1);    //Get label
         String textContent = translationLabel.getText();    //Get label's content
         String language = textContent.substring(0, textContent.indexOf(":"));   //Get language on that label
-        Concr targetLanguage = grammar.getLanguages().get(language);    //Concrete syntax of that language
-        Concr sourceLanguage = grammar.getLanguages().get(fromChoiceBox.getValue());    //Concrete syntax of the source language
+        Analysis analysis = analyses.get((VBox) container.getParent());  //Analysis of the panel, no need to parse again
+        if (analysis == null) return;
+        LanguageLoader loader = languageLoaderOf(analysis);
+        LanguageLoader.Hold hold = loader == null ? null : loader.acquire(language);   //Reloaded if it was unloaded
+        String graph;
         try {
-            Iterable<ExprProb> expressions = sourceLanguage.parse(selectedCategory, sentenceController.getSentence().toString());
-            Expr sentenceExpression = expressions.iterator().next().getExpr();  //Get the expression
-            String graph = targetLanguage.graphvizParseTree(sentenceExpression);    //Get the parse tree graph string
-            ParseTreeGraph parseTreeVisualization = new ParseTreeGraph(primaryStage, graph);
-            parseTreeVisualization.showGraph();     //Show graph visualization
-        } catch (ParseError e) {
-            e.printStackTrace();
+            graph = analysis.graphvizParseTree(language);    //Get the parse tree graph string
+        } finally {
+            if (hold != null) hold.close();
         }
+        ParseTreeGraph parseTreeVisualization = new ParseTreeGraph(primaryStage, graph);
+        parseTreeVisualization.showGraph();     //Show graph visualization
     }
 
     /**
      * Iterate through the suggested words and display them as clickable buttons
+     *
+     * @param targetVBox is the VBox to display the suggestions on
      */
-    public void displaySuggestions() {
+    public void displaySuggestions(VBox targetVBox) {
+        displaySuggestions(targetVBox, null);
+    }
+
+    /**
+     * Displays a page of suggested words as clickable buttons, below the pages displayed before. If the cursor has
+     * more, the page is followed by a "More" button that loads the next page from it.
+     *
+     * @param targetVBox is the VBox to display the suggestions on
+     * @param cursor     is the cursor the page came from, or null if there are no more pages
+     */
+    public void displaySuggestions(VBox targetVBox, SuggestionCursor cursor) {
         int index = 0;
         int numberOfHboxes = words.size();
-        if (numberOfHboxes % 9 == 0) {
-            numberOfHboxes = words.size() / 9;
+        if (numberOfHboxes % SUGGESTIONS_PER_ROW == 0) {
+            numberOfHboxes = words.size() / SUGGESTIONS_PER_ROW;
         } else {
-            numberOfHboxes = words.size() / 9 + 1;
+            numberOfHboxes = words.size() / SUGGESTIONS_PER_ROW + 1;
         }
         for (int j = 0; j < numberOfHboxes; j++) {
             suggestionsHBox = new HBox();
@@ -295,7 +589,7 @@ public class MainController {
             suggestionsHBox.setPadding(new Insets(10, 10, 10, 10));
             suggestionsHBox.setPrefHeight(45);
             suggestionsHBox.setPrefWidth(701);
-            for (int i = 0; i < 9; i++) {
+            for (int i = 0; i < SUGGESTIONS_PER_ROW; i++) {
                 if (index == words.size()) break;
                 Button suggestionButton = new Button(words.get(index));     //Create the button
                 suggestionButton.setId(words.get(index));           //Set the button's id
@@ -323,7 +617,25 @@ public class MainController {
                 suggestionButton.setPrefHeight(25);
                 suggestionsHBox.getChildren().addAll(suggestionButton);     //Put the button on the hbox
             }
-            suggestWordVBox.getChildren().add(suggestionsHBox);     //Display the suggestions on the VBox
+            targetVBox.getChildren().add(suggestionsHBox);     //Display the suggestions on the VBox
+        }
+        if (cursor != null) {     //There are more
+            HBox moreHBox = new HBox();
+            moreHBox.setPadding(new Insets(10, 10, 10, 10));
+            Button moreButton = new Button("More");
+            moreButton.getStyleClass().add("prediction-buttons");
+            moreButton.setPrefHeight(25);
+            moreButton.setOnAction(event -> {
+                targetVBox.getChildren().remove(moreHBox);      //Replaced by the next page
+                PredictionController controller = predictionController;
+                controller.moreAsync(targetVBox, cursor, SUGGESTIONS_PER_PAGE, Platform::runLater, (more, page) -> {
+                    if (controller != predictionController) return;     //Grammar changed in the meantime
+                    words = page;
+                    displaySuggestions(targetVBox, more);
+                });
+            });
+            moreHBox.getChildren().add(moreButton);
+            targetVBox.getChildren().add(moreHBox);
         }
     }
 
@@ -375,6 +687,7 @@ public class MainController {
         setSuggestWordVBox(sentencePanel);
         this.sentenceField = (TextField) event.getSource();
         updateSentenceController();
+        recordKeystroke(sentencePanel, event.getCode() == ENTER ? KeystrokeTrace.Type.ENTER : KeystrokeTrace.Type.KEY);
         if (event.getCode() == ENTER) { //user wants to translate sentence
             if (!lastWord.equals("")) sentenceController.appendWord(lastWord);
             performTranslations();
@@ -384,34 +697,56 @@ public class MainController {
     }
 
     /**
-     * filters suggested words array when user is typing
-     */
-    private void filterSuggestions() {
-        ArrayList<String> filteredWords = new ArrayList<>();
-        if (lastWord.length() > 0) { //do not filter suggestion , user has typed nothing
-            for (String eachWord : words) {
-                if (eachWord.length() >= lastWord.length())
-                    if (eachWord.substring(0, lastWord.length()).equals(lastWord)) filteredWords.add(eachWord);
-            }
-            words = filteredWords;
-        }
-    }
-
-    /**
-     * Gets predictions from the predictions controller
+     * Gets predictions from the predictions controller.
+     * The predictions are made on a background thread and displayed once ready, a newer keystroke on the same panel
+     * replaces a prediction that is still pending.
      */
     private void makePredictions() {
         if (!(grammar == null)) {
-            suggestWordVBox.getChildren().clear();      //Clear the VBox
             selectedCategory = startCatChoiceBox.getValue();    //Get selected category
             updateSentenceController();    //Get the sentence on active text field
-            //Get predicted words
-            words = predictionController.predictNextWord(sentenceController.getSentence().toString(), fromChoiceBox.getValue(), selectedCategory);
-            filterSuggestions();    //Filter suggested words by what user is typing
-            displaySuggestions(); //Display the predictions
+            VBox targetVBox = suggestWordVBox;  //Panel the predictions belong to
+            PredictionController controller = predictionController;
+            PredictionLatencyEvent latency = new PredictionLatencyEvent();
+            latency.begin();    //Timed from the keystroke
+            //Get the first page of predicted words, filtered by what user is typing
+            controller.suggestAsync(targetVBox, sentenceController.getSentence().toString(), lastWord,
+                    fromChoiceBox.getValue(), selectedCategory, SUGGESTIONS_PER_PAGE, PREDICTION_DELAY_MILLIS,
+                    Platform::runLater, (cursor, predictedWords) -> {
+                        if (controller != predictionController) return;     //Grammar changed in the meantime
+                        words = predictedWords;
+                        targetVBox.getChildren().clear();      //Clear the VBox
+                        displaySuggestions(targetVBox, cursor); //Display the predictions
+                        logLatency(targetVBox, latency, predictedWords.size());
+                    });
         }
     }
 
+    /**
+     * Records the time from the keystroke until the suggestions are laid out, on the next layout pulse
+     *
+     * @param targetVBox      is the panel the suggestions are shown in
+     * @param latency         was begun when the key was pressed
+     * @param suggestionCount is the number of suggestions shown
+     */
+    private void logLatency(VBox targetVBox, PredictionLatencyEvent latency, int suggestionCount) {
+        Scene scene = targetVBox.getScene();
+        if (scene == null || !latency.isEnabled()) return;
+        latency.language = fromChoiceBox.getValue();
+        latency.category = selectedCategory;
+        latency.inputLength = sentenceField.getText().length();
+        latency.suggestionCount = suggestionCount;
+        Runnable[] listener = new Runnable[1];
+        boolean[] logged = new boolean[1];
+        listener[0] = () -> {
+            if (logged[0]) return;  //Only measure the first pulse
+            logged[0] = true;
+            latency.commit();
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));  //Not while the pulse runs
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
     /**
      * Makes the controls on the UI responsive by binding them to their parent nodes
      */
@@ -512,12 +847,26 @@ public class MainController {
      * Quits the application and caches data
      */
     public void quit() {
-        try {
-            FileOutputStream fos = new FileOutputStream(historyFilePath);
-            ObjectOutputStream oss = new ObjectOutputStream(fos);
-            oss.writeObject(predictionController.getHistoricalData());
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (historyJournal != null) {   //Every sentence is journaled as it is stored, nothing is left to save
+            try {
+                historyJournal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (translationMemory != null) {
+            try {
+                translationMemory.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (traceRecorder != null) {
+            try {
+                traceRecorder.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
         Platform.exit();
     }
@@ -0,0 +1,28 @@
+package com.minibar.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Time from a keystroke until its suggestions are laid out on screen, recorded by Java Flight Recorder.
+ * The event does nothing unless a recording is running.
+ */
+@Name("com.minibar.PredictionLatency")
+@Label("Prediction Latency")
+@Category("Minibar")
+@StackTrace(false)
+class PredictionLatencyEvent extends jdk.jfr.Event {
+    @Label("Language")
+    String language;
+
+    @Label("Category")
+    String category;
+
+    @Label("Input Length")
+    int inputLength;
+
+    @Label("Suggestion Count")
+    int suggestionCount;
+}
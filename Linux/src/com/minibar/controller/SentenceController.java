@@ -1,12 +1,17 @@
 package com.minibar.controller;
 
+import com.minibar.model.Analysis;
+import com.minibar.model.ExprSampler;
 import com.minibar.model.Sentence;
+import org.grammaticalframework.pgf.Arena;
 import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.Expr;
 import org.grammaticalframework.pgf.PGF;
 import org.grammaticalframework.pgf.ParseError;
 import org.grammaticalframework.pgf.TokenProb;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -14,6 +19,7 @@ import java.util.Random;
  */
 public class SentenceController {
     private Sentence sentence;
+    private final Random random = new Random();
 
     /**
      * Creates a SentenceController object to control the Sentence object provided
@@ -62,45 +68,79 @@ public class SentenceController {
      * @return true if a sentence is complete otherwise false
      */
     public boolean isComplete(PGF grammar, String language, String category) {
-        Concr sourceLanguage = grammar.getLanguages().get(language);
-        try {
-            sourceLanguage.parse(category, sentence.toString());
-            return true;
-        } catch (ParseError e) {    //Sentence could not be parsed : invalid/incomplete
-            return false;
-        }
+        return Arena.call(() -> analyze(grammar, language, category).isComplete());   //Only the answer is kept, free the parse now
+    }
+
+    /**
+     * Parses the sentence once, the result tells if the sentence is complete and can be used to translate it
+     *
+     * @param grammar  is the grammar being used
+     * @param language is the language of the sentence
+     * @param category is the category being used
+     * @return the analysis of the sentence
+     */
+    public Analysis analyze(PGF grammar, String language, String category) {
+        return Analysis.parse(grammar, sentence, language, category);
     }
 
     /**
-     * Generate a random sentence
+     * Generate a random sentence, by sampling an abstract tree with the probabilities of the grammar and
+     * linearizing it once, so the time taken does not grow with the length of the sentence
      *
      * @param grammar  is the grammar being used
      * @param language is the language the random sentence is generated in
      * @param category is the category being used
      */
     public void randomSentence(PGF grammar, String language, String category) {
-        Random random = new Random();
+        ExprSampler sampler = ExprSampler.of(grammar);
+        if (!sampler.canSample(category)) {     //e.g. a category only made by higher-order functions
+            randomWalk(grammar, language, category);
+            return;
+        }
+        Arena.run(() -> {   //Only the words are kept
+            Expr tree = sampler.sample(category, ExprSampler.DEFAULT_MAX_DEPTH, random);
+            sentence = new Sentence(Analysis.linearize(grammar.getLanguages().get(language), tree));
+        });
+    }
+
+    /**
+     * Generate a random sentence word by word, picking each word among the completions of the words before it
+     *
+     * @param grammar  is the grammar being used
+     * @param language is the language the random sentence is generated in
+     * @param category is the category being used
+     */
+    private void randomWalk(PGF grammar, String language, String category) {
         sentence = new Sentence(); //clear sentence
-        String text, randomWord;
+        String randomWord;
         int randomIndex, suggestionsLen;
-        do {
-            ArrayList<String> suggestions = new ArrayList<>();
+        try {
             Concr sourceLanguage = grammar.getLanguages().get(language);
-            text = sentence.toString();
-            try {
-                Iterable<TokenProb> tokenProbs = sourceLanguage.complete(category, text, "");
-                for (TokenProb token : tokenProbs)
-                    suggestions.add(token.getToken());   //Add legal word
+            List<TokenProb> suggestions = complete(sourceLanguage, category, "");
+            do {
                 suggestionsLen = suggestions.size();
                 if (suggestionsLen == 0) break;//no suggestions break;
                 randomIndex = random.nextInt(suggestionsLen);
-                randomWord = suggestions.get(randomIndex);
+                randomWord = suggestions.get(randomIndex).getToken();
                 if (sentence.toString().length() == 0) sentence.addWord(randomWord);
                 else sentence.addWord(" " + randomWord);
-            } catch (ParseError e) {
-                break;
-            }
-        } while (true);
+                suggestions = complete(sourceLanguage, category, sentence.toString());
+            } while (true);
+        } catch (ParseError e) {
+            //Keep the words generated so far
+        }
     }
-}
 
+    /**
+     * @param language is the concrete syntax the sentence is in
+     * @param category is the category being used
+     * @param text     is the sentence so far, parsed again on every call
+     * @return the legal next words
+     */
+    private static List<TokenProb> complete(Concr language, String category, String text) throws ParseError {
+        List<TokenProb> suggestions = new ArrayList<>();
+        for (TokenProb token : language.complete(category, text, ""))
+            suggestions.add(token);
+        return suggestions;
+    }
+}
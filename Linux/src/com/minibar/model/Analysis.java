@@ -0,0 +1,180 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.Expr;
+import org.grammaticalframework.pgf.ExprProb;
+import org.grammaticalframework.pgf.LinearizeEvent;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of parsing a sentence once: its abstract expressions, whether it is complete and its linearizations.
+ * The completeness check, the translations and the parse tree graphs of a sentence all share one Analysis,
+ * so the sentence is never parsed more than once.
+ */
+public class Analysis {
+    public static final int MAX_EXPRESSIONS = 10;     //Parses kept for ambiguous sentences
+
+    private final PGF grammar;
+    private final String sentence;
+    private final String language;
+    private final String category;
+    private final List<Expr> expressions;
+    private final Map<String, String> linearizations = new HashMap<>();   //Linearizations computed so far
+
+    /**
+     * Creates an analysis from expressions that were already parsed
+     *
+     * @param grammar     is the grammar the sentence was parsed with
+     * @param sentence    is the sentence that was parsed
+     * @param language    is the language of the sentence
+     * @param category    is the start category
+     * @param expressions are the abstract expressions of the sentence, most probable first
+     */
+    public Analysis(PGF grammar, String sentence, String language, String category, List<Expr> expressions) {
+        this.grammar = grammar;
+        this.sentence = sentence;
+        this.language = language;
+        this.category = category;
+        this.expressions = Collections.unmodifiableList(new ArrayList<>(expressions));
+    }
+
+    /**
+     * Parses a sentence
+     *
+     * @param grammar  is the grammar being used
+     * @param sentence is the sentence to parse
+     * @param language is the language of the sentence
+     * @param category is the start category
+     * @return the analysis of the sentence, with no expressions if it could not be parsed
+     */
+    public static Analysis parse(PGF grammar, Sentence sentence, String language, String category) {
+        return parse(grammar, grammar.getLanguages().get(language), sentence, category, MAX_EXPRESSIONS);
+    }
+
+    /**
+     * Parses a sentence with a concrete syntax that was already looked up, e.g. when parsing many sentences
+     *
+     * @param grammar        is the grammar being used
+     * @param sourceLanguage is the concrete syntax of the sentence
+     * @param sentence       is the sentence to parse
+     * @param category       is the start category
+     * @param maxExpressions is the number of parses to keep, 1 if only the most probable one is needed
+     * @return the analysis of the sentence, with no expressions if it could not be parsed
+     */
+    public static Analysis parse(PGF grammar, Concr sourceLanguage, Sentence sentence, String category, int maxExpressions) {
+        List<Expr> expressions = new ArrayList<>();
+        try {
+            Iterator<ExprProb> parses = sourceLanguage.parse(category, sentence.toString()).iterator();
+            while (expressions.size() < maxExpressions && parses.hasNext())
+                expressions.add(parses.next().getExpr());
+        } catch (ParseError e) {    //Sentence could not be parsed : invalid/incomplete
+            expressions.clear();
+        }
+        return new Analysis(grammar, sentence.toString(), sourceLanguage.getName(), category, expressions);
+    }
+
+    /**
+     * @return true if the sentence could be parsed
+     */
+    public boolean isComplete() {
+        return !expressions.isEmpty();
+    }
+
+    public PGF getGrammar() {
+        return grammar;
+    }
+
+    public String getSentence() {
+        return sentence;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return the abstract expressions of the sentence, most probable first
+     */
+    public List<Expr> getExpressions() {
+        return expressions;
+    }
+
+    /**
+     * @return the most probable abstract expression, or null if the sentence is not complete
+     */
+    public Expr getExpr() {
+        return isComplete() ? expressions.get(0) : null;
+    }
+
+    /**
+     * Linearizes the most probable expression, remembering the result
+     *
+     * @param to is the language to linearize to
+     * @return the linearization, or null if the sentence is not complete
+     */
+    public String linearize(String to) {
+        return linearize(grammar.getLanguages().get(to));
+    }
+
+    /**
+     * Linearizes the most probable expression, remembering the result.
+     * Can be called from several threads at once, the lock is not held while linearizing.
+     *
+     * @param to is the concrete syntax to linearize to
+     * @return the linearization, or null if the sentence is not complete
+     */
+    public String linearize(Concr to) {
+        if (!isComplete()) return null;
+        String name = to.getName();
+        synchronized (linearizations) {
+            if (linearizations.containsKey(name)) return linearizations.get(name);
+        }
+        String linearization = linearize(to, getExpr());
+        synchronized (linearizations) {
+            linearizations.put(name, linearization);
+        }
+        return linearization;
+    }
+
+    /**
+     * Linearizes an expression, recording the time taken as a flight recorder event.
+     * Every linearization of the application goes through here.
+     *
+     * @param to   is the concrete syntax to linearize to
+     * @param expr is the expression
+     * @return the linearization
+     */
+    public static String linearize(Concr to, Expr expr) {
+        LinearizeEvent event = new LinearizeEvent(to);
+        return event.linearized(to.linearize(expr));
+    }
+
+    /**
+     * @param to is the language the tree is drawn for
+     * @return the graphviz source of the parse tree of the most probable expression, or null if not complete
+     */
+    public String graphvizParseTree(String to) {
+        if (!isComplete()) return null;
+        return grammar.getLanguages().get(to).graphvizParseTree(getExpr());
+    }
+
+    /**
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return "Analysis{" + "sentence=" + sentence + ", language=" + language + ", expressions=" + expressions + '}';
+    }
+}
@@ -0,0 +1,191 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Holds independent copies (replicas) of one grammar, so parsing, completion and linearization can run on all the
+ * cores without two threads ever using the same native grammar. Each task borrows a replica for as long as it runs;
+ * tasks submitted to the pool run on one thread per replica. Every replica costs the memory of a whole grammar.
+ * <p>
+ * Requests and results are plain strings, so nothing native from one replica is ever used with another.
+ */
+public class GrammarPool implements AutoCloseable {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final List<Replica> replicas;
+    private final BlockingQueue<Replica> idle;
+    private final ExecutorService workers;
+
+    /**
+     * Loads the replicas of a grammar, one after the other
+     *
+     * @param path     is the path of the .pgf file
+     * @param replicas is the number of copies to load, usually the number of cores
+     * @throws IOException if the grammar can not be read
+     */
+    public GrammarPool(String path, int replicas) throws IOException {
+        if (replicas <= 0) throw new IllegalArgumentException("replicas must be positive");
+        List<Replica> loaded = new ArrayList<>(replicas);
+        for (int i = 0; i < replicas; i++) loaded.add(new Replica(PGF.readPGF(Paths.get(path))));  //Memory-mapped
+        this.replicas = Collections.unmodifiableList(loaded);
+        this.idle = new ArrayBlockingQueue<>(replicas, false, loaded);
+        this.workers = Executors.newFixedThreadPool(replicas, task -> {
+            Thread thread = new Thread(task, "grammar-pool-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);     //Do not keep the application running
+            return thread;
+        });
+    }
+
+    /**
+     * @return the number of replicas
+     */
+    public int size() {
+        return replicas.size();
+    }
+
+    /**
+     * @return the replicas, e.g. to look at the languages of the grammar
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Runs a task on the calling thread, with a replica no other thread is using
+     *
+     * @param task is the task, it must not keep anything native it got from the replica
+     * @param <T>  is the type of the result
+     * @return the result of the task
+     */
+    public <T> T call(Function<Replica, T> task) {
+        Replica replica;
+        try {
+            replica = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a replica");
+        }
+        try {
+            return Arena.call(() -> task.apply(replica));   //Whatever the task parsed is freed before the replica is handed on
+        } finally {
+            idle.add(replica);
+        }
+    }
+
+    /**
+     * Runs a task on one of the worker threads of the pool
+     *
+     * @param task is the task, it must not keep anything native it got from the replica
+     * @param <T>  is the type of the result
+     * @return the future result of the task
+     */
+    public <T> CompletableFuture<T> submit(Function<Replica, T> task) {
+        return CompletableFuture.supplyAsync(() -> call(task), workers);
+    }
+
+    /**
+     * Parses a sentence
+     *
+     * @param language       is the language of the sentence
+     * @param category       is the start category
+     * @param sentence       is the sentence
+     * @param maxExpressions is the number of parses wanted
+     * @return the future abstract expressions, most probable first, empty if the sentence can not be parsed
+     */
+    public CompletableFuture<List<String>> parse(String language, String category, String sentence, int maxExpressions) {
+        return submit(replica -> {
+            List<String> expressions = new ArrayList<>();
+            try {
+                Iterator<ExprProb> parses = replica.getLanguage(language).parse(category, sentence).iterator();
+                while (expressions.size() < maxExpressions && parses.hasNext())
+                    expressions.add(parses.next().getExpr().toString());
+            } catch (ParseError e) {    //Sentence could not be parsed : invalid/incomplete
+                expressions.clear();
+            }
+            return expressions;
+        });
+    }
+
+    /**
+     * Completes a sentence
+     *
+     * @param language is the language of the sentence
+     * @param category is the start category
+     * @param text     is the text typed before the word being typed
+     * @param prefix   is the part of the word being typed
+     * @return the future words that may follow, empty if the text can not be parsed
+     */
+    public CompletableFuture<List<String>> complete(String language, String category, String text, String prefix) {
+        return submit(replica -> {
+            List<String> words = new ArrayList<>();
+            try {
+                for (TokenProb token : replica.getLanguage(language).complete(category, text, prefix))
+                    words.add(token.getToken());
+            } catch (ParseError e) {
+                words.clear();
+            }
+            return words;
+        });
+    }
+
+    /**
+     * Linearizes an abstract expression
+     *
+     * @param language is the language to linearize to
+     * @param tree     is the abstract expression, in the GF syntax
+     * @return the future linearization
+     */
+    public CompletableFuture<String> linearize(String language, String tree) {
+        return submit(replica -> Analysis.linearize(replica.getLanguage(language), Expr.readExpr(tree)));
+    }
+
+    /**
+     * Stops the workers, tasks not started yet are dropped. The replicas are freed once unreachable.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * A copy of the grammar, used by one thread at a time
+     */
+    public static final class Replica {
+        private final PGF grammar;
+        private final Map<String, Concr> languages;     //Looked up once, getLanguages creates new objects
+
+        private Replica(PGF grammar) {
+            this.grammar = grammar;
+            this.languages = grammar.getLanguages();
+        }
+
+        public PGF getGrammar() {
+            return grammar;
+        }
+
+        /**
+         * @param name is the name of a language
+         * @return the concrete syntax of the language in this replica
+         */
+        public Concr getLanguage(String name) {
+            Concr language = languages.get(name);
+            if (language == null) throw new IllegalArgumentException("Unknown language: " + name);
+            return language;
+        }
+
+        public Map<String, Concr> getLanguages() {
+            return Collections.unmodifiableMap(languages);
+        }
+    }
+}
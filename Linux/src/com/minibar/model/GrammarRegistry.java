@@ -0,0 +1,215 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.PGF;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Loads grammars on a background thread and keeps the loaded grammars, so switching back to a grammar is instant.
+ * Grammars are keyed by their path and a fingerprint of the file (its size and modification time), so a grammar
+ * that was recompiled is loaded again. The least recently used grammars are dropped once their estimated native
+ * memory goes over the budget; the size of a PGF file is used as the estimate of the memory it takes once loaded.
+ */
+public class GrammarRegistry {
+    public static final long DEFAULT_BUDGET = 512L * 1024 * 1024;
+
+    private final long budget;
+    private final LinkedHashMap<Key, CompletableFuture<PGF>> grammars = new LinkedHashMap<>(16, 0.75f, true);  //Access order
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "grammar-loader");
+        thread.setDaemon(true);     //Do not keep the application running
+        return thread;
+    });
+    private long bytes;     //Estimated memory of the grammars kept
+    private final List<Consumer<PGF>> unloadListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a registry with the default budget
+     */
+    public GrammarRegistry() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a registry
+     *
+     * @param budget is the estimated native memory the grammars kept may use, in bytes
+     */
+    public GrammarRegistry(long budget) {
+        if (budget <= 0) throw new IllegalArgumentException("budget must be positive");
+        this.budget = budget;
+    }
+
+    /**
+     * Returns a grammar, loading it on the background thread unless it is already loaded or being loaded
+     *
+     * @param path     is the path of the PGF file
+     * @param progress receives 0 when the load starts and 1 once it is done, on the loading thread
+     * @return a future completed with the grammar, or completed exceptionally if it cannot be loaded
+     */
+    public CompletableFuture<PGF> load(String path, DoubleConsumer progress) {
+        Key key;
+        try {
+            key = Key.of(path);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        synchronized (this) {
+            CompletableFuture<PGF> grammar = grammars.get(key);
+            if (grammar != null && !grammar.isCompletedExceptionally()) {
+                if (grammar.isDone()) progress.accept(1);
+                return grammar;
+            }
+            grammars.entrySet().removeIf(loaded -> {  //Older versions of the file
+                if (!loaded.getKey().path.equals(key.path)) return false;
+                bytes -= loaded.getKey().size;
+                unloaded(loaded.getValue());
+                return true;
+            });
+            grammar = CompletableFuture.supplyAsync(() -> read(key, progress), loader);
+            grammars.put(key, grammar);
+            bytes += key.size;
+            evict(key);
+            grammar.whenComplete((result, error) -> {
+                if (error != null) remove(key);     //Try again the next time it is selected
+            });
+            return grammar;
+        }
+    }
+
+    /**
+     * Registers a listener told about every grammar the registry drops, because it was evicted, reloaded or
+     * cleared, so that objects built on the grammar can be dropped with it
+     *
+     * @param listener receives the grammar dropped, on the thread that made the registry drop it
+     */
+    public void addUnloadListener(Consumer<PGF> listener) {
+        unloadListeners.add(listener);
+    }
+
+    /**
+     * @param path is the path of the PGF file
+     * @return true if the current version of the file is loaded
+     */
+    public synchronized boolean isLoaded(String path) {
+        try {
+            CompletableFuture<PGF> grammar = grammars.get(Key.of(path));
+            return grammar != null && grammar.isDone() && !grammar.isCompletedExceptionally();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of grammars kept
+     */
+    public synchronized int size() {
+        return grammars.size();
+    }
+
+    /**
+     * @return the estimated native memory of the grammars kept, in bytes
+     */
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    /**
+     * Drops all the grammars, their native memory is freed once they are no longer used
+     */
+    public synchronized void clear() {
+        grammars.values().forEach(this::unloaded);
+        grammars.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Drops the least recently used grammars until the budget is met, always keeping the grammar just requested
+     *
+     * @param current is the grammar just requested
+     */
+    private void evict(Key current) {
+        Iterator<Map.Entry<Key, CompletableFuture<PGF>>> eldest = grammars.entrySet().iterator();
+        while (bytes > budget && eldest.hasNext()) {
+            Map.Entry<Key, CompletableFuture<PGF>> entry = eldest.next();
+            if (entry.getKey().equals(current)) continue;
+            bytes -= entry.getKey().size;
+            eldest.remove();
+            unloaded(entry.getValue());
+            System.out.println("Unloaded grammar " + entry.getKey().path);
+        }
+    }
+
+    /**
+     * Tells the unload listeners about a grammar dropped, once it is loaded if it is still loading
+     */
+    private void unloaded(CompletableFuture<PGF> grammar) {
+        grammar.thenAccept(pgf -> unloadListeners.forEach(listener -> listener.accept(pgf)));
+    }
+
+    private synchronized void remove(Key key) {
+        if (grammars.remove(key) != null) bytes -= key.size;
+    }
+
+    /**
+     * Reads a grammar with readPGF(Path), which memory-maps the file when the native library can read a buffer and
+     * records the load as a flight recorder event. The native read can not report how far it got, so the progress is
+     * reported when it starts and when it is done.
+     */
+    private static PGF read(Key key, DoubleConsumer progress) {
+        progress.accept(0);
+        try {
+            PGF grammar = PGF.readPGF(key.path);
+            progress.accept(1);
+            return grammar;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A grammar file: its path and fingerprint
+     */
+    private static final class Key {
+        private final Path path;
+        private final long size, modified;
+
+        private Key(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        private static Key of(String path) throws IOException {
+            Path file = Paths.get(path).toRealPath();
+            if (!Files.isRegularFile(file)) throw new FileNotFoundException(path);
+            return new Key(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return path.equals(key.path) && size == key.size && modified == key.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.minibar.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the words stored in the word histories, so the histories survive a crash and are not
+ * rewritten as a whole on every quit. Each sentence stored is appended as it happens, as numbers standing for the
+ * words; a number is given to a word or grammar name the first time it is journaled.
+ * <p>
+ * The file starts with the bytes MBHJ and a version, followed by records. A record is the length of its payload,
+ * the payload and the CRC32 of the payload. Numbers are unsigned varints. A payload is either a grammar name
+ * (1, number, name), a word (2, number, word) or the words of a sentence (3, grammar number, count, word numbers).
+ * A record cut short by a crash fails its length or checksum and the journal is cut back to the record before it.
+ * <p>
+ * The file is read on a background thread when the journal is opened, and the history of a grammar is rebuilt from
+ * its records when the grammar is first used. Only the last MAX_USES_PER_GRAMMAR words of each grammar are kept:
+ * older uses have decayed to nothing in the scores of WordHistory. Once the file holds twice that, it is rewritten
+ * in the background without the older records.
+ */
+public class HistoryJournal implements Closeable {
+    public static final int MAX_USES_PER_GRAMMAR = 20_000;
+    private static final byte[] MAGIC = {'M', 'B', 'H', 'J', 1};
+    private static final byte GRAMMAR = 1, WORD = 2, USES = 3;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final int MIN_COMPACTION_USES = 4096;
+
+    private final Path file;
+    private FileChannel channel;
+    private final CompletableFuture<Void> scanned;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+    //The dictionary of the file
+    private final Map<String, Integer> grammarNumbers = new HashMap<>(), wordNumbers = new HashMap<>();
+    private final List<String> grammars = new ArrayList<>(), words = new ArrayList<>();
+    //The sentences kept of each grammar, oldest first, by grammar number
+    private final Map<Integer, Deque<int[]>> sentences = new HashMap<>();
+    private final Map<Integer, Integer> uses = new HashMap<>();
+    private long usesInFile;    //Word uses in the file, counting the ones no longer kept
+    private List<int[][]> appendedSinceSnapshot;   //Sentences appended while compacting, grammar number first
+
+    private HistoryJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.scanned = CompletableFuture.runAsync(this::scan, task -> {
+            Thread thread = new Thread(task, "history-journal-reader");
+            thread.setDaemon(true);     //Do not keep the application running
+            thread.start();
+        });
+    }
+
+    /**
+     * Opens a journal, creating it if it does not exist. Its records are read on a background thread.
+     *
+     * @param file is the journal file
+     * @return the journal
+     * @throws IOException if the file can not be opened
+     */
+    public static HistoryJournal open(Path file) throws IOException {
+        return new HistoryJournal(file);
+    }
+
+    /**
+     * Reads the records of the file, and cuts off a record left incomplete by a crash
+     */
+    private synchronized void scan() {
+        try {
+            long size = channel.size();
+            if (size < MAGIC.length) {     //New, or cut short while being created
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(MAGIC), 0);
+                channel.position(MAGIC.length);
+                return;
+            }
+            if (size > Integer.MAX_VALUE) throw new IOException("History journal too large: " + size + " bytes");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) ;
+            buffer.flip();
+            for (byte b : MAGIC) {
+                if (!buffer.hasRemaining() || buffer.get() != b) throw new IOException(file + " is not a history journal");
+            }
+            long valid = buffer.position();
+            while (buffer.hasRemaining()) {
+                ByteBuffer payload = readRecord(buffer);
+                if (payload == null) break;
+                apply(payload);
+                valid = buffer.position();
+            }
+            if (valid < size) {
+                System.out.println("History journal cut back from " + size + " to " + valid + " bytes");
+                channel.truncate(valid);
+            }
+            channel.position(valid);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * @return the payload of the record at the position of the buffer, or null if the record is incomplete
+     */
+    private static ByteBuffer readRecord(ByteBuffer buffer) {
+        int length;
+        try {
+            length = readVarint(buffer);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (length > MAX_PAYLOAD || buffer.remaining() < length + 4) return null;
+        ByteBuffer payload = buffer.slice();
+        payload.limit(length);
+        buffer.position(buffer.position() + length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt()) return null;
+        return payload;
+    }
+
+    /**
+     * Adds a record read from the file to the dictionary or the sentences kept
+     */
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        int number = readVarint(payload);
+        if (type == GRAMMAR || type == WORD) {
+            String name = StandardCharsets.UTF_8.decode(payload).toString();
+            List<String> names = type == GRAMMAR ? grammars : words;
+            while (names.size() <= number) names.add(null);
+            names.set(number, name);
+            (type == GRAMMAR ? grammarNumbers : wordNumbers).put(name, number);
+        } else if (type == USES) {
+            int[] sentence = new int[readVarint(payload)];
+            for (int i = 0; i < sentence.length; i++) sentence[i] = readVarint(payload);
+            keep(number, sentence);
+            usesInFile += sentence.length;
+        }
+    }
+
+    /**
+     * Keeps a sentence of a grammar, forgetting the oldest ones beyond MAX_USES_PER_GRAMMAR words
+     */
+    private void keep(int grammar, int[] sentence) {
+        Deque<int[]> kept = sentences.computeIfAbsent(grammar, g -> new ArrayDeque<>());
+        kept.addLast(sentence);
+        int count = uses.getOrDefault(grammar, 0) + sentence.length;
+        while (count > MAX_USES_PER_GRAMMAR && kept.size() > 1) count -= kept.removeFirst().length;
+        uses.put(grammar, count);
+    }
+
+    private void awaitScan() throws IOException {
+        try {
+            scanned.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Rebuilds the word history of a grammar from its records, waiting for the file to be read if needed
+     *
+     * @param grammar  is the abstract name of the grammar
+     * @param capacity is the maximum number of words remembered
+     * @return the history, empty if the grammar has no records
+     * @throws IOException if the file could not be read
+     */
+    public WordHistory replay(String grammar, int capacity) throws IOException {
+        awaitScan();
+        WordHistory history = new WordHistory(capacity, SymbolTable.of(grammar));
+        synchronized (this) {
+            Integer number = grammarNumbers.get(grammar);
+            if (number == null) return history;
+            for (int[] sentence : sentences.get(number)) {
+                for (int word : sentence) history.use(words.get(word));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * @return the names of the grammars with records
+     * @throws IOException if the file could not be read
+     */
+    public Set<String> getGrammars() throws IOException {
+        awaitScan();
+        synchronized (this) {
+            return new HashSet<>(grammarNumbers.keySet());
+        }
+    }
+
+    /**
+     * Appends the words of a sentence stored in the history of a grammar
+     *
+     * @param grammar  is the abstract name of the grammar
+     * @param sentence are the words, in the order they were used
+     * @throws IOException if the record can not be written
+     */
+    public void append(String grammar, List<String> sentence) throws IOException {
+        if (sentence.isEmpty()) return;
+        awaitScan();
+        synchronized (this) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            int grammarNumber = number(grammar, grammarNumbers, grammars, GRAMMAR, records);
+            int[] numbers = new int[sentence.size()];
+            for (int i = 0; i < numbers.length; i++) numbers[i] = number(sentence.get(i), wordNumbers, words, WORD, records);
+            writeRecord(records, uses(grammarNumber, numbers));
+            channel.write(ByteBuffer.wrap(records.toByteArray()));     //One write, a crash leaves at most one torn record
+            keep(grammarNumber, numbers);
+            usesInFile += numbers.length;
+            if (appendedSinceSnapshot != null) appendedSinceSnapshot.add(new int[][]{{grammarNumber}, numbers});
+            long kept = 0;
+            for (int count : uses.values()) kept += count;
+            if (compaction.isDone() && usesInFile > Math.max(2 * kept, MIN_COMPACTION_USES)) compaction = compactInBackground();
+        }
+    }
+
+    /**
+     * Imports histories saved in another form, e.g. by the versions of the application before the journal
+     *
+     * @param data is the previous words of each grammar, with the most recently used first
+     * @throws IOException if the records can not be written
+     */
+    public void importHistory(Map<String, ? extends List<String>> data) throws IOException {
+        for (Map.Entry<String, ? extends List<String>> grammar : data.entrySet()) {
+            List<String> oldestFirst = new ArrayList<>(grammar.getValue());
+            Collections.reverse(oldestFirst);
+            append(grammar.getKey(), oldestFirst);
+        }
+    }
+
+    /**
+     * @return the number of the name, given one and journaled into records if it has none yet
+     */
+    private static int number(String name, Map<String, Integer> numbers, List<String> names, byte type,
+                              ByteArrayOutputStream records) {
+        Integer number = numbers.get(name);
+        if (number != null) return number;
+        number = names.size();
+        names.add(name);
+        numbers.put(name, number);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(type);
+        writeVarint(payload, number);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        payload.write(bytes, 0, bytes.length);
+        writeRecord(records, payload);
+        return number;
+    }
+
+    private static ByteArrayOutputStream uses(int grammar, int[] numbers) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(USES);
+        writeVarint(payload, grammar);
+        writeVarint(payload, numbers.length);
+        for (int number : numbers) writeVarint(payload, number);
+        return payload;
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, ByteArrayOutputStream payload) {
+        byte[] bytes = payload.toByteArray();
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        int value = (int) crc.getValue();
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Rewrites the file in the background with only the sentences kept, the sentences appended meanwhile are
+     * copied over before the new file replaces the old one. If a compaction is already running, the file is
+     * rewritten again once it is done, as that one kept what was journaled when it started.
+     *
+     * @return a future completed once the file is rewritten
+     */
+    public CompletableFuture<Void> compact() {
+        synchronized (this) {
+            if (compaction.isDone()) {
+                compaction = compactInBackground();
+            } else {
+                compaction = compaction.handle((done, failure) -> null).thenCompose(done -> {
+                    synchronized (this) {
+                        return compactInBackground();
+                    }
+                });
+            }
+            return compaction;
+        }
+    }
+
+    private CompletableFuture<Void> compactInBackground() {
+        //Snapshot of what is kept, the new dictionary only has the names still used
+        List<String> grammarNames = new ArrayList<>(grammars);
+        List<String> wordNames = new ArrayList<>(words);
+        Map<Integer, List<int[]>> snapshot = new HashMap<>();
+        for (Map.Entry<Integer, Deque<int[]>> kept : sentences.entrySet())
+            snapshot.put(kept.getKey(), new ArrayList<>(kept.getValue()));
+        appendedSinceSnapshot = new ArrayList<>();
+        Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+        return CompletableFuture.runAsync(() -> {
+            try {
+                Renumbering renumbering = new Renumbering(grammarNames, wordNames);
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                records.write(MAGIC, 0, MAGIC.length);
+                for (Map.Entry<Integer, List<int[]>> kept : snapshot.entrySet()) {
+                    for (int[] sentence : kept.getValue()) renumbering.write(kept.getKey(), sentence, records);
+                }
+                Files.write(rewritten, records.toByteArray());
+                synchronized (this) {
+                    records.reset();
+                    renumbering.update(grammars, words);   //Names journaled while the file was written
+                    long written = 0;
+                    for (int[][] appended : appendedSinceSnapshot) {
+                        renumbering.write(appended[0][0], appended[1], records);
+                        written += appended[1].length;
+                    }
+                    Files.write(rewritten, records.toByteArray(), StandardOpenOption.APPEND);
+                    channel.close();
+                    Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    channel.position(channel.size());
+                    renumbering.install(this);
+                    usesInFile = written;
+                    for (List<int[]> kept : snapshot.values()) for (int[] sentence : kept) usesInFile += sentence.length;
+                    appendedSinceSnapshot = null;
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    appendedSinceSnapshot = null;
+                }
+                System.out.println("Could not compact the history journal: " + e.getMessage());
+            }
+        }, task -> {
+            Thread thread = new Thread(task, "history-journal-compaction");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * @return the size of the journal file in bytes
+     */
+    public synchronized long getByteSize() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            compaction.join();
+        } catch (CompletionException e) {
+            //Reported already, the file is left as it was
+        }
+        synchronized (this) {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) throw new IllegalArgumentException("Varint cut short");
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    /**
+     * The numbers of the names in a compacted file, given in the order the names are first used
+     */
+    private static final class Renumbering {
+        private List<String> oldGrammars, oldWords;
+        private final Map<Integer, Integer> grammarNumbers = new HashMap<>(), wordNumbers = new HashMap<>();
+        private final List<String> grammars = new ArrayList<>(), words = new ArrayList<>();
+        private final Map<Integer, Deque<int[]>> sentences = new HashMap<>();
+
+        private Renumbering(List<String> oldGrammars, List<String> oldWords) {
+            this.oldGrammars = oldGrammars;
+            this.oldWords = oldWords;
+        }
+
+        private void update(List<String> oldGrammars, List<String> oldWords) {
+            this.oldGrammars = new ArrayList<>(oldGrammars);
+            this.oldWords = new ArrayList<>(oldWords);
+        }
+
+        private void write(int grammar, int[] sentence, ByteArrayOutputStream records) {
+            int newGrammar = renumber(grammar, oldGrammars, grammarNumbers, grammars, GRAMMAR, records);
+            int[] numbers = new int[sentence.length];
+            for (int i = 0; i < sentence.length; i++)
+                numbers[i] = renumber(sentence[i], oldWords, wordNumbers, words, WORD, records);
+            writeRecord(records, uses(newGrammar, numbers));
+            sentences.computeIfAbsent(newGrammar, g -> new ArrayDeque<>()).addLast(numbers);
+        }
+
+        private static int renumber(int old, List<String> oldNames, Map<Integer, Integer> numbers, List<String> names,
+                                    byte type, ByteArrayOutputStream records) {
+            Integer number = numbers.get(old);
+            if (number != null) return number;
+            number = number(oldNames.get(old), new HashMap<>(), names, type, records);
+            numbers.put(old, number);
+            return number;
+        }
+
+        /**
+         * Makes the journal use the numbers of the compacted file
+         */
+        private void install(HistoryJournal journal) {
+            journal.grammars.clear();
+            journal.grammars.addAll(grammars);
+            journal.words.clear();
+            journal.words.addAll(words);
+            journal.grammarNumbers.clear();
+            for (int i = 0; i < grammars.size(); i++) journal.grammarNumbers.put(grammars.get(i), i);
+            journal.wordNumbers.clear();
+            for (int i = 0; i < words.size(); i++) journal.wordNumbers.put(words.get(i), i);
+            journal.sentences.clear();
+            journal.uses.clear();
+            for (Map.Entry<Integer, Deque<int[]>> kept : sentences.entrySet()) {
+                for (int[] sentence : kept.getValue()) journal.keep(kept.getKey(), sentence);
+            }
+        }
+    }
+}
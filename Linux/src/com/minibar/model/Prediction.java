@@ -1,22 +1,54 @@
 package com.minibar.model;
 
+import org.grammaticalframework.pgf.CompletionCursor;
 import org.grammaticalframework.pgf.Concr;
 import org.grammaticalframework.pgf.PGF;
 import org.grammaticalframework.pgf.ParseError;
 import org.grammaticalframework.pgf.TokenProb;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A Prediction object interacts with a specified grammar, retrieves valid words and also makes predictions
  * based on previously translated sentences.
+ * Predictions may be made on a background thread while words are stored from the UI thread, so both are synchronized.
+ * <p>
+ * The valid words are ranked by the sum of three log scores: the grammar's probability of the word, the probability
+ * of the word after the last two words typed in the language's n-gram model, and, for words in the history, their
+ * history score. Words in the history come first, so recently used words stay at the front.
+ * <p>
+ * The suggestions shown while typing are opened as a SuggestionCursor, which asks the grammar for a page at a time
+ * instead of for every valid word.
  */
 public class Prediction {
-    private static Map<String, ArrayList<String>> historicalData = new HashMap<>();
+    private static final double HISTORY_TIER = 1000;   //Added to the scores of words in the history, above any other score
+    private static Map<String, WordHistory> historicalData = new HashMap<>();   //History of each grammar
+    private static volatile HistoryJournal journal;     //Where the words stored are journaled, if set
+    private static volatile Path corpusDirectory;       //Corpora of the n-gram models, if set
+    //Completion results shared by all predictions, at most 512 results or 8 MB
+    private static final CompletionCache completionCache = new CompletionCache(512, 8L * 1024 * 1024);
+    private static final Map<PGF, String> cacheNames = new WeakHashMap<>();    //Name of each grammar loaded in the cache
+    private static int loads;   //Grammars named so far
     private PGF grammar;    //Grammar being used
-    private ArrayList<String> previousWords;
+    private String cacheName;   //Name of the grammar in the completion cache
+    private WordHistory previousWords;
+    private double[] legalCosts = new double[64];   //Grammar cost of each word completed
+    private int[] seen = new int[0];        //Stamp of each word ID completed, to drop duplicates without a set
+    private int[] positionOf = new int[0];  //Position in the completed words of each word ID seen
+    private int stamp;
+    private WordIndex cachedWords;      //Suggestions for the last typed words, indexed for prefix lookups
+    private String cachedText, cachedLanguage, cachedCategory, cachedPrefix;
+    private Concr concr;        //Concrete syntax of the last words completed
+    private String concrLanguage;
+    private SuggestionCursor cursor;    //Last suggestions opened, closed by whoever opened them
+    private String cursorText, cursorLanguage, cursorCategory;
 
     /**
      * Creates a default Prediction Object
@@ -33,10 +65,9 @@ public class Prediction {
 
     public Prediction(PGF grammar, ArrayList<String> previousWords) {
         this.grammar = grammar;
-        if (historicalData.containsKey(grammar.getAbstractName())) {
-            historicalData.replace(grammar.getAbstractName(), previousWords);
-        } else historicalData.put(grammar.getAbstractName(), previousWords);
-        this.previousWords = previousWords;
+        this.cacheName = cacheName(grammar);
+        this.previousWords = new WordHistory(WordHistory.DEFAULT_CAPACITY, SymbolTable.of(grammar.getAbstractName()), previousWords);
+        historicalData.put(grammar.getAbstractName(), this.previousWords);
     }
 
     /**
@@ -46,31 +77,124 @@ public class Prediction {
      */
     public Prediction(PGF grammar) {
         this.grammar = grammar;
+        this.cacheName = cacheName(grammar);
         if (historicalData.containsKey(grammar.getAbstractName())) {        //If previous words for this grammar already exists
             previousWords = historicalData.get(grammar.getAbstractName());
-        } else {  //New grammar with new previous words
-            this.previousWords = new ArrayList<>();   //Initialize to empty ArrayList
+        } else {  //New grammar with new previous words, or journaled in a previous session
+            this.previousWords = replayJournal(grammar.getAbstractName());
             historicalData.put(grammar.getAbstractName(), previousWords);
         }
     }
 
-    public ArrayList<String> getPreviousWords() {
-        return previousWords;
+    /**
+     * Names a grammar in the completion cache by its abstract name and the load it came from, so a grammar loaded
+     * again, e.g. after it was recompiled under the same name, never sees the completions of the old one
+     *
+     * @param grammar is a grammar
+     * @return the name, the same for every prediction on this grammar object
+     */
+    private static String cacheName(PGF grammar) {
+        synchronized (cacheNames) {
+            String name = cacheNames.get(grammar);
+            if (name == null) {
+                name = grammar.getAbstractName() + "#" + ++loads;
+                cacheNames.put(grammar, name);
+            }
+            return name;
+        }
     }
 
     /**
-     * Stores words in previousWords array
+     * @return the previous words, most recently used first
+     */
+    public synchronized ArrayList<String> getPreviousWords() {
+        return previousWords.toList();
+    }
+
+    /**
+     * Stores words in the previous words history, each word takes constant time.
+     * Words already known to the grammar's symbol table are stored by their ID, without cutting them out of the text.
      *
      * @param words is a string of words to store
      */
-    public void storeWords(String words) {
-        String[] splitWords = words.split(" ");
-        for (String splitWord : splitWords) {
-            previousWords.remove(splitWord);    //Remove from previous index
-            previousWords.add(0, splitWord);    //Insert word in index 0
+    public synchronized void storeWords(CharSequence words) {
+        HistoryJournal history = journal;
+        SymbolTable symbols = previousWords.getSymbols();
+        List<String> stored = history == null ? null : new ArrayList<>();
+        for (int start = 0, end; start < words.length(); start = end + 1) {
+            end = start;
+            while (end < words.length() && words.charAt(end) != ' ') end++;
+            if (end == start) continue;
+            int id = symbols.intern(words, start, end);
+            previousWords.use(id);     //Becomes the most recently used word
+            if (stored != null) stored.add(symbols.token(id));
+        }
+        clearCachedWords();     //Cached suggestions are ordered by the old previous words
+        if (history == null) return;
+        try {
+            history.append(grammar.getAbstractName(), stored);
+        } catch (IOException e) {
+            System.out.println("Stopped journaling the history: " + e.getMessage());
+            journal = null;
         }
     }
 
+    /**
+     * Rebuilds the history of a grammar from the journal
+     *
+     * @param grammar is the abstract name of the grammar
+     * @return the history, empty if there is no journal or it could not be read
+     */
+    private static WordHistory replayJournal(String grammar) {
+        HistoryJournal history = journal;
+        if (history != null) {
+            try {
+                return history.replay(grammar, WordHistory.DEFAULT_CAPACITY);
+            } catch (IOException e) {
+                System.out.println("Could not read the history journal: " + e.getMessage());
+            }
+        }
+        return new WordHistory(WordHistory.DEFAULT_CAPACITY, SymbolTable.of(grammar));   //Initialize to empty history
+    }
+
+    /**
+     * Journals the words stored from now on, the histories of the grammars not used yet are read from the journal
+     *
+     * @param historyJournal is the journal, or null to stop journaling
+     */
+    public static void setHistoryJournal(HistoryJournal historyJournal) {
+        journal = historyJournal;
+    }
+
+    /**
+     * Reads the n-gram models of the languages from a directory, one corpus file per language named after the
+     * grammar and the language, e.g. Foods/FoodsEng.txt. The sentences translated from now on are appended to them.
+     *
+     * @param directory is the directory of the corpora, or null to keep the models in memory only
+     */
+    public static void setCorpusDirectory(Path directory) {
+        corpusDirectory = directory;
+    }
+
+    /**
+     * @param language is the concrete syntax name
+     * @return the n-gram model of the language of this grammar
+     */
+    public NgramModel getModel(String language) {
+        return NgramModel.of(grammar.getAbstractName(), language, corpusDirectory);
+    }
+
+    /**
+     * Trains the n-gram model of a language with a sentence that was translated from or to it
+     *
+     * @param language is the concrete syntax name
+     * @param sentence is the sentence in that language
+     */
+    public synchronized void learn(String language, String sentence) {
+        getModel(language).learn(sentence);
+        clearCachedWords();     //Cached suggestions are ordered by the old model
+    }
+
     /**
      * Stores a complete sentence in previousWords
      *
@@ -81,19 +205,54 @@ public class Prediction {
     }
 
     /**
-     * Re-orders the legal words, putting the applicable previous words in front
+     * Scores the legal words, see the class comment. Each word takes constant time, the words are not sorted here
+     * but picked by score as the user types.
      *
      * @param legalWords is the list of all words that are available in the grammar
-     * @return the legal words reordered with previous words at the front
+     * @param costs      is the grammar's negative log probability of each word, or null if not known
+     * @param text       is the sentence typed so far
+     * @param language   the user is translating from
+     * @return an index of the legal words by their scores, previous words first
      */
-    private ArrayList<String> reOrderLegalWords(ArrayList<String> legalWords) {
-        for (int i = previousWords.size() - 1; i >= 0; i--) {
-            if (legalWords.contains(previousWords.get(i))) {
-                legalWords.remove(previousWords.get(i));   //Remove from previous index
-                legalWords.add(0, previousWords.get(i));    //Place at the front (Most-Recently-Used)
-            }
+    private WordIndex rankLegalWords(List<String> legalWords, double[] costs, String text, String language) {
+        SuggestionCursor.Scorer scorer = scorer(text, language);
+        SymbolTable symbols = previousWords.getSymbols();
+        double[] scores = new double[legalWords.size()];
+        for (int i = 0; i < scores.length; i++)
+            scores[i] = scorer.score(symbols.intern(legalWords.get(i)), costs == null ? 0 : costs[i]);
+        return new WordIndex(legalWords, scores);
+    }
+
+    /**
+     * Makes the scorer of the words that may follow a text, see the class comment
+     *
+     * @param text     is the sentence typed so far
+     * @param language the user is translating from
+     * @return the scorer
+     */
+    private SuggestionCursor.Scorer scorer(String text, String language) {
+        NgramModel model = getModel(language);
+        WordHistory history = previousWords;
+        long context = model.context(text);
+        int u = (int) (context >> 32), v = (int) context;
+        return (id, cost) -> {
+            double score = model.score(u, v, id) - cost;
+            if (history.contains(id))   //A score decayed to 0 still ranks the word in the history tier
+                score += HISTORY_TIER + Math.log(Math.max(history.score(id), Double.MIN_NORMAL));
+            return score;
+        };
+    }
+
+    /**
+     * @param language is the concrete syntax name
+     * @return the concrete syntax, looked up again only when the language changes
+     */
+    private Concr getConcr(String language) {
+        if (concr == null || !language.equals(concrLanguage)) {
+            concr = grammar.getLanguages().get(language);
+            concrLanguage = language;
         }
-        return legalWords;
+        return concr;
     }
 
     /**
@@ -105,29 +264,198 @@ public class Prediction {
      * @return a list of valid words, with most recently used words at the front
      */
     public ArrayList<String> predictNextWord(String text, String language, String category) {
+        return predictNextWord(text, "", language, category);
+    }
+
+    /**
+     * Suggests the next word, given the words typed so far and the part of the word the user is still typing.
+     * The grammar is only consulted when the typed words change, the letters of the current word are matched
+     * against the cached suggestions. If the user is already part way through a word when the typed words change,
+     * the parser narrows the suggestions down to that prefix itself.
+     *
+     * @param text        is the sentence typed so far, without the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    the user is translating from
+     * @param category    selected by the user
+     * @return a list of valid words starting with partialWord, with most recently used words at the front
+     */
+    public synchronized ArrayList<String> predictNextWord(String text, String partialWord, String language, String category) {
+        return suggestions(text, partialWord, language, category).withPrefix(partialWord);
+    }
+
+    /**
+     * Suggests the best few next words, see predictNextWord. The suggestions are picked with a bounded heap, so
+     * their number, not the number of valid words, bounds the cost of sorting them on each keystroke.
+     *
+     * @param text        is the sentence typed so far, without the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    the user is translating from
+     * @param category    selected by the user
+     * @param limit       is the maximum number of words suggested
+     * @return the best valid words starting with partialWord, best first
+     */
+    public synchronized ArrayList<String> suggest(String text, String partialWord, String language, String category, int limit) {
+        return suggestions(text, partialWord, language, category).withPrefix(partialWord, limit);
+    }
+
+    /**
+     * Opens the suggestions for the next word, to be handed out a page at a time, best first. Unlike predictNextWord,
+     * the grammar is asked for a few candidates per suggestion handed out, not for every valid word, so a page costs
+     * the same however large the lexicon is. Words completed before for the text, by any prediction, come from the
+     * completion cache. When the user types another letter of the same word, the candidates already fetched are
+     * narrowed down, and the grammar is only asked again if they run short.
+     * The caller closes the cursor once it is done with it, after opening the next one so it can be narrowed down.
+     *
+     * @param text        is the sentence typed so far, without the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    the user is translating from
+     * @param category    selected by the user
+     * @return the cursor over the suggestions, empty if the text can not be parsed
+     */
+    public synchronized SuggestionCursor openSuggestions(String text, String partialWord, String language, String category) {
+        SymbolTable symbols = previousWords.getSymbols();
+        boolean sameText = cursor != null && text.equals(cursorText) && language.equals(cursorLanguage)
+                && category.equals(cursorCategory);
+        List<String> completed = completionCache.get(cacheName, language, category, text);
+        double[] costs = null;
+        if (completed != null) {
+            costs = completionCache.getCosts(cacheName, language, category, text);
+        } else if (sameText && cursor.getPrefix().isEmpty() && cursor.isComplete()) {   //Every word was fetched, share them
+            completed = new ArrayList<>();
+            costs = cursor.candidates(completed);
+            completionCache.put(cacheName, language, category, text, completed, costs);
+        }
+        SuggestionCursor opened;
+        if (completed != null) {
+            opened = new SuggestionCursor(this, symbols, scorer(text, language), partialWord, completed, costs);
+        } else if (sameText && partialWord.startsWith(cursor.getPrefix())) {
+            opened = cursor.narrow(partialWord, () -> completeLazily(text, partialWord, language, category));
+        } else {
+            opened = new SuggestionCursor(this, symbols, scorer(text, language), partialWord,
+                    completeLazily(text, partialWord, language, category));
+        }
+        cursor = opened;
+        cursorText = text;
+        cursorLanguage = language;
+        cursorCategory = category;
+        return opened;
+    }
+
+    /**
+     * @return the cursor over the completions of the text starting with partialWord, or null if it can not be parsed
+     */
+    private CompletionCursor completeLazily(String text, String partialWord, String language, String category) {
+        try {
+            return getConcr(language).completeLazily(category, text, partialWord);
+        } catch (ParseError e) {
+            return null;    //No suggestions
+        }
+    }
+
+    /**
+     * Gets the index of the suggestions for the text, asking the grammar only if the cached index can not answer
+     *
+     * @return the index of the ranked suggestions
+     */
+    private WordIndex suggestions(String text, String partialWord, String language, String category) {
+        if (!(text.equals(cachedText) && language.equals(cachedLanguage) && category.equals(cachedCategory)
+                && partialWord.startsWith(cachedPrefix))) {     //Cached suggestions can not answer this
+            List<String> legalWords;
+            double[] costs;
+            List<String> completed = completionCache.get(cacheName, language, category, text);
+            if (completed != null) {    //All the words for this prefix were completed before
+                legalWords = completed;
+                costs = completionCache.getCosts(cacheName, language, category, text);
+                cachedPrefix = "";
+            } else {
+                legalWords = completeWords(text, partialWord, language, category);
+                costs = legalCosts;
+                if (partialWord.isEmpty()) completionCache.put(cacheName, language, category, text, legalWords, costs);
+                cachedPrefix = partialWord;
+            }
+            cachedWords = rankLegalWords(legalWords, costs, text, language);  //Previous words at the front
+            cachedText = text;
+            cachedLanguage = language;
+            cachedCategory = category;
+        }
+        return cachedWords;
+    }
+
+    /**
+     * Asks the grammar for the words that may follow the text
+     *
+     * @param text        is the sentence typed so far
+     * @param partialWord is the part of the next word already typed, used to narrow down the words
+     * @param language    the user is translating from
+     * @param category    selected by the user
+     * @return the interned legal words without duplicates, in the grammar's order, empty if the text can not be parsed.
+     * The lowest cost of each word is left in legalCosts.
+     */
+    private ArrayList<String> completeWords(String text, String partialWord, String language, String category) {
         ArrayList<String> legalWords = new ArrayList<>();
-        Concr sourceLanguage = grammar.getLanguages().get(language);
+        SymbolTable symbols = previousWords.getSymbols();
+        stamp++;
         try {
-            Iterable<TokenProb> tokenProbs = sourceLanguage.complete(category, text, "");
-            for (TokenProb token : tokenProbs)
-                if (!legalWords.contains(token.getToken())) legalWords.add(token.getToken());   //Add legal word
+            Iterable<TokenProb> tokenProbs = getConcr(language).complete(category, text, partialWord);
+            for (TokenProb token : tokenProbs) {
+                int id = symbols.intern(token.getToken());
+                if (id >= seen.length) {
+                    seen = Arrays.copyOf(seen, Math.max(id + 1, 2 * seen.length));
+                    positionOf = Arrays.copyOf(positionOf, seen.length);
+                }
+                if (seen[id] == stamp) {    //Duplicate, reached by another function
+                    int position = positionOf[id];
+                    legalCosts[position] = Math.min(legalCosts[position], token.getProb());
+                    continue;
+                }
+                seen[id] = stamp;
+                positionOf[id] = legalWords.size();
+                if (legalWords.size() == legalCosts.length) legalCosts = Arrays.copyOf(legalCosts, 2 * legalCosts.length);
+                legalCosts[legalWords.size()] = token.getProb();
+                legalWords.add(symbols.token(id));  //Add legal word
+            }
         } catch (ParseError e) {
-            return legalWords;  //Return the empty legal words
+            legalWords.clear();     //Return the empty legal words
         }
-        if (legalWords.size() == 0)     //No legal words found, sentence is complete
-            return legalWords;
-        return reOrderLegalWords(legalWords);   //Re-order, putting previous words at the front
+        return legalWords;
+    }
+
+    /**
+     * @return the completion results cache shared by all predictions
+     */
+    public static CompletionCache getCompletionCache() {
+        return completionCache;
+    }
+
+    /**
+     * Forgets the cached suggestions, e.g. after the previous words changed
+     */
+    private void clearCachedWords() {
+        cachedWords = null;
+        cachedText = null;
+        cursorText = null;      //Its candidates are still handed out, but never narrowed
     }
 
     /**
-     * @return historical data
+     * @return historical data, the previous words of each grammar with the most recently used first
      */
     public Map<String, ArrayList<String>> getHistoricalData() {
-        return historicalData;
+        Map<String, ArrayList<String>> data = new HashMap<>();
+        for (Map.Entry<String, WordHistory> entry : historicalData.entrySet())
+            data.put(entry.getKey(), entry.getValue().toList());
+        return data;
     }
 
+    /**
+     * Replaces the historical data
+     *
+     * @param data is the previous words of each grammar, with the most recently used first
+     */
     public void setHistoricalData(Map<String, ArrayList<String>> data) {
-        historicalData = data;
+        historicalData = new HashMap<>();
+        for (Map.Entry<String, ArrayList<String>> entry : data.entrySet())
+            historicalData.put(entry.getKey(),
+                    new WordHistory(WordHistory.DEFAULT_CAPACITY, SymbolTable.of(entry.getKey()), entry.getValue()));
     }
 
     /**
@@ -0,0 +1,147 @@
+package com.minibar.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the tokens of a grammar: every distinct token is kept once and given a small int ID, from 0 up, so the
+ * histories and suggestion lists can be arrays of IDs compared with ==. Tokens can be looked up straight from a
+ * region of a sentence, without cutting it into strings first. IDs are never reused, so a table grows with the
+ * vocabulary of its grammar and nothing else.
+ * <p>
+ * A table is shared by every prediction on its grammar, so it is thread safe.
+ */
+public final class SymbolTable {
+    private static final Map<String, SymbolTable> tables = new HashMap<>();   //Table of each grammar
+
+    private String[] tokens = new String[64];   //Token of each ID
+    private int[] hashes = new int[64];         //Hash of each token, String.hashCode
+    private int[] slots = new int[128];         //Open addressing, ID + 1 of each slot, 0 when free
+    private int size;
+
+    /**
+     * @param grammar is the abstract name of a grammar
+     * @return the table of the grammar, made the first time it is asked for
+     */
+    public static SymbolTable of(String grammar) {
+        synchronized (tables) {
+            return tables.computeIfAbsent(grammar, name -> new SymbolTable());
+        }
+    }
+
+    /**
+     * @param token is a token
+     * @return the ID of the token, given now if it has none yet
+     */
+    public synchronized int intern(String token) {
+        int id = find(token, 0, token.length(), token.hashCode());
+        return id >= 0 ? id : add(token, token.hashCode());
+    }
+
+    /**
+     * Interns a token found in a sentence, the token is only cut out of the sentence if it is new
+     *
+     * @param text  is the text holding the token
+     * @param start is the index of the first character of the token
+     * @param end   is the index after the last character of the token
+     * @return the ID of the token, given now if it has none yet
+     */
+    public synchronized int intern(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int id = find(text, start, end, hash);
+        return id >= 0 ? id : add(text.subSequence(start, end).toString(), hash);
+    }
+
+    /**
+     * @param token is a token
+     * @return the ID of the token, or -1 if it has none
+     */
+    public synchronized int lookup(String token) {
+        return find(token, 0, token.length(), token.hashCode());
+    }
+
+    /**
+     * @param text  is the text holding the token
+     * @param start is the index of the first character of the token
+     * @param end   is the index after the last character of the token
+     * @return the ID of the token, or -1 if it has none
+     */
+    public synchronized int lookup(CharSequence text, int start, int end) {
+        return find(text, start, end, hash(text, start, end));
+    }
+
+    /**
+     * @param id is the ID of a token
+     * @return the token, always the same String instance
+     */
+    public synchronized String token(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("No token with ID " + id);
+        return tokens[id];
+    }
+
+    /**
+     * @return the number of tokens interned
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int find(CharSequence text, int start, int end, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && regionEquals(tokens[id], text, start, end)) return id;
+        }
+        return -1;
+    }
+
+    private int add(String token, int hash) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        tokens[size] = token;
+        hashes[size] = hash;
+        if (2 * (size + 1) > slots.length) rehash();    //Keep the slots at most half full
+        insert(size);
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int id = 0; id < size; id++) insert(id);
+    }
+
+    private void insert(int id) {
+        int mask = slots.length - 1;
+        int slot = mix(hashes[id]) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+    }
+
+    /**
+     * @return the hash String.hashCode would give the region
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + text.charAt(i);
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of a hash, the hashes of short strings differ mostly in their low bits
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String token, CharSequence text, int start, int end) {
+        if (token.length() != end - start) return false;
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+}
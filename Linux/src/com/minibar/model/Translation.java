@@ -1,9 +1,9 @@
 package com.minibar.model;
 
-import org.grammaticalframework.pgf.*;
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.PGF;
 
 import java.util.HashMap;
-import java.util.Map;
 
 /**
  * This class is responsible for using a specified grammar to perform translations
@@ -20,6 +20,18 @@ public class Translation {
         this.grammar = grammar;
     }
 
+    /**
+     * Parses a sentence once, so that it can be translated to any number of languages
+     *
+     * @param sentence is the sentence to translate
+     * @param from     is the language the sentence was typed in
+     * @param category is the start category
+     * @return the analysis of the sentence
+     */
+    public Analysis analyze(Sentence sentence, String from, String category) {
+        return Analysis.parse(grammar, sentence, from, category);
+    }
+
     /**
      * Translates a sentence to the specified language
      *
@@ -29,18 +41,22 @@ public class Translation {
      * @return the translated sentence
      */
     public HashMap<String, String> translate(Sentence sentence, String from, String to, String category) {
-        HashMap<String, String> translation = new HashMap<>();
-        Concr sourceLanguage = grammar.getLanguages().get(from);
-        try {
-            //Get the sentence as an expression
-            Iterable<ExprProb> expressions = sourceLanguage.parse(category, sentence.toString());
-            Expr sentenceExpression = expressions.iterator().next().getExpr();
-            Concr targetLanguage = grammar.getLanguages().get(to);      //Language we are translating to
-            translation.put("Abstract", sentenceExpression.toString());
-            translation.put(to, targetLanguage.linearize(sentenceExpression)); //Linearize the expression
-        } catch (ParseError e) {    //Sentence could not be parsed
+        return Arena.call(() -> translate(analyze(sentence, from, category), to));    //The parse is not needed once translated
+    }
+
+    /**
+     * Translates an analyzed sentence to the specified language, without parsing it again
+     *
+     * @param analysis is the analysis of the sentence to translate
+     * @param to       is the language we are translating to
+     * @return the translated sentence, or null if the sentence could not be parsed
+     */
+    public HashMap<String, String> translate(Analysis analysis, String to) {
+        if (!analysis.isComplete())     //Sentence could not be parsed
             return null;
-        }
+        HashMap<String, String> translation = new HashMap<>();
+        translation.put("Abstract", analysis.getExpr().toString());
+        translation.put(to, analysis.linearize(to)); //Linearize the expression
         return translation;
     }
 
@@ -52,22 +68,28 @@ public class Translation {
      * @return a map of translations to all available languages
      */
     public HashMap<String, String> translateToAllLanguages(Sentence sentence, String from, String category) {
+        return Arena.call(() -> translateToAllLanguages(analyze(sentence, from, category)));   //The parse is not needed once translated
+    }
+
+    /**
+     * Translates an analyzed sentence to all the languages in the grammar, without parsing it again.
+     * The languages are linearized in parallel.
+     *
+     * @param analysis is the analysis of the sentence to translate
+     * @return a map of translations to all available languages, or null if the sentence could not be parsed
+     */
+    public HashMap<String, String> translateToAllLanguages(Analysis analysis) {
+        if (!analysis.isComplete())     //Sentence could not be parsed
+            return null;
         //Stores the translations in a Hash Map; key = language name, value = linearized expr (translation)
         HashMap<String, String> translations = new HashMap<>();
-        Map<String, Concr> languages = grammar.getLanguages();      //Get languages
-        Concr sourceLanguage = grammar.getLanguages().get(from);
-        try {
-            Iterable<ExprProb> expressions = sourceLanguage.parse(category, sentence.toString());
-            Expr sentenceExpression = expressions.iterator().next().getExpr();
-            translations.put("Abstract", sentenceExpression.toString());
-            //Loop through all languages and translate to each one
-            for (Map.Entry<String, Concr> concrete : languages.entrySet()) {
-                Concr targetLanguage = concrete.getValue();
-                translations.put(concrete.getKey(), targetLanguage.linearize(sentenceExpression));
+        translations.put("Abstract", analysis.getExpr().toString());
+        //Translate to each language on the linearization workers
+        ParallelLinearizer.linearizeAll(analysis, grammar.getLanguages(), (language, linearization) -> {
+            synchronized (translations) {
+                translations.put(language, linearization);
             }
-        } catch (ParseError e) {    //Sentence could not be parsed
-            return null;
-        }
+        });
         return translations;
     }
 
@@ -0,0 +1,372 @@
+package com.minibar.model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * A memory of past translations, so a sentence translated before is shown at once while it is parsed again.
+ * Translations are keyed by the grammar fingerprint, the language of the sentence, the start category and the
+ * sentence with its white space collapsed. Exact matches are a hash lookup. Near matches are found through an
+ * inverted index of the word pairs of the sentences, scored by the share of word pairs they have in common.
+ * <p>
+ * The memory keeps at most maxEntries sentences, the least recently used are forgotten first. It can be backed by
+ * a file, where every translation is appended as a line of tab separated fields: fingerprint, language, category,
+ * sentence, then pairs of language and translation. The file is read on a background thread, lookups made before
+ * it is read miss, and it is rewritten without the old lines once it holds twice as many lines as the memory.
+ */
+public class TranslationMemory implements Closeable {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final double DEFAULT_MIN_SIMILARITY = 0.5;
+    private static final String START = "<s>", END = "</s>";
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);  //Access order
+    private final Map<String, Set<Entry>> index = new HashMap<>();  //Word pair, with the key context, to its sentences
+    private final Path file;
+    private Writer out;
+    private long lines;     //Lines in the file
+    private CompletableFuture<Void> loaded = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates an empty memory, kept in memory only
+     *
+     * @param maxEntries is the maximum number of sentences remembered
+     */
+    public TranslationMemory(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    private TranslationMemory(int maxEntries, Path file) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.file = file;
+    }
+
+    /**
+     * Opens a memory backed by a file, which is read on a background thread
+     *
+     * @param file       is the file, created if it does not exist
+     * @param maxEntries is the maximum number of sentences remembered
+     * @return the memory, empty until the file is read
+     * @throws IOException if the file can not be opened for writing
+     */
+    public static TranslationMemory open(Path file, int maxEntries) throws IOException {
+        TranslationMemory memory = new TranslationMemory(maxEntries, file);
+        memory.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        memory.loaded = CompletableFuture.runAsync(memory::load, task -> {
+            Thread thread = new Thread(task, "translation-memory-loader");
+            thread.setDaemon(true);     //Do not keep the application running
+            thread.start();
+        });
+        return memory;
+    }
+
+    /**
+     * @return a future completed once the file is read
+     */
+    public CompletableFuture<Void> getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reads the lines of the file, the translations remembered since it was opened are kept over the ones read
+     */
+    private void load() {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 4 || fields.length % 2 != 0) continue;  //Cut short by a crash
+                Map<String, String> translations = new HashMap<>();
+                for (int i = 4; i < fields.length; i += 2) translations.put(fields[i], fields[i + 1]);
+                synchronized (this) {
+                    lines++;
+                    Key key = new Key(fields[0], fields[1], fields[2], fields[3]);
+                    Entry entry = entries.get(key);
+                    if (entry == null || entry.fromFile) add(key, translations, true);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not read the translation memory: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (out != null && lines > 2L * maxEntries) compact();
+            } catch (IOException e) {
+                System.out.println("Could not compact the translation memory: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Looks up a sentence, or the most similar one if it was never translated
+     *
+     * @param grammar       is the fingerprint of the grammar
+     * @param language      is the language of the sentence
+     * @param category      is the start category
+     * @param sentence      is the sentence
+     * @param minSimilarity is the similarity below which near matches are ignored, from 0 to 1
+     * @return the match, or null if there is none
+     */
+    public synchronized Match lookup(String grammar, String language, String category, String sentence, double minSimilarity) {
+        Key key = new Key(grammar, language, category, normalize(sentence));
+        Entry exact = entries.get(key);
+        if (exact != null) return new Match(exact.key.sentence, exact.translations, 1, true);
+        List<String> pairs = wordPairs(key);
+        Map<Entry, Integer> shared = new HashMap<>();
+        for (String pair : pairs) {
+            Set<Entry> sentences = index.get(pair);
+            if (sentences != null) for (Entry entry : sentences) shared.merge(entry, 1, Integer::sum);
+        }
+        Entry best = null;
+        double bestSimilarity = minSimilarity;
+        for (Map.Entry<Entry, Integer> candidate : shared.entrySet()) {
+            //Dice coefficient of the two sets of word pairs
+            double similarity = 2.0 * candidate.getValue() / (pairs.size() + candidate.getKey().pairs.size());
+            if (similarity >= bestSimilarity && (best == null || similarity > bestSimilarity)) {
+                best = candidate.getKey();
+                bestSimilarity = similarity;
+            }
+        }
+        if (best == null) return null;
+        entries.get(best.key);  //Keep it from being forgotten
+        return new Match(best.key.sentence, best.translations, bestSimilarity, false);
+    }
+
+    /**
+     * Remembers translations of a sentence, with the ones remembered before for other languages
+     *
+     * @param grammar      is the fingerprint of the grammar
+     * @param language     is the language of the sentence
+     * @param category     is the start category
+     * @param sentence     is the sentence
+     * @param translations are the translations by language, and the abstract expression under "Abstract"
+     */
+    public synchronized void put(String grammar, String language, String category, String sentence,
+                                 Map<String, String> translations) {
+        Key key = new Key(grammar, language, category, normalize(sentence));
+        Entry previous = entries.get(key);
+        Map<String, String> merged = new HashMap<>();
+        if (previous != null && Objects.equals(previous.translations.get("Abstract"), translations.get("Abstract")))
+            merged.putAll(previous.translations);
+        merged.putAll(translations);
+        if (previous != null && merged.equals(previous.translations)) return;
+        add(key, merged, false);
+        append(key, merged);
+    }
+
+    /**
+     * Forgets a sentence, e.g. when it no longer parses
+     */
+    public synchronized void remove(String grammar, String language, String category, String sentence) {
+        Key key = new Key(grammar, language, category, normalize(sentence));
+        Entry entry = entries.remove(key);
+        if (entry == null) return;
+        unindex(entry);
+        append(key, Collections.emptyMap());    //Read back as no translations, which is a miss
+    }
+
+    private void add(Key key, Map<String, String> translations, boolean fromFile) {
+        Entry previous = entries.remove(key);
+        if (previous != null) unindex(previous);
+        if (translations.isEmpty()) return;
+        Entry entry = new Entry(key, Collections.unmodifiableMap(translations), wordPairs(key), fromFile);
+        entries.put(key, entry);
+        for (String pair : entry.pairs) index.computeIfAbsent(pair, p -> new HashSet<>()).add(entry);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            unindex(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String pair : entry.pairs) {
+            Set<Entry> sentences = index.get(pair);
+            if (sentences == null) continue;
+            sentences.remove(entry);
+            if (sentences.isEmpty()) index.remove(pair);
+        }
+    }
+
+    private void append(Key key, Map<String, String> translations) {
+        if (out == null) return;
+        try {
+            out.write(line(key, translations));
+            out.flush();    //Translations are rare, nothing is lost if the application is killed
+            if (++lines > 2L * maxEntries && loaded.isDone()) compact();
+        } catch (IOException e) {
+            System.out.println("Stopped writing the translation memory: " + e.getMessage());
+            out = null;
+        }
+    }
+
+    /**
+     * Rewrites the file with only the sentences remembered, oldest first
+     */
+    private void compact() throws IOException {
+        Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer compacted = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) compacted.write(line(entry.key, entry.translations));
+        }
+        if (out != null) out.close();
+        Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        lines = entries.size();
+    }
+
+    private static String line(Key key, Map<String, String> translations) {
+        StringBuilder line = new StringBuilder().append(field(key.grammar)).append('\t').append(field(key.language))
+                .append('\t').append(field(key.category)).append('\t').append(field(key.sentence));
+        for (Map.Entry<String, String> translation : translations.entrySet())
+            line.append('\t').append(field(translation.getKey())).append('\t').append(field(translation.getValue()));
+        return line.append('\n').toString();
+    }
+
+    private static String field(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * @return the number of sentences remembered
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) out.close();
+        out = null;
+    }
+
+    /**
+     * Fingerprints a grammar file by its contents, so translations are not reused after the grammar changes.
+     * The file is read as a stream, not mapped, so it can be replaced while or after it is fingerprinted
+     *
+     * @param grammar is the path of the .pgf file
+     * @return the fingerprint
+     * @throws IOException if the file can not be read
+     */
+    public static String fingerprint(Path grammar) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        long size = 0;
+        try (InputStream in = Files.newInputStream(grammar)) {
+            for (int n; (n = in.read(buffer)) > 0; size += n) crc.update(buffer, 0, n);
+        }
+        return Long.toHexString(crc.getValue()) + "-" + size;
+    }
+
+    /**
+     * Collapses white space so that "these  pizzas " and "these pizzas" are the same sentence
+     */
+    private static String normalize(String sentence) {
+        return sentence.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * @return the distinct pairs of neighbouring words of the sentence, with its start and end, prefixed with
+     * the grammar, language and category so that only sentences with the same ones match
+     */
+    private static List<String> wordPairs(Key key) {
+        String context = key.grammar + '\t' + key.language + '\t' + key.category + '\t';
+        String[] words = key.sentence.isEmpty() ? new String[0] : key.sentence.toLowerCase(Locale.ROOT).split(" ");
+        Set<String> pairs = new LinkedHashSet<>();
+        String previous = START;
+        for (String word : words) {
+            pairs.add(context + previous + ' ' + word);
+            previous = word;
+        }
+        pairs.add(context + previous + ' ' + END);
+        return new ArrayList<>(pairs);
+    }
+
+    /**
+     * A remembered sentence found by a lookup
+     */
+    public static final class Match {
+        private final String sentence;
+        private final Map<String, String> translations;
+        private final double similarity;
+        private final boolean exact;
+
+        private Match(String sentence, Map<String, String> translations, double similarity, boolean exact) {
+            this.sentence = sentence;
+            this.translations = translations;
+            this.similarity = similarity;
+            this.exact = exact;
+        }
+
+        /**
+         * @return the remembered sentence, which differs from the one looked up unless the match is exact
+         */
+        public String getSentence() {
+            return sentence;
+        }
+
+        /**
+         * @return the translations by language, and the abstract expression under "Abstract"
+         */
+        public Map<String, String> getTranslations() {
+            return translations;
+        }
+
+        /**
+         * @return the share of word pairs the sentences have in common, 1 for an exact match or one differing in case
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        /**
+         * @return true if the sentence itself was remembered
+         */
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    private static final class Key {
+        private final String grammar, language, category, sentence;
+
+        private Key(String grammar, String language, String category, String sentence) {
+            this.grammar = grammar;
+            this.language = language;
+            this.category = category;
+            this.sentence = sentence;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return grammar.equals(key.grammar) && language.equals(key.language)
+                    && category.equals(key.category) && sentence.equals(key.sentence);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(grammar, language, category, sentence);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final Map<String, String> translations;
+        private final List<String> pairs;
+        private final boolean fromFile;     //Read from the file, not translated since it was opened
+
+        private Entry(Key key, Map<String, String> translations, List<String> pairs, boolean fromFile) {
+            this.key = key;
+            this.translations = translations;
+            this.pairs = pairs;
+            this.fromFile = fromFile;
+        }
+    }
+}
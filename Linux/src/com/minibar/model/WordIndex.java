@@ -0,0 +1,147 @@
+package com.minibar.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A sorted index over a list of words, used to answer "words starting with" queries while the user is typing.
+ * Results keep the order of the original list, so ranked suggestions stay ranked after filtering. Words may instead
+ * be given scores, then results are ordered by score and only the best are picked, with a bounded heap.
+ */
+public class WordIndex {
+    private final String[] words;     //Words in their original order
+    private final double[] scores;    //Score of each word, highest first, or null to keep the original order
+    private final String[] sorted;    //Words in lexicographic order
+    private final int[] positions;    //positions[i] is the index in words of sorted[i]
+
+    /**
+     * Creates an index over the words provided
+     *
+     * @param words is the list of words, in the order results should be returned in
+     */
+    public WordIndex(List<String> words) {
+        this(words, null);
+    }
+
+    /**
+     * Creates an index over scored words, results are ordered by score and then by their order in the list
+     *
+     * @param words  is the list of words
+     * @param scores is the score of each word, highest first, or null to keep the order of the list
+     */
+    public WordIndex(List<String> words, double[] scores) {
+        if (scores != null && scores.length < words.size()) throw new IllegalArgumentException("A score is missing");
+        this.words = words.toArray(new String[0]);
+        this.scores = scores;
+        Integer[] order = new Integer[this.words.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparing(i -> this.words[i]));
+        sorted = new String[order.length];
+        positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = this.words[order[i]];
+            positions[i] = order[i];
+        }
+    }
+
+    /**
+     * @return the number of words in the index
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Finds the words that start with the prefix
+     *
+     * @param prefix is the part of the word typed so far
+     * @return the matching words, in their original order
+     */
+    public ArrayList<String> withPrefix(String prefix) {
+        return withPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the best words that start with the prefix.
+     * Takes O(m log k) time for m matches and a limit of k, the matches are never sorted as a whole.
+     *
+     * @param prefix is the part of the word typed so far
+     * @param limit  is the maximum number of words returned
+     * @return the best matching words, best first
+     */
+    public ArrayList<String> withPrefix(String prefix, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        if (prefix.isEmpty() && scores == null && limit >= words.length) return new ArrayList<>(Arrays.asList(words));
+        int start = 0, end = sorted.length;
+        if (!prefix.isEmpty()) {
+            start = lowerBound(prefix);
+            end = start;
+            while (end < sorted.length && sorted[end].startsWith(prefix)) end++;  //Matches are contiguous in sorted order
+        }
+        int[] heap = new int[Math.min(limit, end - start)];    //Positions of the best matches so far, worst at the root
+        int size = 0;
+        for (int i = start; i < end && heap.length > 0; i++) {
+            if (size < heap.length) {
+                heap[size] = positions[i];
+                siftUp(heap, size++);
+            } else if (ranksBefore(positions[i], heap[0])) {   //Better than the worst kept
+                heap[0] = positions[i];
+                siftDown(heap, 0, size);
+            }
+        }
+        for (int last = size - 1; last > 0; last--) {  //Moves the worst to the end, best first
+            int worst = heap[0];
+            heap[0] = heap[last];
+            heap[last] = worst;
+            siftDown(heap, 0, last);
+        }
+        ArrayList<String> result = new ArrayList<>(size);
+        for (int position : heap) result.add(words[position]);
+        return result;
+    }
+
+    /**
+     * @return whether the word at position a ranks before the word at position b
+     */
+    private boolean ranksBefore(int a, int b) {
+        if (scores != null && scores[a] != scores[b]) return scores[a] > scores[b];
+        return a < b;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0 && ranksBefore(heap[(i - 1) / 2], heap[i])) {
+            int parent = (i - 1) / 2, swap = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = swap;
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1])) child++;  //The child ranking last
+            if (!ranksBefore(heap[i], heap[child])) return;
+            int swap = heap[i];
+            heap[i] = heap[child];
+            heap[child] = swap;
+            i = child;
+        }
+    }
+
+    /**
+     * @param key is the string to search for
+     * @return the index of the first sorted word that is not smaller than key
+     */
+    private int lowerBound(String key) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
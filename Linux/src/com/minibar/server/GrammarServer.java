@@ -0,0 +1,504 @@
+package com.minibar.server;
+
+import com.minibar.model.Analysis;
+import com.minibar.model.ExprSampler;
+import com.minibar.model.GrammarRegistry;
+import com.minibar.model.Prediction;
+import com.minibar.model.Sentence;
+import com.minibar.model.Translation;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.grammaticalframework.pgf.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Serves the grammars of a directory over HTTP with the JSON API of the GF cloud server, so several tools can share
+ * one loaded grammar. Requests look like GET /grammars/Foods.pgf?command=complete&amp;from=FoodsEng&amp;input=this+piz
+ * and the commands are grammar (the default), complete, parse, linearize, translate and random.
+ * GET /grammars/ lists the grammars.
+ * <p>
+ * Requests run on virtual threads when the JVM has them, on a pool of platform threads otherwise. At most
+ * maxRunning requests run at once, maxQueued more may wait and the rest are answered 503 at once by the thread
+ * accepting the requests. Identical completions in flight at the same time are computed once.
+ * <p>
+ * Usage: java -cp bin com.minibar.server.GrammarServer [--dir grammars] [--port 41296] [--max-running n] [--max-queued n]
+ */
+public class GrammarServer {
+    public static final int DEFAULT_PORT = 41296;   //Port of the GF server
+    private static final String CONTEXT = "/grammars/";
+
+    private final Path directory;
+    private final GrammarRegistry grammarRegistry = new GrammarRegistry();
+    private final Map<Path, Grammar> grammars = new HashMap<>();     //Only grammars the registry keeps
+    private final Admission admission;
+    private final int maxRunning;
+    private final Coalescer<List<String>, List<String>> completions = new Coalescer<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server, nothing is served until it is started
+     *
+     * @param directory  is the directory of the .pgf files served
+     * @param maxRunning is the number of requests handled at once
+     * @param maxQueued  is the number of requests that may wait to be handled
+     */
+    public GrammarServer(Path directory, int maxRunning, int maxQueued) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.admission = new Admission(maxRunning, maxQueued);
+        this.maxRunning = maxRunning;
+        grammarRegistry.addUnloadListener(pgf -> {
+            synchronized (grammars) {   //Its predictions would keep the grammar loaded
+                grammars.values().removeIf(grammar -> grammar.pgf == pgf);
+            }
+        });
+    }
+
+    /**
+     * Starts serving
+     *
+     * @param host is the address to listen on, e.g. 127.0.0.1 to serve this computer only
+     * @param port is the port to listen on, 0 for any free port
+     * @throws IOException if the port can not be opened
+     */
+    public synchronized void start(String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext(CONTEXT, this::handle);
+        executor = newRequestExecutor(maxRunning);     //The queue is bounded by the admission
+        server.start();
+    }
+
+    /**
+     * Stops serving, requests being handled are abandoned
+     */
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public synchronized int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Coalescer<List<String>, List<String>> getCompletions() {
+        return completions;
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per request, if the JVM has virtual threads (Java 21)
+     *
+     * @param threads is the number of platform threads used otherwise
+     * @return the executor
+     */
+    static ExecutorService newRequestExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {     //Older JVM, or a preview feature that is not enabled
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "grammar-server-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Admits a request on the server's dispatch thread and hands it to a worker, or answers 503 at once if the
+     * queue is full
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!admission.admit()) {
+            try {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, error("Too many requests"));
+            } finally {
+                exchange.close();
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> serve(exchange));
+        } catch (RejectedExecutionException e) {    //Stopping
+            admission.withdraw();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Serves an admitted request on a worker, once its turn comes
+     */
+    private void serve(HttpExchange exchange) {
+        try {
+            admission.await();
+            try {
+                respond(exchange, 200, answer(exchange));
+            } catch (RequestException e) {
+                respond(exchange, e.status, error(e.getMessage()));
+            } catch (RuntimeException e) {  //E.g. a PGFError
+                respond(exchange, 500, error(String.valueOf(e.getMessage())));
+            } finally {
+                admission.exit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {   //The client went away
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the answer to a request, as a JSON value
+     * @throws RequestException if the request can not be answered
+     */
+    private Object answer(HttpExchange exchange) throws RequestException {
+        if (!exchange.getRequestMethod().equals("GET")) throw new RequestException(405, "Only GET is supported");
+        String name = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+        if (name.isEmpty()) return listGrammars();
+        Grammar grammar = grammar(name);
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String command = query.getOrDefault("command", "grammar");
+        switch (command) {
+            case "grammar":
+                return grammarInfo(grammar);
+            case "complete":
+                return complete(grammar, query);
+            case "parse":
+                return parse(grammar, query);
+            case "linearize":
+                return linearize(grammar, query);
+            case "translate":
+                return translate(grammar, query);
+            case "random":
+                return random(grammar, query);
+            default:
+                throw new RequestException(400, "Unknown command: " + command);
+        }
+    }
+
+    private List<String> listGrammars() throws RequestException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(file -> file.endsWith(".pgf"))
+                    .sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RequestException(500, "Could not list the grammars");
+        }
+    }
+
+    /**
+     * Loads a grammar of the directory, or finds it already loaded
+     *
+     * @param name is the file name of the grammar
+     * @return the grammar
+     * @throws RequestException if there is no such grammar
+     */
+    private Grammar grammar(String name) throws RequestException {
+        Path path = directory.resolve(name).normalize();
+        if (!name.endsWith(".pgf") || !path.getParent().equals(directory) || !Files.isRegularFile(path))
+            throw new RequestException(404, "Unknown grammar: " + name);
+        PGF pgf;
+        try {
+            pgf = grammarRegistry.load(path.toString(), progress -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "Interrupted while loading " + name);
+        } catch (ExecutionException e) {
+            throw new RequestException(500, "Could not load " + name + ": " + e.getCause().getMessage());
+        }
+        synchronized (grammars) {   //Predictions register their word history in a shared map, create them here
+            Grammar grammar = grammars.get(path);
+            if (grammar == null || grammar.pgf != pgf) {    //New, or reloaded since
+                grammar = new Grammar(path.toString(), pgf, maxRunning);
+                grammars.put(path, grammar);
+            }
+            return grammar;
+        }
+    }
+
+    private static Map<String, Object> grammarInfo(Grammar grammar) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", grammar.pgf.getAbstractName());
+        info.put("startcat", grammar.pgf.getStartCat());
+        info.put("categories", grammar.pgf.getCategories());
+        info.put("functions", grammar.pgf.getFunctions());
+        List<Map<String, Object>> languages = new ArrayList<>();
+        for (String language : grammar.languageNames) languages.add(Collections.singletonMap("name", language));
+        info.put("languages", languages);
+        return info;
+    }
+
+    /**
+     * The words that may follow the input, the last word of the input being the prefix of the next word
+     */
+    private List<Object> complete(Grammar grammar, Map<String, String> query) throws RequestException {
+        String input = query.getOrDefault("input", "");
+        String category = query.getOrDefault("cat", grammar.pgf.getStartCat());
+        int limit = intParameter(query, "limit", Integer.MAX_VALUE);
+        int split = input.lastIndexOf(' ') + 1;
+        String text = input.substring(0, split), prefix = input.substring(split);   //As MainController splits
+        List<Object> results = new ArrayList<>();
+        for (String from : languages(grammar, query.get("from"))) {
+            List<String> key = Arrays.asList(grammar.path, from, category, text, prefix);
+            List<String> words = completions.get(key, () -> grammar.predict(text, prefix, from, category));
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            result.put("text", prefix);
+            result.put("completions", words.subList(0, Math.min(limit, words.size())));
+            results.add(result);
+        }
+        return results;
+    }
+
+    private List<Object> parse(Grammar grammar, Map<String, String> query) throws RequestException {
+        String input = required(query, "input");
+        String category = query.getOrDefault("cat", grammar.pgf.getStartCat());
+        int limit = intParameter(query, "limit", Analysis.MAX_EXPRESSIONS);
+        List<Object> results = new ArrayList<>();
+        for (String from : languages(grammar, query.get("from"))) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            Arena.run(() -> {
+                Analysis analysis = Analysis.parse(grammar.pgf, grammar.languages.get(from), new Sentence(input), category, limit);
+                if (analysis.isComplete())
+                    result.put("trees", analysis.getExpressions().stream().map(Expr::toString).collect(Collectors.toList()));
+                else
+                    result.put("parseFailed", input);
+            });
+            results.add(result);
+        }
+        return results;
+    }
+
+    private List<Object> linearize(Grammar grammar, Map<String, String> query) throws RequestException {
+        Expr tree;
+        try {
+            tree = Expr.readExpr(required(query, "tree"));
+        } catch (PGFError e) {
+            throw new RequestException(400, "Invalid tree: " + e.getMessage());
+        }
+        List<Object> results = new ArrayList<>();
+        for (String to : languages(grammar, query.get("to"))) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("to", to);
+            result.put("text", Analysis.linearize(grammar.languages.get(to), tree));
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Parses the input once in each source language and translates the most probable tree
+     */
+    private List<Object> translate(Grammar grammar, Map<String, String> query) throws RequestException {
+        String input = required(query, "input");
+        String category = query.getOrDefault("cat", grammar.pgf.getStartCat());
+        String to = query.get("to");
+        if (to != null) languages(grammar, to);     //Check it exists
+        List<Object> results = new ArrayList<>();
+        for (String from : languages(grammar, query.get("from"))) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            Arena.run(() -> {
+                Analysis analysis = grammar.translation.analyze(new Sentence(input), from, category);
+                if (analysis.isComplete()) {
+                    Map<String, String> translated = to == null ? grammar.translation.translateToAllLanguages(analysis)
+                            : grammar.translation.translate(analysis, to);
+                    List<Object> linearizations = new ArrayList<>();
+                    for (String language : grammar.languageNames) {
+                        if (!translated.containsKey(language)) continue;
+                        Map<String, Object> linearization = new LinkedHashMap<>();
+                        linearization.put("to", language);
+                        linearization.put("text", translated.get(language));
+                        linearizations.add(linearization);
+                    }
+                    Map<String, Object> translation = new LinkedHashMap<>();
+                    translation.put("tree", translated.get("Abstract"));
+                    translation.put("linearizations", linearizations);
+                    result.put("translations", Collections.singletonList(translation));
+                } else {
+                    result.put("parseFailed", input);
+                }
+            });
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Random trees, sampled with the probabilities of the grammar like the Random button
+     */
+    private List<Object> random(Grammar grammar, Map<String, String> query) throws RequestException {
+        String category = query.getOrDefault("cat", grammar.pgf.getStartCat());
+        int limit = intParameter(query, "limit", 1);
+        int depth = intParameter(query, "depth", ExprSampler.DEFAULT_MAX_DEPTH);
+        ExprSampler sampler = ExprSampler.of(grammar.pgf);
+        if (!sampler.canSample(category)) throw new RequestException(400, "No trees of category " + category);
+        List<Object> results = new ArrayList<>();
+        Random random = ThreadLocalRandom.current();
+        for (int i = 0; i < limit; i++)
+            results.add(Collections.singletonMap("tree", sampler.sampleTree(category, depth, random)));
+        return results;
+    }
+
+    /**
+     * @param language is a language of the grammar, or null for all of them
+     * @return the languages asked for
+     * @throws RequestException if the grammar has no such language
+     */
+    private static List<String> languages(Grammar grammar, String language) throws RequestException {
+        if (language == null) return grammar.languageNames;
+        if (!grammar.languages.containsKey(language)) throw new RequestException(400, "Unknown language: " + language);
+        return Collections.singletonList(language);
+    }
+
+    private static String required(Map<String, String> query, String name) throws RequestException {
+        String value = query.get(name);
+        if (value == null) throw new RequestException(400, "Missing parameter: " + name);
+        return value;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) throws RequestException {
+        String value = query.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0) throw new NumberFormatException();
+            return number;
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws RequestException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) return parameters;
+        try {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new RequestException(400, "Invalid query");
+        }
+        return parameters;
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object answer) throws IOException {
+        byte[] body = Json.write(answer).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");  //Like the GF server, for web tools
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Starts a server from the command line
+     *
+     * @param args are the command line options, see usage()
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) usage("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        GrammarServer server = new GrammarServer(Paths.get(options.getOrDefault("dir", "grammars")),
+                Integer.parseInt(options.getOrDefault("max-running", String.valueOf(cores))),
+                Integer.parseInt(options.getOrDefault("max-queued", "256")));
+        String host = options.getOrDefault("host", "127.0.0.1");
+        server.start(host, Integer.parseInt(options.getOrDefault("port", String.valueOf(DEFAULT_PORT))));
+        System.out.println("Serving " + server.directory + " on http://" + host + ":" + server.getPort() + CONTEXT);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: GrammarServer [--dir <directory>] [--host <address>] [--port <port>]"
+                + " [--max-running <n>] [--max-queued <n>]");
+        System.exit(2);
+    }
+
+    /**
+     * A grammar being served, with the objects shared by its requests
+     */
+    private static final class Grammar {
+        private final String path;
+        private final PGF pgf;
+        private final Map<String, Concr> languages;
+        private final List<String> languageNames;   //Sorted
+        private final Translation translation;
+        private final BlockingQueue<Prediction> predictions;    //Keep their completion state, one request at a time
+
+        private Grammar(String path, PGF pgf, int predictions) {
+            this.path = path;
+            this.pgf = pgf;
+            this.languages = pgf.getLanguages();
+            this.languageNames = languages.keySet().stream().sorted().collect(Collectors.toList());
+            this.translation = new Translation(pgf);
+            this.predictions = new ArrayBlockingQueue<>(predictions);
+            for (int i = 0; i < predictions; i++) this.predictions.add(new Prediction(pgf));
+        }
+
+        /**
+         * Predicts the next word on one of the predictions not in use
+         */
+        private List<String> predict(String text, String prefix, String language, String category) {
+            Prediction prediction;
+            try {
+                prediction = predictions.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a prediction");
+            }
+            try {
+                return prediction.predictNextWord(text, prefix, language, category);
+            } finally {
+                predictions.add(prediction);
+            }
+        }
+    }
+
+    /**
+     * A request that can not be answered, with the HTTP status to answer it with
+     */
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.minibar.tests;
+
+import com.minibar.server.Admission;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for Admission class
+ */
+public final class AdmissionTest {
+
+    /**
+     * Tests that requests beyond the running and queued ones are turned away
+     */
+    @Test
+    void testQueueIsBounded() throws InterruptedException {
+        Admission admission = new Admission(1, 1);
+        assertTrue(admission.enter());      //Runs
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        Thread queued = new Thread(() -> {
+            try {
+                if (admission.enter()) {
+                    queuedRan.countDown();
+                    admission.exit();
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        queued.start();
+        while (admission.getAdmitted() < 2) Thread.sleep(1);
+        assertFalse(admission.enter());     //Queue full
+        assertEquals(1, admission.getRejectedCount());
+        assertFalse(queuedRan.await(50, TimeUnit.MILLISECONDS));   //Still waiting for its turn
+        admission.exit();
+        assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+        queued.join();
+        assertEquals(0, admission.getAdmitted());
+    }
+
+    /**
+     * Tests that the limits are checked
+     */
+    @Test
+    void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new Admission(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Admission(1, -1));
+    }
+}
@@ -0,0 +1,70 @@
+package com.minibar.tests;
+
+import com.minibar.model.Sentence;
+import com.minibar.model.Translation;
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for Arena class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class ArenaTest {
+
+    /**
+     * Tests that arenas nest and must be closed innermost first
+     */
+    @Test
+    void testNesting() {
+        Arena outer = Arena.open();
+        Arena inner = Arena.open();
+        assertThrows(IllegalStateException.class, outer::close);
+        inner.close();
+        inner.close();  //Closing twice has no effect
+        outer.close();
+        assertEquals(0, outer.size());
+    }
+
+    /**
+     * Tests that closing an arena frees the pools used for parsing
+     */
+    @Test
+    void testParseIsFreed() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Concr english = grammar.getLanguages().get("FoodsEng");
+            long live = Arena.getLivePools();
+            try (Arena arena = Arena.open()) {
+                english.parse(grammar.getStartCat(), "this pizza is warm").iterator().next();
+                assertTrue(arena.size() > 0);
+                assertTrue(Arena.getLivePools() > live);
+            }
+            assertEquals(live, Arena.getLivePools());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        } catch (ParseError e) {
+            fail("Sentence not parsed");
+        }
+    }
+
+    /**
+     * Tests that a grammar loaded inside an arena outlives it
+     */
+    @Test
+    void testGrammarOutlivesArena() {
+        try {
+            PGF grammar = Arena.call(() -> PGF.readPGF("grammars/Foods.pgf"));
+            Translation translation = new Translation(grammar);
+            assertEquals("this pizza is warm", translation.translate(new Sentence("this pizza is warm"), "FoodsEng", "FoodsEng", grammar.getStartCat()).get("FoodsEng"));
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+}
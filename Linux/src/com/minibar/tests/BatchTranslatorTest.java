@@ -0,0 +1,49 @@
+package com.minibar.tests;
+
+import com.minibar.cli.BatchTranslator;
+import org.grammaticalframework.pgf.PGF;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BatchTranslator class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class BatchTranslatorTest {
+
+    /**
+     * Tests that results are written in the input order and failures are counted
+     */
+    @Test
+    void testRunTsv() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            BatchTranslator translator = new BatchTranslator(grammar, "FoodsEng", new String[]{"FoodsEng"},
+                    grammar.getStartCat(), BatchTranslator.Format.TSV, 4, 2);
+            StringBuilder input = new StringBuilder();
+            for (int i = 0; i < 20; i++) input.append(i % 5 == 0 ? "those boring cheeses are war\n" : "this pizza is warm\n");
+            StringWriter output = new StringWriter();
+            BatchTranslator.Summary summary = translator.run(new BufferedReader(new StringReader(input.toString())), output);
+            String[] lines = output.toString().split("\n");
+            assertEquals(21, lines.length);     //Header and one line per sentence
+            for (int i = 1; i <= 20; i++) {
+                String[] columns = lines[i].split("\t", -1);
+                assertEquals(String.valueOf(i), columns[0]);
+                assertEquals((i - 1) % 5 == 0 ? "" : "this pizza is warm", columns[3]);
+            }
+            assertEquals(20, summary.getSentences());
+            assertEquals(4, summary.getFailures());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.minibar.tests;
+
+import com.minibar.model.Analysis;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+import org.grammaticalframework.pgf.TokenProb;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the Flight Recorder events of the grammar operations
+ * Uses grammars/Foods.pgf to test
+ */
+public final class GrammarEventTest {
+
+    /**
+     * Tests that loading, parsing, linearizing and completing are recorded with their language and results
+     */
+    @Test
+    void testEventsAreRecorded() throws IOException, ParseError {
+        Path file = Files.createTempFile("grammar-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.grammaticalframework.pgf.ReadPGF");
+            recording.enable("org.grammaticalframework.pgf.Parse");
+            recording.enable("org.grammaticalframework.pgf.Complete");
+            recording.enable("org.grammaticalframework.pgf.Linearize");
+            recording.start();
+            PGF grammar = PGF.readPGF(Paths.get("grammars/Foods.pgf"));
+            Concr english = grammar.getLanguages().get("FoodsEng");
+            Arena.run(() -> {
+                Analysis.linearize(english, english.parse(grammar.getStartCat(), "this pizza is warm").iterator().next().getExpr());
+                for (TokenProb token : english.complete(grammar.getStartCat(), "this", "")) assertNotNull(token.getToken());
+            });
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<String> names = events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toList());
+            assertTrue(names.contains("org.grammaticalframework.pgf.ReadPGF"));
+            assertTrue(names.contains("org.grammaticalframework.pgf.Complete"));
+            assertTrue(names.contains("org.grammaticalframework.pgf.Linearize"));
+            RecordedEvent parse = events.stream()
+                    .filter(event -> event.getEventType().getName().equals("org.grammaticalframework.pgf.Parse"))
+                    .findFirst().orElseThrow(AssertionError::new);
+            assertEquals("Foods", parse.getString("grammar"));
+            assertEquals("FoodsEng", parse.getString("language"));
+            assertEquals("this pizza is warm".length(), parse.getLong("inputLength"));
+            assertTrue(parse.getInt("resultCount") >= 1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.minibar.tests;
+
+import com.minibar.model.GrammarPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for GrammarPool class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class GrammarPoolTest {
+
+    /**
+     * Tests that parses, completions and linearizations run on the replicas give the usual results
+     */
+    @Test
+    void testRequests() throws IOException {
+        try (GrammarPool pool = new GrammarPool("grammars/Foods.pgf", 2)) {
+            assertEquals(2, pool.size());
+            assertEquals(Collections.singletonList("Pred (This Pizza) Warm"),
+                    pool.parse("FoodsEng", "Comment", "this pizza is warm", 10).join());
+            assertTrue(pool.parse("FoodsEng", "Comment", "this pizza is", 10).join().isEmpty());
+            assertTrue(pool.complete("FoodsEng", "Comment", "this", "piz").join().contains("pizza"));
+            assertEquals("this pizza is warm", pool.linearize("FoodsEng", "Pred (This Pizza) Warm").join());
+        }
+    }
+
+    /**
+     * Tests that many parses at once all complete, each replica used by one thread at a time
+     */
+    @Test
+    void testConcurrentParses() throws IOException {
+        try (GrammarPool pool = new GrammarPool("grammars/Foods.pgf", 4)) {
+            List<CompletableFuture<List<String>>> parses = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                parses.add(pool.parse("FoodsEng", "Comment", i % 2 == 0 ? "this pizza is warm" : "that wine is Italian", 1));
+            for (int i = 0; i < parses.size(); i++)
+                assertEquals(i % 2 == 0 ? "Pred (This Pizza) Warm" : "Pred (That Wine) Italian", parses.get(i).join().get(0));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.minibar.tests;
+
+import com.minibar.model.GrammarRegistry;
+import org.grammaticalframework.pgf.PGF;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for GrammarRegistry class
+ * Uses grammars/Foods.pgf and grammars/Letter.pgf to test
+ */
+public final class GrammarRegistryTest {
+
+    /**
+     * Tests that a grammar is loaded once and reported as loaded
+     */
+    @Test
+    void testLoad() {
+        GrammarRegistry registry = new GrammarRegistry();
+        List<Double> progress = new ArrayList<>();
+        PGF first = registry.load("grammars/Foods.pgf", progress::add).join();
+        PGF second = registry.load("grammars/Foods.pgf", fraction -> {
+        }).join();
+        assertSame(first, second);
+        assertEquals("Foods", first.getAbstractName());
+        assertTrue(registry.isLoaded("grammars/Foods.pgf"));
+        assertEquals(1, registry.size());
+        assertEquals(new File("grammars/Foods.pgf").length(), registry.getByteSize());
+        assertEquals(1.0, progress.get(progress.size() - 1));
+    }
+
+    /**
+     * Tests that a grammar over the budget is dropped once another grammar is loaded
+     */
+    @Test
+    void testEviction() {
+        GrammarRegistry registry = new GrammarRegistry(1);
+        PGF first = registry.load("grammars/Foods.pgf", fraction -> {
+        }).join();
+        assertEquals(1, registry.size());   //The grammar just requested is always kept
+        registry.clear();
+        assertFalse(registry.isLoaded("grammars/Foods.pgf"));
+        assertNotSame(first, registry.load("grammars/Foods.pgf", fraction -> {
+        }).join());
+    }
+
+    /**
+     * Tests that the unload listeners are told about the grammars evicted and cleared
+     */
+    @Test
+    void testUnloadListener() {
+        GrammarRegistry registry = new GrammarRegistry(1);
+        List<PGF> unloaded = new ArrayList<>();
+        registry.addUnloadListener(unloaded::add);
+        PGF foods = registry.load("grammars/Foods.pgf", fraction -> {
+        }).join();
+        PGF letter = registry.load("grammars/Letter.pgf", fraction -> {
+        }).join();
+        assertEquals(Collections.singletonList(foods), unloaded);   //Over the budget
+        registry.clear();
+        assertEquals(Arrays.asList(foods, letter), unloaded);
+    }
+
+    /**
+     * Tests that a missing file fails to load
+     */
+    @Test
+    void testMissingFile() {
+        GrammarRegistry registry = new GrammarRegistry();
+        assertThrows(CompletionException.class, () -> registry.load("grammars/Missing.pgf", fraction -> {
+        }).join());
+        assertEquals(0, registry.size());
+    }
+}
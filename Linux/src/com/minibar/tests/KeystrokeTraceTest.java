@@ -0,0 +1,55 @@
+package com.minibar.tests;
+
+import com.minibar.model.KeystrokeTrace;
+import com.minibar.model.KeystrokeTrace.Keystroke;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for KeystrokeTrace class
+ */
+public final class KeystrokeTraceTest {
+
+    /**
+     * Tests that recorded keystrokes are read back in order, with the spaces typed kept
+     */
+    @Test
+    void testRecordAndRead() throws IOException {
+        Path trace = Files.createTempFile("trace", ".tsv");
+        try {
+            try (KeystrokeTrace.Recorder recorder = new KeystrokeTrace.Recorder(trace)) {
+                recorder.record(1, KeystrokeTrace.Type.KEY, "grammars/Foods.pgf", "FoodsEng", "All", "Comment", "this ");
+                recorder.record(2, KeystrokeTrace.Type.ENTER, "grammars/Foods.pgf", "FoodsEng", "FoodsIta", "Comment", "a\tb");
+            }
+            List<Keystroke> keystrokes = KeystrokeTrace.read(trace);
+            assertEquals(2, keystrokes.size());
+            assertEquals("this ", keystrokes.get(0).getText());
+            assertEquals(KeystrokeTrace.Type.ENTER, keystrokes.get(1).getType());
+            assertEquals("FoodsIta", keystrokes.get(1).getTo());
+            assertEquals("a b", keystrokes.get(1).getText());    //Tabs would break the trace
+            assertTrue(keystrokes.get(0).getMicros() <= keystrokes.get(1).getMicros());
+        } finally {
+            Files.delete(trace);
+        }
+    }
+
+    /**
+     * Tests that a file which is not a trace is rejected
+     */
+    @Test
+    void testInvalidTrace() throws IOException {
+        Path trace = Files.createTempFile("trace", ".tsv");
+        try {
+            Files.write(trace, "not a keystroke\n".getBytes());
+            assertThrows(IOException.class, () -> KeystrokeTrace.read(trace));
+        } finally {
+            Files.delete(trace);
+        }
+    }
+}
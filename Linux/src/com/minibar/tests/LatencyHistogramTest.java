@@ -0,0 +1,49 @@
+package com.minibar.tests;
+
+import com.minibar.cli.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram class
+ */
+public final class LatencyHistogramTest {
+
+    /**
+     * Tests that an empty histogram reports zeros
+     */
+    @Test
+    void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.mean());
+    }
+
+    /**
+     * Tests that small latencies are counted exactly
+     */
+    @Test
+    void testExactPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 50; micros++) histogram.record(micros * 1000L);
+        assertEquals(50, histogram.getCount());
+        assertEquals(0.025, histogram.percentile(50), 1e-9);
+        assertEquals(0.050, histogram.percentile(99), 1e-9);
+        assertEquals(0.001, histogram.percentile(0), 1e-9);
+    }
+
+    /**
+     * Tests that large latencies are reported within the precision of the buckets
+     */
+    @Test
+    void testLargePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) histogram.record(millis * 1_000_000L);
+        assertEquals(500, histogram.percentile(50), 500 * 0.04);
+        assertEquals(990, histogram.percentile(99), 990 * 0.04);
+        assertEquals(1000, histogram.max(), 1e-9);
+        assertEquals(500.5, histogram.mean(), 1e-9);
+    }
+}
@@ -0,0 +1,61 @@
+package com.minibar.tests;
+
+import com.minibar.model.Analysis;
+import com.minibar.model.ParallelLinearizer;
+import com.minibar.model.Sentence;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ParallelLinearizer class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class ParallelLinearizerTest {
+
+    /**
+     * Tests that linearizing in parallel gives the same translations as linearizing one language at a time
+     */
+    @Test
+    void testLinearizeAll() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Map<String, Concr> languages = grammar.getLanguages();
+            Analysis analysis = Analysis.parse(grammar, new Sentence("those boring cheeses are warm"), "FoodsEng", grammar.getStartCat());
+            Map<String, String> actual = new HashMap<>();
+            ParallelLinearizer.linearizeAll(analysis, languages, (language, linearization) -> {
+                synchronized (actual) {
+                    actual.put(language, linearization);
+                }
+            });
+            assertEquals(languages.keySet(), actual.keySet());
+            for (Map.Entry<String, Concr> language : languages.entrySet())
+                assertEquals(language.getValue().linearize(analysis.getExpr()), actual.get(language.getKey()));
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
+    /**
+     * Tests that an incomplete sentence is not linearized
+     */
+    @Test
+    void testIncompleteSentence() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Analysis analysis = Analysis.parse(grammar, new Sentence("those boring cheeses are war"), "FoodsEng", grammar.getStartCat());
+            CompletableFuture<Void> done = ParallelLinearizer.linearizeAll(analysis, grammar.getLanguages(), Runnable::run,
+                    (language, linearization) -> fail("Incomplete sentence linearized"));
+            assertTrue(done.isDone());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+}
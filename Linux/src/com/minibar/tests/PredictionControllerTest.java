@@ -8,8 +8,13 @@ import org.junit.jupiter.api.Test;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PredictionControllerTest {
 
@@ -66,4 +71,42 @@ class PredictionControllerTest {
         String expected = "[those, that, these, this]";
         assertEquals(expected, actual.toString());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that an asynchronous prediction superseded by a newer one for the same requester is never published
+     */
+    @Test
+    void testPredictNextWordAsync() throws FileNotFoundException, InterruptedException {
+        PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+        PredictionController predictionController = new PredictionController(grammar, new ArrayList<>());
+        Object panel = new Object();
+        List<ArrayList<String>> published = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        predictionController.predictNextWordAsync(panel, "", "", "FoodsEng", grammar.getStartCat(), 50, Runnable::run, published::add);
+        predictionController.predictNextWordAsync(panel, "these", "", "FoodsEng", grammar.getStartCat(), 50, Runnable::run, words -> {
+            published.add(words);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, published.size());
+        assertEquals("[pizzas, cheeses, wines, fish, Italian, boring, warm, fresh, delicious, very, expensive]", published.get(0).toString());
+    }
+
+    /**
+     * Tests that the words stored on the prediction thread are seen by the predictions requested afterwards
+     */
+    @Test
+    void testStoreWordsAsync() throws FileNotFoundException, InterruptedException {
+        PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+        PredictionController predictionController = new PredictionController(grammar, new ArrayList<>());
+        List<ArrayList<String>> published = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        predictionController.storeWordsAsync("boring expensive warm");
+        predictionController.predictNextWordAsync(new Object(), "these", "", "FoodsEng", grammar.getStartCat(), 0, Runnable::run, words -> {
+            published.add(words);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("[warm, expensive, boring, pizzas, cheeses, wines, fish, Italian, fresh, delicious, very]", published.get(0).toString());
+    }
+}
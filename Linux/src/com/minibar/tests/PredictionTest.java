@@ -2,6 +2,7 @@ package com.minibar.tests;
 
 import com.minibar.model.Prediction;
 import com.minibar.model.Sentence;
+import com.minibar.model.SuggestionCursor;
 import org.grammaticalframework.pgf.PGF;
 import org.junit.jupiter.api.Test;
 
@@ -10,6 +11,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class PredictionTest {
@@ -135,6 +138,67 @@ class PredictionTest {
         }
     }
 
+    /**
+     * Tests that deleting words brings back the earlier suggestions
+     */
+    @Test
+    void testDeleteWordRollback() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Prediction prediction = new Prediction(grammar, new ArrayList<>());
+            ArrayList<String> expected = prediction.predictNextWord("these", "FoodsEng", grammar.getStartCat());
+            prediction.predictNextWord("these boring cheeses", "FoodsEng", grammar.getStartCat());
+            ArrayList<String> actual = prediction.predictNextWord("these", "FoodsEng", grammar.getStartCat());
+            assertEquals(expected, actual);
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
+    /**
+     * Tests that the suggestions are filtered by the word still being typed
+     */
+    @Test
+    void testPartialWord() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Prediction prediction = new Prediction(grammar, new ArrayList<>());
+            ArrayList<String> actual = prediction.predictNextWord("these", "w", "FoodsEng", grammar.getStartCat());
+            assertEquals(2, actual.size());
+            assertTrue(actual.containsAll(Arrays.asList("wines", "warm")));
+            assertEquals("[wines]", prediction.predictNextWord("these", "wi", "FoodsEng", grammar.getStartCat()).toString());
+            assertEquals("[]", prediction.predictNextWord("these", "wx", "FoodsEng", grammar.getStartCat()).toString());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
+    /**
+     * Tests that the suggestions opened are handed out a page at a time, and narrowed down as the word is typed
+     */
+    @Test
+    void testOpenSuggestions() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Prediction prediction = new Prediction(grammar, new ArrayList<>());
+            SuggestionCursor cursor = prediction.openSuggestions("these", "", "FoodsEng", grammar.getStartCat());
+            ArrayList<String> actual = cursor.next(5);
+            assertEquals(5, actual.size());
+            actual.addAll(cursor.next(100));
+            assertFalse(cursor.hasMore());
+            ArrayList<String> expected = prediction.predictNextWord("these", "FoodsEng", grammar.getStartCat());
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+            cursor = prediction.openSuggestions("these", "w", "FoodsEng", grammar.getStartCat());
+            actual = cursor.next(5);
+            assertEquals(2, actual.size());
+            assertTrue(actual.containsAll(Arrays.asList("wines", "warm")));
+            assertEquals("[]", prediction.openSuggestions("these", "wx", "FoodsEng", grammar.getStartCat()).next(5).toString());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
     /**
      * Tests that words are stored in most recently used order
      */
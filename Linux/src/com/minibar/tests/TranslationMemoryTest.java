@@ -0,0 +1,129 @@
+package com.minibar.tests;
+
+import com.minibar.model.TranslationMemory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TranslationMemory class
+ */
+public final class TranslationMemoryTest {
+    private static final String GRAMMAR = "1a2b3c-1024";
+
+    private static Map<String, String> translations(String expression, String... languagesAndTranslations) {
+        Map<String, String> translations = new HashMap<>();
+        translations.put("Abstract", expression);
+        for (int i = 0; i < languagesAndTranslations.length; i += 2)
+            translations.put(languagesAndTranslations[i], languagesAndTranslations[i + 1]);
+        return translations;
+    }
+
+    /**
+     * Tests exact lookups, keyed by grammar, language, category and the sentence with its white space collapsed
+     */
+    @Test
+    void testExactMatch() {
+        TranslationMemory memory = new TranslationMemory(10);
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm",
+                translations("Pred (This Pizza) Warm", "FoodsGer", "diese Pizza ist warm"));
+        TranslationMemory.Match match = memory.lookup(GRAMMAR, "FoodsEng", "Comment", "  this  pizza is warm ", 0.5);
+        assertNotNull(match);
+        assertTrue(match.isExact());
+        assertEquals("diese Pizza ist warm", match.getTranslations().get("FoodsGer"));
+        assertNull(memory.lookup("other", "FoodsEng", "Comment", "this pizza is warm", 0.5));
+        assertNull(memory.lookup(GRAMMAR, "FoodsIta", "Comment", "this pizza is warm", 0.5));
+        assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Item", "this pizza is warm", 0.5));
+    }
+
+    /**
+     * Tests that translations to other languages are merged, unless the sentence now has another expression
+     */
+    @Test
+    void testMerge() {
+        TranslationMemory memory = new TranslationMemory(10);
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", translations("Pred (This Pizza) Warm", "FoodsGer", "diese Pizza ist warm"));
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", translations("Pred (This Pizza) Warm", "FoodsIta", "questa pizza è calda"));
+        Map<String, String> merged = memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", 0.5).getTranslations();
+        assertEquals(3, merged.size());
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", translations("Other", "FoodsIta", "x"));
+        assertEquals(2, memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", 0.5).getTranslations().size());
+    }
+
+    /**
+     * Tests that near matches are found by their word pairs, the most similar first
+     */
+    @Test
+    void testFuzzyMatch() {
+        TranslationMemory memory = new TranslationMemory(10);
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is very warm", translations("A"));
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "that wine is expensive", translations("B"));
+        TranslationMemory.Match match = memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is very warm and", 0.5);
+        assertNotNull(match);
+        assertFalse(match.isExact());
+        assertEquals("this pizza is very warm", match.getSentence());
+        assertTrue(match.getSimilarity() > 0.5 && match.getSimilarity() < 1);
+        assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "those fish are boring", 0.5));
+        assertNull(memory.lookup(GRAMMAR, "FoodsGer", "Comment", "this pizza is very warm and", 0.5));
+    }
+
+    /**
+     * Tests that the least recently used sentences are forgotten, and no longer found by near matches
+     */
+    @Test
+    void testSizeBound() {
+        TranslationMemory memory = new TranslationMemory(2);
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", translations("A"));
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "that wine is expensive", translations("B"));
+        memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", 0.5);
+        memory.put(GRAMMAR, "FoodsEng", "Comment", "these fish are boring", translations("C"));
+        assertEquals(2, memory.size());
+        assertNotNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", 0.5));
+        assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "that wine is expensive", 0.5));
+        memory.remove(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm");
+        assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "this pizza is warm", 0.5));
+    }
+
+    /**
+     * Tests that the memory is read back from its file, and that the file is compacted
+     */
+    @Test
+    void testPersistence(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("TranslationMemory.tsv");
+        try (TranslationMemory memory = TranslationMemory.open(file, 3)) {
+            memory.getLoaded().join();
+            for (int i = 0; i < 6; i++)
+                memory.put(GRAMMAR, "FoodsEng", "Comment", "sentence " + i, translations("E" + i, "FoodsGer", "Satz\t" + i));
+            memory.remove(GRAMMAR, "FoodsEng", "Comment", "sentence 5");
+        }
+        assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).size() <= 7);
+        Files.write(file, "cut short\tby a".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (TranslationMemory memory = TranslationMemory.open(file, 3)) {
+            memory.getLoaded().join();
+            assertEquals(2, memory.size());
+            assertEquals("Satz 4", memory.lookup(GRAMMAR, "FoodsEng", "Comment", "sentence 4", 0.5).getTranslations().get("FoodsGer"));
+            assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "sentence 5", 1));
+            assertNull(memory.lookup(GRAMMAR, "FoodsEng", "Comment", "sentence 2", 1));
+        }
+    }
+
+    /**
+     * Tests that grammar files with different contents have different fingerprints
+     */
+    @Test
+    void testFingerprint(@TempDir Path directory) throws IOException {
+        Path a = Files.write(directory.resolve("a.pgf"), new byte[]{1, 2, 3});
+        Path b = Files.write(directory.resolve("b.pgf"), new byte[]{1, 2, 4});
+        assertEquals(TranslationMemory.fingerprint(a), TranslationMemory.fingerprint(a));
+        assertNotEquals(TranslationMemory.fingerprint(a), TranslationMemory.fingerprint(b));
+    }
+}
@@ -0,0 +1,94 @@
+package com.minibar.tests;
+
+import com.minibar.model.SymbolTable;
+import com.minibar.model.WordHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordHistoryTest {
+
+    /**
+     * Tests that words are listed in most recently used order
+     */
+    @Test
+    void testRecencyOrder() {
+        WordHistory history = new WordHistory(10);
+        history.use("boring");
+        history.use("expensive");
+        history.use("warm");
+        history.use("boring");
+        assertEquals("[boring, warm, expensive]", history.toList().toString());
+    }
+
+    /**
+     * Tests that a history created from a list keeps the order of the list
+     */
+    @Test
+    void testFromList() {
+        WordHistory history = new WordHistory(10, new ArrayList<>(Arrays.asList("those", "pizzas", "are")));
+        assertEquals("[those, pizzas, are]", history.toString());
+        assertTrue(history.score("those") > history.score("are"));
+    }
+
+    /**
+     * Tests that the least recently used word is forgotten when the history is full
+     */
+    @Test
+    void testCapacity() {
+        WordHistory history = new WordHistory(2);
+        history.use("this");
+        history.use("that");
+        history.use("this");
+        history.use("wine");
+        assertEquals(2, history.size());
+        assertFalse(history.contains("that"));
+        assertEquals(0, history.score("that"));
+    }
+
+    /**
+     * Tests that only the words in the history move to the front, the others keep their order
+     */
+    @Test
+    void testRank() {
+        WordHistory history = new WordHistory(10);
+        history.use("boring");
+        history.use("expensive");
+        history.use("warm");
+        ArrayList<String> ranked = history.rank(Arrays.asList("pizzas", "boring", "cheeses", "warm", "fish", "expensive"));
+        assertEquals("[warm, expensive, boring, pizzas, cheeses, fish]", ranked.toString());
+    }
+
+    /**
+     * Tests that a frequently used word outranks a word used once slightly more recently
+     */
+    @Test
+    void testFrequency() {
+        WordHistory history = new WordHistory(10);
+        for (int i = 0; i < 5; i++) history.use("pizza");
+        history.use("wine");
+        assertEquals("[pizza, wine]", history.rank(Arrays.asList("wine", "pizza")).toString());
+        assertEquals("[wine, pizza]", history.toList().toString());
+    }
+
+    /**
+     * Tests ranking by IDs, and that the slots of forgotten words are used again
+     */
+    @Test
+    void testIds() {
+        SymbolTable symbols = new SymbolTable();
+        WordHistory history = new WordHistory(2, symbols);
+        int pizza = symbols.intern("pizza"), wine = symbols.intern("wine"), fish = symbols.intern("fish");
+        history.use(pizza);
+        history.use(wine);
+        history.use(fish);
+        history.use(wine);
+        assertFalse(history.contains(pizza));
+        assertEquals("[wine, fish]", history.toString());
+        assertArrayEquals(new int[]{wine, fish, pizza}, history.rank(new int[]{pizza, fish, wine, 7}, 3));
+        assertEquals(0, history.score(-1));
+    }
+}
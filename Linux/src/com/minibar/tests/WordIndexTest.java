@@ -0,0 +1,83 @@
+package com.minibar.tests;
+
+import com.minibar.model.WordIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordIndexTest {
+
+    /**
+     * Tests that an empty prefix returns all the words in their original order
+     */
+    @Test
+    void testEmptyPrefix() {
+        WordIndex index = new WordIndex(Arrays.asList("warm", "pizzas", "wines", "very"));
+        assertEquals("[warm, pizzas, wines, very]", index.withPrefix("").toString());
+    }
+
+    /**
+     * Tests that the matching words keep their original order
+     */
+    @Test
+    void testPrefixKeepsOrder() {
+        WordIndex index = new WordIndex(Arrays.asList("wines", "pizzas", "warm", "very", "wine"));
+        assertEquals("[wines, warm, wine]", index.withPrefix("w").toString());
+        assertEquals("[wines, wine]", index.withPrefix("wi").toString());
+    }
+
+    /**
+     * Tests that the prefix is matched with case
+     */
+    @Test
+    void testCaseSensitive() {
+        WordIndex index = new WordIndex(Arrays.asList("Italian", "is", "it"));
+        assertEquals("[Italian]", index.withPrefix("I").toString());
+        assertEquals("[is, it]", index.withPrefix("i").toString());
+    }
+
+    /**
+     * Tests a prefix that no word starts with
+     */
+    @Test
+    void testNoMatches() {
+        WordIndex index = new WordIndex(Arrays.asList("fresh", "fish"));
+        assertEquals(new ArrayList<String>(), index.withPrefix("z"));
+        assertEquals(new ArrayList<String>(), index.withPrefix("fishes"));
+        assertEquals(0, new WordIndex(new ArrayList<>()).withPrefix("a").size());
+    }
+
+    /**
+     * Tests that scored words are returned best first, ties in their original order
+     */
+    @Test
+    void testScores() {
+        WordIndex index = new WordIndex(Arrays.asList("wines", "pizzas", "warm", "very", "wine"), new double[]{1, 5, 2, 2, 3});
+        assertEquals("[pizzas, wine, warm, very, wines]", index.withPrefix("").toString());
+        assertEquals("[wine, warm, wines]", index.withPrefix("w").toString());
+    }
+
+    /**
+     * Tests that only the best few matches are returned
+     */
+    @Test
+    void testLimit() {
+        WordIndex index = new WordIndex(Arrays.asList("wines", "pizzas", "warm", "very", "wine"), new double[]{1, 5, 2, 2, 3});
+        assertEquals("[pizzas, wine]", index.withPrefix("", 2).toString());
+        assertEquals("[wine]", index.withPrefix("w", 1).toString());
+        assertEquals("[]", index.withPrefix("w", 0).toString());
+        assertEquals("[wines, warm]", new WordIndex(Arrays.asList("wines", "pizzas", "warm")).withPrefix("w", 5).toString());
+        List<String> words = new ArrayList<>();
+        double[] scores = new double[1000];
+        for (int i = 0; i < scores.length; i++) {
+            words.add("word" + i);
+            scores[i] = (i * 7919) % 1000;  //Every score once, in a scrambled order
+        }
+        ArrayList<String> best = new WordIndex(words, scores).withPrefix("word", 3);
+        assertEquals(Arrays.asList("word321", "word642", "word963"), best);
+    }
+}
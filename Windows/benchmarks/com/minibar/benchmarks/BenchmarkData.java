@@ -0,0 +1,89 @@
+package com.minibar.benchmarks;
+
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+import org.grammaticalframework.pgf.TokenProb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Grammars and sentences shared by the benchmarks.
+ * The benchmarks are run from the directory the grammars folder is in, like the application.
+ */
+final class BenchmarkData {
+    static final String FOODS = "grammars/Foods.pgf";
+    static final String LETTER = "grammars/Letter.pgf";
+    private static final int ATTEMPTS = 500;    //Random sentences tried before settling for the closest length
+    private static final long SEED = 42;        //Every run benchmarks the same sentences
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param language is the name of a language of Foods.pgf or Letter.pgf
+     * @return the path of the grammar the language belongs to
+     */
+    static String grammarOf(String language) {
+        return language.startsWith("Letter") ? LETTER : FOODS;
+    }
+
+    /**
+     * Generates a complete sentence by picking random completions, like SentenceController.randomSentence,
+     * but with a fixed seed
+     *
+     * @param grammar  is the grammar being used
+     * @param language is the language of the sentence
+     * @param words    is the number of words wanted
+     * @return the sentence with the number of words closest to the one wanted
+     */
+    static String sentence(PGF grammar, String language, int words) {
+        Concr concr = grammar.getLanguages().get(language);
+        if (concr == null) throw new IllegalArgumentException("Unknown language: " + language);
+        Random random = new Random(SEED);
+        List<String> closest = Arena.call(() -> {  //Only the words are kept
+            List<String> best = null;
+            for (int attempt = 0; attempt < ATTEMPTS && (best == null || best.size() != words); attempt++) {
+                List<String> sentence = walk(concr, grammar.getStartCat(), random, words * 2);
+                if (sentence != null && (best == null || Math.abs(sentence.size() - words) < Math.abs(best.size() - words)))
+                    best = sentence;
+            }
+            return best;
+        });
+        if (closest == null) throw new IllegalStateException("Could not generate a sentence in " + language);
+        return String.join(" ", closest);
+    }
+
+    /**
+     * Follows random completions until the grammar allows no more words
+     *
+     * @return the words, or null if there were more than maxWords or they do not make a complete sentence
+     */
+    private static List<String> walk(Concr language, String category, Random random, int maxWords) {
+        List<String> words = new ArrayList<>();
+        try {
+            List<TokenProb> suggestions = complete(language, category, words);
+            while (!suggestions.isEmpty()) {
+                if (words.size() == maxWords) return null;  //Going round a loop of the grammar, e.g. "very very ..."
+                String word = suggestions.get(random.nextInt(suggestions.size())).getToken();
+                words.add(word);
+                suggestions = complete(language, category, words);
+            }
+            language.parse(category, String.join(" ", words)).iterator().next();
+            return words;
+        } catch (ParseError | NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private static List<TokenProb> complete(Concr language, String category, List<String> words) throws ParseError {
+        List<TokenProb> suggestions = new ArrayList<>();
+        for (TokenProb token : language.complete(category, String.join(" ", words), ""))
+            suggestions.add(token);
+        return suggestions;
+    }
+}
@@ -0,0 +1,66 @@
+package com.minibar.benchmarks;
+
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.Expr;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+import org.grammaticalframework.pgf.TokenProb;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion, parsing and linearization by a concrete syntax, for each language and sentence length
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcrBenchmark {
+    @Param({"FoodsEng", "FoodsGer", "FoodsFin", "LetterEng", "LetterFre"})
+    public String language;
+    @Param({"4", "8", "16"})
+    public int words;
+
+    private Concr concr;
+    private String category, sentence, typed;
+    private Expr expr;
+
+    @Setup
+    public void setUp() throws FileNotFoundException, ParseError {
+        PGF grammar = PGF.readPGF(BenchmarkData.grammarOf(language));
+        concr = grammar.getLanguages().get(language);
+        category = grammar.getStartCat();
+        sentence = BenchmarkData.sentence(grammar, language, words);
+        typed = sentence.substring(0, Math.max(0, sentence.lastIndexOf(' ')));     //Every word but the last
+        expr = concr.parse(category, sentence).iterator().next().getExpr();
+    }
+
+    /**
+     * The words that may follow the sentence without its last word
+     */
+    @Benchmark
+    public void complete(Blackhole blackhole) throws ParseError {
+        Arena.run(() -> {
+            for (TokenProb token : concr.complete(category, typed, "")) blackhole.consume(token.getToken());
+        });
+    }
+
+    /**
+     * The most probable parse of the sentence
+     */
+    @Benchmark
+    public double parse() throws ParseError {
+        return Arena.call(() -> concr.parse(category, sentence).iterator().next().getProb());
+    }
+
+    @Benchmark
+    public String linearize() {
+        return concr.linearize(expr);
+    }
+}
@@ -0,0 +1,59 @@
+package com.minibar.benchmarks;
+
+import com.minibar.model.Prediction;
+import com.minibar.model.Sentence;
+import com.minibar.model.Translation;
+import org.grammaticalframework.pgf.PGF;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word prediction and translation as the application does them, for each language and sentence length
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+    @Param({"FoodsEng", "FoodsGer", "FoodsFin", "LetterEng", "LetterFre"})
+    public String language;
+    @Param({"4", "8", "16"})
+    public int words;
+
+    private PGF grammar;
+    private Translation translation;
+    private String category, sentence;
+
+    @Setup
+    public void setUp() throws FileNotFoundException {
+        grammar = PGF.readPGF(BenchmarkData.grammarOf(language));
+        translation = new Translation(grammar);
+        category = grammar.getStartCat();
+        sentence = BenchmarkData.sentence(grammar, language, words);
+    }
+
+    /**
+     * Typing the sentence word by word and predicting the next word after each one, without cached completions
+     */
+    @Benchmark
+    public void predictNextWord(Blackhole blackhole) {
+        Prediction.getCompletionCache().clear();
+        Prediction prediction = new Prediction(grammar);
+        String text = "";
+        for (String word : sentence.split(" ")) {
+            blackhole.consume(prediction.predictNextWord(text, language, category));
+            text = text.isEmpty() ? word : text + " " + word;
+        }
+    }
+
+    @Benchmark
+    public HashMap<String, String> translateToAllLanguages() {
+        return translation.translateToAllLanguages(new Sentence(sentence), language, category);
+    }
+}
@@ -0,0 +1,9 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Completion of a sentence prefix, until the last token fetched. */
+@Name("org.grammaticalframework.pgf.Complete")
+@Label("Completion")
+class CompleteEvent extends GrammarEvent {
+}
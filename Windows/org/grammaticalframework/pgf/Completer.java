@@ -14,7 +14,7 @@ class Completer implements Iterable<TokenProb> {
 		this.startCat = startCat;
 		this.s        = s;
 		this.prefix   = prefix;
-		this.iter     = complete(concr, startCat, s, prefix);
+		this.iter     = doComplete();
 	}
 
 	public Iterator<TokenProb> iterator() {
@@ -22,7 +22,7 @@ class Completer implements Iterable<TokenProb> {
 			// If someone has asked for a second iterator over
 			// the same parse results then we have to parse again.
 			try {
-				return complete(concr, startCat, s, prefix);
+				return doComplete();
 			} catch (ParseError e) {
 				return null;
 			}
@@ -33,5 +33,23 @@ class Completer implements Iterable<TokenProb> {
 		}
 	}
 
+	private TokenIterator doComplete() throws ParseError {
+		CompleteEvent event = new CompleteEvent();
+		event.start(concr.gr, concr, startCat, s);
+		TokenIterator iter;
+		try {
+			iter = complete(concr, startCat, s, prefix);
+		} catch (ParseError | PGFError e) {
+			event.finish();
+			throw e;
+		}
+		if (iter == null) {
+			event.finish();
+			throw new PGFError("The completion failed");
+		}
+		iter.record(event);
+		return iter;
+	}
+
 	static native TokenIterator complete(Concr concr, String startCat, String s, String prefix) throws ParseError;
 }
@@ -39,6 +39,15 @@ public class Concr {
 		return new Completer(this, startCat, s, prefix);
 	}
 
+	/** Returns a cursor over the tokens which may follow the input
+	 * and start with the prefix. The tokens are only computed as
+	 * they are asked for, so the first few cost the same however
+	 * large the lexicon is.
+	 */
+	public CompletionCursor completeLazily(String startCat, String s, String prefix) throws ParseError {
+		return new CompletionCursor((TokenIterator) new Completer(this, startCat, s, prefix).iterator());
+	}
+
 	public Iterable<ExprProb> lookupSentence(String startCat, String s) {
 		return new SentenceExtractor(this, startCat, s);
 	}
@@ -116,7 +125,7 @@ public class Concr {
 	//////////////////////////////////////////////////////////////////
 	// private stuff
 	
-	private final PGF gr;
+	final PGF gr;
 	private final long ref;
 
 	private Concr(PGF gr, long ref) {
@@ -2,43 +2,106 @@ package org.grammaticalframework.pgf;
 
 import java.util.*;
 
+/** Iterates over expressions, fetching them in batches to save
+ * crossings of the native interface. Finding each expression costs
+ * parsing time, so the batches start with a single expression and
+ * grow only while the caller keeps asking for more.
+ */
 class ExprIterator implements Iterator<ExprProb> {
+	private static final int MAX_BATCH_SIZE = 64;
+
+	// false once the native library turns out to be built without fetchExprProbs
+	private static volatile boolean fetchInBatches = true;
+
 	private final PGF gr;
 	private final Pool pool;
     private final Pool out_pool;
 	private final long ref;
-	private ExprProb ep;
-	private boolean fetched;
+	private ExprProb[] buffer;
+	private int pos, len;
+	private boolean done;
+	private GrammarEvent event;
 
 	public ExprIterator(PGF gr, Pool pool, long out_pool, long ref) {
 		this.gr       = gr;
 		this.pool     = pool;
 		this.out_pool = new Pool(out_pool);
 		this.ref      = ref;
-		this.ep       = null;
-		this.fetched  = false;
+		this.buffer   = new ExprProb[1];
+		this.pos      = 0;
+		this.len      = 0;
+		this.done     = false;
 	}
 
+	/** Fills the buffer with the next expressions.
+	 * @return the number of expressions fetched, less than the size
+	 * of the buffer if there are no more expressions.
+	 */
+	private native static int fetchExprProbs(long ref, Pool pool, PGF gr, ExprProb[] buffer);
+
+	/** Fetches the next expression alone.
+	 * @return the expression, or null if there are no more.
+	 */
 	private native static ExprProb fetchExprProb(long ref, Pool pool, PGF gr);
 
+	/** Fills the buffer with {@link #fetchExprProbs}, or one expression
+	 * at a time if the native library is built without it.
+	 */
+	private static int fetchBatch(long ref, Pool pool, PGF gr, ExprProb[] buffer) {
+		if (fetchInBatches) {
+			try {
+				return fetchExprProbs(ref, pool, gr, buffer);
+			} catch (UnsatisfiedLinkError e) {
+				fetchInBatches = false;
+			}
+		}
+		int n = 0;
+		while (n < buffer.length) {
+			ExprProb ep = fetchExprProb(ref, pool, gr);
+			if (ep == null)
+				break;
+			buffer[n++] = ep;
+		}
+		return n;
+	}
+
 	private void fetch() {
-		if (!fetched) {
-			ep = fetchExprProb(ref, out_pool, gr);
-			fetched = true;
+		if (pos < len || done)
+			return;
+		if (len == buffer.length && buffer.length < MAX_BATCH_SIZE)
+			buffer = new ExprProb[buffer.length*2];
+		pos = 0;
+		len = out_pool.isClosed() ? 0 : fetchBatch(ref, out_pool, gr, buffer);
+		if (len < buffer.length)
+			done = true;
+		if (event != null) {
+			event.fetched(len);
+			if (done)
+				event.finish();
 		}
 	}
 
+	/** Records the fetching of the expressions in the event of the
+	 * operation which created the iterator.
+	 */
+	void record(GrammarEvent event) {
+		if (!event.isEnabled())
+			return;
+		this.event = event;
+		event.finishWith(out_pool);
+	}
+
 	public boolean hasNext() {
 		fetch();
-		return (ep != null);
+		return (pos < len);
 	}
 
 	public ExprProb next() {
 		fetch();
-		fetched = false;
-		
-		if (ep == null)
+		if (pos >= len)
 			throw new NoSuchElementException();
+		ExprProb ep = buffer[pos];
+		buffer[pos++] = null;
 		return ep;
 	}
 
@@ -3,43 +3,102 @@ package org.grammaticalframework.pgf;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+/** Iterates over the full form lexicon, fetching the entries
+ * in batches to save crossings of the native interface.
+ */
 class FullFormIterator implements Iterator<FullFormEntry> {
+	private static final int BATCH_SIZE = 64;
+
+	// false once the native library turns out to be built without fetchFullFormEntries
+	private static volatile boolean fetchInBatches = true;
+
 	private final Concr concr;
 	private final Pool pool;
 	private final long ref;
-	private FullFormEntry entry;
-	private boolean fetched;
+	private final FullFormEntry[] buffer;
+	private int pos, len;
+	private boolean done;
+	private GrammarEvent event;
 
 	public FullFormIterator(Concr concr, long pool, long ref) {
 		this.concr    = concr;
 		this.pool     = new Pool(pool);
 		this.ref      = ref;
-		this.entry    = null;
-		this.fetched  = false;
+		this.buffer   = new FullFormEntry[BATCH_SIZE];
+		this.pos      = 0;
+		this.len      = 0;
+		this.done     = false;
 	}
 
+	/** Fills the buffer with the next entries.
+	 * @return the number of entries fetched, less than the size
+	 * of the buffer if there are no more entries.
+	 */
+	private native static int fetchFullFormEntries(long ref, Pool pool, Concr concr, FullFormEntry[] buffer);
+
+	/** Fetches the next entry alone.
+	 * @return the entry, or null if there are no more.
+	 */
 	private native static FullFormEntry fetchFullFormEntry(long ref, Pool pool, Concr concr);
 
+	/** Fills the buffer with {@link #fetchFullFormEntries}, or one entry
+	 * at a time if the native library is built without it.
+	 */
+	private static int fetchBatch(long ref, Pool pool, Concr concr, FullFormEntry[] buffer) {
+		if (fetchInBatches) {
+			try {
+				return fetchFullFormEntries(ref, pool, concr, buffer);
+			} catch (UnsatisfiedLinkError e) {
+				fetchInBatches = false;
+			}
+		}
+		int n = 0;
+		while (n < buffer.length) {
+			FullFormEntry entry = fetchFullFormEntry(ref, pool, concr);
+			if (entry == null)
+				break;
+			buffer[n++] = entry;
+		}
+		return n;
+	}
+
 	private void fetch() {
-		if (!fetched) {
-			entry = fetchFullFormEntry(ref, pool, concr);
-			fetched = true;
+		if (pos < len || done)
+			return;
+		pos = 0;
+		len = pool.isClosed() ? 0 : fetchBatch(ref, pool, concr, buffer);
+		if (event != null)
+			event.fetched(len);
+		if (len < buffer.length) {
+			done = true;
+			pool.close();	// the entries are copied, free the lexicon state now
 		}
 	}
 
+	/** Records the fetching of the entries in the event of the
+	 * operation which created the iterator. The event is finished
+	 * when the pool is freed, at the latest once all are fetched.
+	 */
+	void record(GrammarEvent event) {
+		if (!event.isEnabled())
+			return;
+		this.event = event;
+		event.finishWith(pool);
+	}
+
 	@Override
 	public boolean hasNext() {
 		fetch();
-		return (entry != null);
+		return (pos < len);
 	}
 
 	@Override
 	public FullFormEntry next() {
 		fetch();
-		fetched = false;
-		
-		if (entry == null)
+		if (pos >= len)
 			throw new NoSuchElementException();
+		FullFormEntry entry = buffer[pos];
+		buffer[pos++] = null;
 		return entry;
 	}
 
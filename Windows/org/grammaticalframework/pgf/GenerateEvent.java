@@ -0,0 +1,9 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Generation of expressions, until the last expression fetched. */
+@Name("org.grammaticalframework.pgf.Generate")
+@Label("Generation")
+class GenerateEvent extends GrammarEvent {
+}
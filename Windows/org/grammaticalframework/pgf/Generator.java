@@ -10,14 +10,14 @@ class Generator implements Iterable<ExprProb> {
 	public Generator(PGF gr, String startCat) {
 		this.gr       = gr;
 		this.startCat = startCat;
-		this.iter     = generateAll(gr, startCat);
+		this.iter     = doGenerate();
 	}
 
 	public Iterator<ExprProb> iterator() {
 		if (iter == null) {
 			// If someone has asked for a second iterator over
 			// the same results then we have to generate again.
-			return generateAll(gr, startCat);
+			return doGenerate();
 		} else {
 			ExprIterator tmp_iter = iter;
 			iter = null;
@@ -25,5 +25,13 @@ class Generator implements Iterable<ExprProb> {
 		}
 	}
 
+	private ExprIterator doGenerate() {
+		GenerateEvent event = new GenerateEvent();
+		event.start(gr, null, startCat, null);
+		ExprIterator iter = generateAll(gr, startCat);
+		iter.record(event);
+		return iter;
+	}
+
 	private native static ExprIterator generateAll(PGF gr, String startCat);
 }
@@ -0,0 +1,9 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Lookup in the full form lexicon, until the last entry fetched. */
+@Name("org.grammaticalframework.pgf.Lexicon")
+@Label("Lexicon Lookup")
+class LexiconEvent extends GrammarEvent {
+}
@@ -0,0 +1,26 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Linearization of an expression. {@link Concr#linearize} is native
+ * and records nothing, a caller creates the event before linearizing
+ * and calls {@link #linearized} after it.
+ */
+@Name("org.grammaticalframework.pgf.Linearize")
+@Label("Linearization")
+public class LinearizeEvent extends GrammarEvent {
+	/** Starts timing a linearization, if the event is enabled.
+	 * @param concr the concrete syntax linearized to. */
+	public LinearizeEvent(Concr concr) {
+		start(concr.gr, concr, null, null);
+	}
+
+	/** Commits the event.
+	 * @param s the linearization, or null if there was none.
+	 * @return the linearization. */
+	public String linearized(String s) {
+		resultCount = s == null ? 0 : 1;
+		finish();
+		return s;
+	}
+}
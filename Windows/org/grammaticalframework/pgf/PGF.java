@@ -1,6 +1,11 @@
 package org.grammaticalframework.pgf;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /** This is the class for PGF grammars.*/
@@ -15,6 +20,71 @@ public class PGF {
 	 * @return an object representing the grammar in memory. */
 	public static native PGF readPGF(InputStream stream);
 
+	/** Reads a grammar from the bytes between the position and
+	 * the limit of a buffer. A direct buffer, for example a memory-mapped
+	 * file, is read in place, other buffers are first copied to a direct one.
+	 * If the native library cannot read from a buffer, the bytes are
+	 * read as a stream instead.
+	 * @param buffer The buffer from which to read the grammar
+	 * @return an object representing the grammar in memory. */
+	public static PGF readPGF(ByteBuffer buffer) {
+		int length = buffer.remaining();
+		ReadPGFEvent event = new ReadPGFEvent();
+		event.begin();
+		PGF gr = null;
+		if (readDirectly) {
+			if (!buffer.isDirect()) {
+				ByteBuffer direct = ByteBuffer.allocateDirect(length);
+				direct.put(buffer.duplicate());
+				direct.flip();
+				buffer = direct;
+			}
+			try {
+				gr = readPGFDirect(buffer, buffer.position(), length);
+			} catch (UnsatisfiedLinkError e) {
+				readDirectly = false;
+			}
+		}
+		if (gr == null) {
+			byte[] bytes = new byte[length];
+			buffer.duplicate().get(bytes);
+			gr = readPGF(new ByteArrayInputStream(bytes));
+		}
+		return event.loaded(gr, null, length);
+	}
+
+	/** Reads a grammar by memory-mapping the file, which avoids
+	 * copying it through Java and is the fastest way to load a grammar.
+	 * If the native library cannot read from a buffer, it reads the file
+	 * itself.
+	 * @param path The path to the file.
+	 * @return an object representing the grammar in memory. */
+	public static PGF readPGF(Path path) throws IOException {
+		if (!readDirectly)
+			return readFile(path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)	// too large for a single mapping
+				return readFile(path);
+			return readPGF(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(path.toString());
+		}
+	}
+
+	/** Reads a grammar with {@link #readPGF(String)} and records the load. */
+	private static PGF readFile(Path path) throws FileNotFoundException {
+		ReadPGFEvent event = new ReadPGFEvent();
+		event.begin();
+		PGF gr = readPGF(path.toString());
+		return event.loaded(gr, path.toString(), path.toFile().length());
+	}
+
+	// false once the native library turns out to be built without readPGFDirect
+	private static volatile boolean readDirectly = true;
+
+	private static native PGF readPGFDirect(ByteBuffer buffer, int offset, int length);
+
 	/** Returns the name of the abstract syntax for the grammar */
 	public native String getAbstractName();
 
@@ -80,7 +150,7 @@ public class PGF {
 	private final long ref;
 
 	private PGF(long pool, long ref) {
-		this.pool = new Pool(pool);
+		this.pool = new Pool(pool, false);	// lives as long as the grammar
 		this.ref  = ref;
 	}
 	
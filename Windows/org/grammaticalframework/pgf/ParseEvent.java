@@ -0,0 +1,9 @@
+package org.grammaticalframework.pgf;
+
+import jdk.jfr.*;
+
+/** Parsing of a sentence, until the last expression fetched. */
+@Name("org.grammaticalframework.pgf.Parse")
+@Label("Parse")
+class ParseEvent extends GrammarEvent {
+}
@@ -39,6 +39,8 @@ class Parser implements Iterable<ExprProb> {
 
 	private ExprIterator doParse() throws ParseError
 	{
+		ParseEvent event = new ParseEvent();
+		event.start(concr.gr, concr, startCat, s);
 		Pool pool = new Pool();
 		long callbacksRef = newCallbacksMap(concr, pool);
 		if (callbacks != null) {
@@ -48,7 +50,15 @@ class Parser implements Iterable<ExprProb> {
 								   pool);
 			}
 		}
-		return parseWithHeuristics(concr, startCat, s, heuristics, callbacksRef, pool);
+		ExprIterator iter;
+		try {
+			iter = parseWithHeuristics(concr, startCat, s, heuristics, callbacksRef, pool);
+		} catch (ParseError e) {
+			event.finish();
+			throw e;
+		}
+		iter.record(event);
+		return iter;
 	}
 
 	static native long newCallbacksMap(Concr concr, Pool pool);
@@ -1,20 +1,96 @@
 package org.grammaticalframework.pgf;
 
-class Pool {
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A native memory pool.
+ * A pool is freed as soon as it is closed, either directly or by
+ * closing the {@link Arena} that was open when the pool was created.
+ * Pools that are never closed are freed by a {@link Cleaner} once
+ * they become unreachable.
+ */
+class Pool implements AutoCloseable {
+	private static final Cleaner cleaner = Cleaner.create();
+
+	static final AtomicLong allocated = new AtomicLong();
+	static final AtomicLong freed     = new AtomicLong();
+	static final AtomicLong reclaimed = new AtomicLong();
+
 	final long ref;
+	private final Cleaner.Cleanable cleanable;
+	private final Free free;
 
 	public Pool(long ref) {
-		this.ref = ref;
+		this(ref, true);
 	}
 
 	public Pool() {
-		this.ref = alloc();
+		this(alloc(), true);
+	}
+
+	/** Wraps a native pool.
+	 * @param scoped whether the pool belongs to the arena open on
+	 * the current thread. Pools that must outlive any arena,
+	 * like the one holding a grammar, are not scoped.
+	 */
+	Pool(long ref, boolean scoped) {
+		this.ref       = ref;
+		this.free      = new Free(ref);
+		this.cleanable = cleaner.register(this, free);
+		allocated.incrementAndGet();
+		if (scoped)
+			Arena.register(this);
+	}
+
+	/** Frees the native memory now. Everything allocated in the pool
+	 * must not be used afterwards. Closing a pool twice has no effect.
+	 */
+	public void close() {
+		free.explicit = true;
+		cleanable.clean();
 	}
 
-	protected void finalize() {
-		free(ref);
+	boolean isClosed() {
+		return free.done.get();
+	}
+
+	/** Runs an action once the pool is freed, on the thread which
+	 * frees it, or now if it is already freed. The action must not
+	 * refer to the pool.
+	 */
+	void onFree(Runnable action) {
+		free.action = action;
+		if (isClosed())
+			action.run();
 	}
 
 	public static native long alloc();
 	public static native void free(long ref);
+
+	/** The action which frees the pool. It must not refer to the pool
+	 * itself, otherwise the pool would never become unreachable.
+	 */
+	private static class Free implements Runnable {
+		private final long ref;
+		private final AtomicBoolean done = new AtomicBoolean();
+		private volatile boolean explicit;
+		private volatile Runnable action;
+
+		Free(long ref) {
+			this.ref = ref;
+		}
+
+		public void run() {
+			if (done.compareAndSet(false, true)) {
+				free(ref);
+				freed.incrementAndGet();
+				if (!explicit)
+					reclaimed.incrementAndGet();
+				Runnable action = this.action;
+				if (action != null)
+					action.run();
+			}
+		}
+	}
 }
@@ -2,43 +2,111 @@ package org.grammaticalframework.pgf;
 
 import java.util.*;
 
+/** Iterates over completions, fetching them from the parser
+ * in batches to save crossings of the native interface.
+ */
 class TokenIterator implements Iterator<TokenProb> {
+	private static final int BATCH_SIZE = 64;
+
+	// false once the native library turns out to be built without fetchTokenProbs
+	private static volatile boolean fetchInBatches = true;
+
 	private final Pool pool;
 	private final long ref;
-	private TokenProb tp;
-	private boolean fetched;
+	private final TokenProb[] buffer;
+	private int pos, len;
+	private boolean done;
+	private GrammarEvent event;
 
 	public TokenIterator(long pool, long ref) {
 		this.pool     = new Pool(pool);
 		this.ref      = ref;
-		this.tp       = null;
-		this.fetched  = false;
+		this.buffer   = new TokenProb[BATCH_SIZE];
+		this.pos      = 0;
+		this.len      = 0;
+		this.done     = false;
 	}
 
+	/** Fills the buffer with the next tokens.
+	 * @return the number of tokens fetched, less than the size
+	 * of the buffer if there are no more tokens.
+	 */
+	private native static int fetchTokenProbs(long ref, Pool pool, TokenProb[] buffer);
+
+	/** Fetches the next token alone.
+	 * @return the token, or null if there are no more.
+	 */
 	private native static TokenProb fetchTokenProb(long ref, Pool pool);
 
+	/** Fills the buffer with {@link #fetchTokenProbs}, or one token
+	 * at a time if the native library is built without it.
+	 */
+	private static int fetchBatch(long ref, Pool pool, TokenProb[] buffer) {
+		if (fetchInBatches) {
+			try {
+				return fetchTokenProbs(ref, pool, buffer);
+			} catch (UnsatisfiedLinkError e) {
+				fetchInBatches = false;
+			}
+		}
+		int n = 0;
+		while (n < buffer.length) {
+			TokenProb tp = fetchTokenProb(ref, pool);
+			if (tp == null)
+				break;
+			buffer[n++] = tp;
+		}
+		return n;
+	}
+
 	private void fetch() {
-		if (!fetched) {
-			tp = fetchTokenProb(ref, pool);
-			fetched = true;
+		if (pos < len || done)
+			return;
+		pos = 0;
+		len = pool.isClosed() ? 0 : fetchBatch(ref, pool, buffer);
+		if (event != null)
+			event.fetched(len);
+		if (len < buffer.length) {
+			done = true;
+			pool.close();	// the tokens are copied, free the parser state now
 		}
 	}
 
+	/** Records the fetching of the tokens in the event of the
+	 * operation which created the iterator. The event is finished
+	 * when the pool is freed, at the latest once all are fetched.
+	 */
+	void record(GrammarEvent event) {
+		if (!event.isEnabled())
+			return;
+		this.event = event;
+		event.finishWith(pool);
+	}
+
 	public boolean hasNext() {
 		fetch();
-		return (tp != null);
+		return (pos < len);
 	}
 
 	public TokenProb next() {
 		fetch();
-		fetched = false;
-		
-		if (tp == null)
+		if (pos >= len)
 			throw new NoSuchElementException();
+		TokenProb tp = buffer[pos];
+		buffer[pos++] = null;
 		return tp;
 	}
 
 	public void remove() {
 		throw new UnsupportedOperationException();
 	}
+
+	/** Stops the iteration and frees the parser state,
+	 * the tokens not fetched yet are never computed.
+	 */
+	void close() {
+		done = true;
+		pos = len = 0;
+		pool.close();
+	}
 }
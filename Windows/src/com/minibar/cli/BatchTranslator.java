@@ -0,0 +1,297 @@
+package com.minibar.cli;
+
+import com.minibar.model.Analysis;
+import com.minibar.model.Sentence;
+import org.grammaticalframework.pgf.Arena;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch translation: translates a file of sentences, one per line, without the JavaFX front-end.
+ * Lines are read and written as streams, so files of any size can be translated. Sentences are translated by a
+ * pool of workers, and at most maxInFlight of them are held in memory at once. Results are written in the order
+ * of the input, as JSON lines or tab separated values.
+ * <p>
+ * Usage: java -cp bin com.minibar.cli.BatchTranslator --grammar grammars/Foods.pgf --from FoodsEng [options]
+ */
+public class BatchTranslator {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Format {JSONL, TSV}
+
+    private final PGF grammar;
+    private final Concr from;
+    private final String category;
+    private final Map<String, Concr> targets;   //Languages to translate to, in output order
+    private final Format format;
+    private final int workers;
+    private final int maxInFlight;
+
+    /**
+     * Creates a batch translator
+     *
+     * @param grammar     is the grammar being used
+     * @param from        is the language of the input sentences
+     * @param to          are the languages to translate to, an empty array for all the languages of the grammar
+     * @param category    is the start category
+     * @param format      is the output format
+     * @param workers     is the number of sentences translated at the same time
+     * @param maxInFlight is the maximum number of sentences read but not written yet
+     */
+    public BatchTranslator(PGF grammar, String from, String[] to, String category, Format format, int workers, int maxInFlight) {
+        if (workers <= 0 || maxInFlight <= 0) throw new IllegalArgumentException("workers and maxInFlight must be positive");
+        Map<String, Concr> languages = grammar.getLanguages();     //Looked up once, shared by the workers
+        this.grammar = grammar;
+        this.from = languages.get(from);
+        if (this.from == null) throw new IllegalArgumentException("Unknown language: " + from);
+        this.targets = new LinkedHashMap<>();
+        if (to.length == 0) {
+            languages.keySet().stream().sorted().forEach(language -> targets.put(language, languages.get(language)));
+        } else {
+            for (String language : to) {
+                if (!languages.containsKey(language)) throw new IllegalArgumentException("Unknown language: " + language);
+                targets.put(language, languages.get(language));
+            }
+        }
+        this.category = category;
+        this.format = format;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Translates every line of the input and writes the results to the output, in the same order
+     *
+     * @param in  is the input, one sentence per line
+     * @param out is where the results are written
+     * @return a summary of the run
+     * @throws IOException if reading or writing fails
+     */
+    public Summary run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "batch-translation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Result>> inFlight = new ArrayDeque<>();    //Oldest sentence first
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try {
+            if (format == Format.TSV) writeHeader(out);
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                long number = ++lineNumber;
+                String sentence = line.trim();
+                if (sentence.isEmpty()) continue;
+                if (inFlight.size() >= maxInFlight) write(take(inFlight.removeFirst()), out, summary);  //Wait for the oldest
+                inFlight.addLast(pool.submit(() -> translate(number, sentence)));
+                while (!inFlight.isEmpty() && inFlight.peekFirst().isDone())   //Write what is ready, in order
+                    write(take(inFlight.removeFirst()), out, summary);
+            }
+            while (!inFlight.isEmpty()) write(take(inFlight.removeFirst()), out, summary);
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Parses a sentence once and linearizes it to all the target languages
+     *
+     * @param lineNumber is the line the sentence was read from
+     * @param sentence   is the sentence to translate
+     * @return the result of the translation
+     */
+    private Result translate(long lineNumber, String sentence) {
+        long start = System.nanoTime();
+        Result result = new Result(lineNumber, sentence, targets.size());
+        try {
+            Arena.run(() -> {   //Frees the parse as soon as the sentence is translated
+                Analysis analysis = Analysis.parse(grammar, from, new Sentence(sentence), category, 1);
+                if (analysis.isComplete()) {
+                    result.expression = analysis.getExpr().toString();
+                    int i = 0;
+                    for (Concr target : targets.values()) result.translations[i++] = analysis.linearize(target);
+                } else {
+                    result.error = "Sentence could not be parsed";
+                }
+            });
+        } catch (RuntimeException e) {      //E.g. a PGFError while linearizing
+            result.error = String.valueOf(e.getMessage());
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static Result take(Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch translation interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void writeHeader(Writer out) throws IOException {
+        out.write("line\tsentence\tAbstract");
+        for (String language : targets.keySet()) out.write("\t" + language);
+        out.write("\terror\n");
+    }
+
+    /**
+     * Writes a result in the output format and records it in the summary
+     */
+    private void write(Result result, Writer out, Summary summary) throws IOException {
+        summary.latencies.record(result.nanos);
+        summary.sentences++;
+        if (result.error != null) summary.failures++;
+        if (format == Format.TSV) {
+            out.write(result.lineNumber + "\t" + tsv(result.sentence) + "\t" + tsv(result.expression));
+            for (String translation : result.translations) out.write("\t" + tsv(translation));
+            out.write("\t" + tsv(result.error) + "\n");
+        } else {
+            out.write("{\"line\":" + result.lineNumber + ",\"sentence\":" + json(result.sentence));
+            if (result.error != null) {
+                out.write(",\"error\":" + json(result.error));
+            } else {
+                out.write(",\"Abstract\":" + json(result.expression) + ",\"translations\":{");
+                int i = 0;
+                for (String language : targets.keySet()) {
+                    if (i > 0) out.write(",");
+                    out.write(json(language) + ":" + json(result.translations[i++]));
+                }
+                out.write("}");
+            }
+            out.write("}\n");
+        }
+    }
+
+    private static String tsv(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String json(String value) {
+        if (value == null) return "null";
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Runs a batch translation from the command line
+     *
+     * @param args are the command line options, see usage()
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) usage("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("grammar") || !options.containsKey("from")) usage("--grammar and --from are required");
+
+        PGF grammar = PGF.readPGF(Paths.get(options.get("grammar")));
+        String to = options.getOrDefault("to", "All");
+        int workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        BatchTranslator translator = new BatchTranslator(grammar, options.get("from"),
+                to.equals("All") ? new String[0] : to.split(","),
+                options.getOrDefault("category", grammar.getStartCat()),
+                Format.valueOf(options.getOrDefault("format", "jsonl").toUpperCase()),
+                workers, Integer.parseInt(options.getOrDefault("max-in-flight", String.valueOf(workers * 64))));
+
+        InputStream input = options.containsKey("input") ? Files.newInputStream(Paths.get(options.get("input"))) : System.in;
+        OutputStream output = options.containsKey("output") ? Files.newOutputStream(Paths.get(options.get("output"))) : System.out;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            Summary summary = translator.run(in, out);
+            System.err.println(summary);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: BatchTranslator --grammar <file.pgf> --from <language> [--to All|<language>,...]"
+                + " [--category <category>] [--input <file>] [--output <file>] [--format jsonl|tsv]"
+                + " [--workers <n>] [--max-in-flight <n>]");
+        System.exit(2);
+    }
+
+    /**
+     * The translation of one sentence
+     */
+    private static final class Result {
+        private final long lineNumber;
+        private final String sentence;
+        private final String[] translations;    //In the order of the target languages
+        private String expression, error;
+        private long nanos;
+
+        private Result(long lineNumber, String sentence, int languages) {
+            this.lineNumber = lineNumber;
+            this.sentence = sentence;
+            this.translations = new String[languages];
+        }
+    }
+
+    /**
+     * Throughput and latency of a batch translation
+     */
+    public static final class Summary {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long sentences, failures, elapsedNanos;
+
+        public long getSentences() {
+            return sentences;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return the number of sentences translated per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : sentences * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Translated %d sentences in %.2f s (%.1f sentences/s), %d failures, p50 %.2f ms, p99 %.2f ms",
+                    sentences, elapsedNanos / 1e9, getThroughput(), failures, latencies.percentile(50), latencies.percentile(99));
+        }
+    }
+}
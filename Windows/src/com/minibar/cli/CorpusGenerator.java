@@ -0,0 +1,321 @@
+package com.minibar.cli;
+
+import com.minibar.model.Analysis;
+import com.minibar.model.ExprSampler;
+import com.minibar.model.GrammarPool;
+import org.grammaticalframework.pgf.Expr;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Bulk generation of random sentences, to stress-test grammars and make test corpora. Every worker samples trees
+ * with its own seed on its own replica of the grammar and linearizes them into the chosen languages; one thread
+ * writes the results as tab separated values. Workers hand over batches through a small bounded queue, so they wait
+ * when the disk is slower than they are and memory stays flat however many sentences are asked for.
+ * <p>
+ * Trees already generated are skipped. They are remembered as 64 bit fingerprints, at most maxDistinct of them;
+ * beyond that duplicates are no longer detected.
+ * <p>
+ * Usage: java -cp bin com.minibar.cli.CorpusGenerator --grammar grammars/Foods.pgf --count 1000000 [options]
+ */
+public class CorpusGenerator {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 256;      //Sentences generated per borrowing of a replica
+    private static final int MAX_DUPLICATES_IN_A_ROW = 10_000;  //The grammar has no more trees that small
+    private static final List<String> END = Collections.emptyList();   //Sent by a worker when it stops
+
+    private final GrammarPool pool;
+    private final ExprSampler sampler;
+    private final String[] languages, categories;
+    private final int maxDepth;
+    private final long seed;
+    private final Fingerprints seen;
+
+    /**
+     * Creates a corpus generator
+     *
+     * @param pool        are the replicas of the grammar, one worker runs on each
+     * @param to          are the languages to linearize into, an empty array for all the languages of the grammar
+     * @param categories  are the categories of the trees, used in turn
+     * @param maxDepth    is the depth the trees should not exceed
+     * @param seed        is the seed of the first worker, worker i uses seed + i
+     * @param maxDistinct is the number of trees remembered to skip duplicates, 0 to keep duplicates
+     */
+    public CorpusGenerator(GrammarPool pool, String[] to, String[] categories, int maxDepth, long seed, int maxDistinct) {
+        GrammarPool.Replica replica = pool.getReplicas().get(0);
+        this.pool = pool;
+        this.sampler = ExprSampler.of(replica.getGrammar());    //Plain Java, shared by the workers
+        if (to.length == 0) {
+            this.languages = replica.getLanguages().keySet().stream().sorted().toArray(String[]::new);
+        } else {
+            for (String language : to) replica.getLanguage(language);   //Fails on unknown languages
+            this.languages = to.clone();
+        }
+        for (String category : categories) {
+            if (!sampler.canSample(category)) throw new IllegalArgumentException("No trees of category " + category);
+        }
+        if (categories.length == 0 || maxDepth <= 0 || maxDistinct < 0)
+            throw new IllegalArgumentException("A category and a positive depth are needed");
+        this.categories = categories.clone();
+        this.maxDepth = maxDepth;
+        this.seed = seed;
+        this.seen = maxDistinct == 0 ? null : new Fingerprints(maxDistinct);
+    }
+
+    /**
+     * Generates sentences and writes them to the output, one tree and its linearizations per line
+     *
+     * @param count    is the number of trees to generate, fewer are written if the grammar runs out of distinct trees
+     * @param out      is where the sentences are written
+     * @param progress receives the fraction of the trees written so far, on the calling thread
+     * @return a summary of the run
+     * @throws IOException if writing fails or a worker fails
+     */
+    public Summary run(long count, Writer out, DoubleConsumer progress) throws IOException {
+        int workers = pool.size();
+        BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(2 * workers);
+        AtomicLong unclaimed = new AtomicLong(count);
+        AtomicBoolean exhausted = new AtomicBoolean();
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < workers; i++) {
+            Random random = new Random(seed + i);
+            Thread thread = new Thread(() -> {
+                try {
+                    generate(random, unclaimed, exhausted, batches, summary);
+                } catch (InterruptedException e) {
+                    //Stopped by the writer
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                } finally {
+                    try {
+                        batches.put(END);   //The writer drains the queue until every worker ended
+                    } catch (InterruptedException e) {
+                        //The writer stopped
+                    }
+                }
+            }, "corpus-generation-worker-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            out.write("category\tAbstract");
+            for (String language : languages) out.write("\t" + language);
+            out.write("\n");
+            int ended = 0;
+            while (ended < workers) {
+                List<String> batch = batches.poll(100, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                if (batch == END) {
+                    ended++;
+                    continue;
+                }
+                for (String line : batch) out.write(line);
+                summary.sentences += batch.size();
+                progress.accept(Math.min(1.0, summary.sentences / (double) count));
+            }
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Corpus generation interrupted");
+        } finally {
+            for (Thread thread : threads) thread.interrupt();
+        }
+        if (!failures.isEmpty()) throw new IOException(failures.get(0));
+        summary.elapsedNanos = System.nanoTime() - start;
+        summary.exhausted = exhausted.get();
+        summary.fingerprintsFull = seen != null && seen.isFull();
+        return summary;
+    }
+
+    /**
+     * The loop of a worker: claims a batch of trees, generates it on a replica and queues it for the writer
+     */
+    private void generate(Random random, AtomicLong unclaimed, AtomicBoolean exhausted,
+                          BlockingQueue<List<String>> batches, Summary summary) throws InterruptedException {
+        long category = random.nextInt(categories.length);
+        while (!exhausted.get()) {
+            long claimed = Math.min(BATCH_SIZE, unclaimed.getAndAdd(-BATCH_SIZE));
+            if (claimed <= 0) return;
+            List<String> batch = new ArrayList<>((int) claimed);
+            long first = category;
+            category += claimed;
+            pool.call(replica -> {
+                int duplicatesInARow = 0;
+                for (long i = first; batch.size() < claimed; ) {
+                    String cat = categories[(int) (i % categories.length)];
+                    String tree = sampler.sampleTree(cat, maxDepth, random);
+                    if (seen != null && !seen.add(tree)) {
+                        summary.duplicates.incrementAndGet();
+                        if (++duplicatesInARow == MAX_DUPLICATES_IN_A_ROW) {
+                            exhausted.set(true);
+                            break;
+                        }
+                        continue;
+                    }
+                    duplicatesInARow = 0;
+                    Expr expr = Expr.readExpr(tree);
+                    StringBuilder line = new StringBuilder(cat).append('\t').append(tree);
+                    for (String language : languages)
+                        line.append('\t').append(Analysis.linearize(replica.getLanguage(language), expr).replace('\t', ' '));
+                    batch.add(line.append('\n').toString());
+                    i++;
+                }
+                return null;
+            });
+            batches.put(batch);     //Waits while the writer is behind
+        }
+    }
+
+    /**
+     * Generates a corpus from the command line
+     *
+     * @param args are the command line options, see usage()
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) usage("Invalid option: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("grammar") || !options.containsKey("count")) usage("--grammar and --count are required");
+
+        int workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try (GrammarPool pool = new GrammarPool(options.get("grammar"), workers)) {
+            String to = options.getOrDefault("to", "All");
+            String categories = options.getOrDefault("category", pool.getReplicas().get(0).getGrammar().getStartCat());
+            CorpusGenerator generator = new CorpusGenerator(pool, to.equals("All") ? new String[0] : to.split(","),
+                    categories.split(","), Integer.parseInt(options.getOrDefault("depth", String.valueOf(ExprSampler.DEFAULT_MAX_DEPTH))),
+                    Long.parseLong(options.getOrDefault("seed", String.valueOf(System.nanoTime()))),
+                    Integer.parseInt(options.getOrDefault("max-distinct", "1000000")));
+
+            OutputStream output = options.containsKey("output") ? Files.newOutputStream(Paths.get(options.get("output"))) : System.out;
+            long start = System.nanoTime();
+            long[] lastReport = {start};
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                Summary summary = generator.run(Long.parseLong(options.get("count")), out, done -> {
+                    long now = System.nanoTime();
+                    if (now - lastReport[0] < 1_000_000_000L) return;  //Once a second
+                    lastReport[0] = now;
+                    System.err.printf("%.1f%%%n", done * 100);
+                });
+                System.err.println(summary);
+            }
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: CorpusGenerator --grammar <file.pgf> --count <n> [--to All|<language>,...]"
+                + " [--category <category>,...] [--depth <n>] [--seed <n>] [--workers <n>] [--max-distinct <n>]"
+                + " [--output <file>]");
+        System.exit(2);
+    }
+
+    /**
+     * A set of 64 bit fingerprints of strings with a fixed capacity, which stops growing once full
+     */
+    public static final class Fingerprints {
+        private final long[] table;     //Open addressing, 0 marks a free slot
+        private final int capacity;
+        private int size;
+
+        /**
+         * @param capacity is the number of fingerprints kept at most
+         */
+        public Fingerprints(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+            this.capacity = capacity;
+            this.table = new long[Integer.highestOneBit(Math.max(2, capacity - 1)) << 2];  //At most half full
+        }
+
+        /**
+         * Adds the fingerprint of a string, unless the set is full
+         *
+         * @param value is the string
+         * @return false if the string was seen before, or has the fingerprint of a string seen before
+         */
+        public synchronized boolean add(String value) {
+            long fingerprint = fingerprint(value);
+            int mask = table.length - 1;
+            for (int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+                if (table[slot] == fingerprint) return false;
+                if (table[slot] == 0) {
+                    if (size == capacity) return true;
+                    table[slot] = fingerprint;
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        public synchronized boolean isFull() {
+            return size == capacity;
+        }
+
+        /**
+         * FNV-1a over the characters, never 0
+         */
+        private static long fingerprint(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash == 0 ? 1 : hash;
+        }
+    }
+
+    /**
+     * Throughput of a corpus generation
+     */
+    public static final class Summary {
+        private final AtomicLong duplicates = new AtomicLong();
+        private long sentences, elapsedNanos;
+        private boolean exhausted, fingerprintsFull;
+
+        public long getSentences() {
+            return sentences;
+        }
+
+        /**
+         * @return the number of trees skipped because they were generated before
+         */
+        public long getDuplicates() {
+            return duplicates.get();
+        }
+
+        /**
+         * @return true if generation stopped early because no new trees were found
+         */
+        public boolean isExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * @return the number of sentences generated per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : sentences * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Generated %d sentences in %.2f s (%.1f sentences/s), %d duplicates skipped%s%s",
+                    sentences, elapsedNanos / 1e9, getThroughput(), getDuplicates(),
+                    exhausted ? ", stopped as no new trees were found" : "",
+                    fingerprintsFull ? ", duplicates no longer detected after the fingerprint set filled up" : "");
+        }
+    }
+}
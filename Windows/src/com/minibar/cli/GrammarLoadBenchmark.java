@@ -0,0 +1,61 @@
+package com.minibar.cli;
+
+import org.grammaticalframework.pgf.PGF;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures how long a grammar takes to load with each of the ways PGF offers:
+ * the native file reader, an InputStream, a memory-mapped file and a heap ByteBuffer.
+ * <p>
+ * Usage: java -cp bin com.minibar.cli.GrammarLoadBenchmark grammars/Foods.pgf [runs]
+ */
+public class GrammarLoadBenchmark {
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * A way of loading a grammar
+     */
+    private interface Loader {
+        PGF load(Path path) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: GrammarLoadBenchmark <file.pgf> [runs]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Map<String, Loader> loaders = new LinkedHashMap<>();
+        loaders.put("readPGF(String)", file -> PGF.readPGF(file.toString()));
+        loaders.put("readPGF(InputStream)", file -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+                return PGF.readPGF(in);
+            }
+        });
+        loaders.put("readPGF(Path), mmap", PGF::readPGF);
+        loaders.put("readPGF(heap ByteBuffer)", file -> PGF.readPGF(ByteBuffer.wrap(Files.readAllBytes(file))));
+
+        System.out.printf("%s, %d bytes, %d runs%n", path, Files.size(path), runs);
+        for (Map.Entry<String, Loader> loader : loaders.entrySet()) {
+            for (int i = 0; i < WARMUP_RUNS; i++) loader.getValue().load(path);
+            LatencyHistogram latencies = new LatencyHistogram();
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                loader.getValue().load(path);
+                latencies.record(System.nanoTime() - start);
+            }
+            System.out.printf("%-26s %s%n", loader.getKey(), latencies);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.minibar.cli;
+
+/**
+ * A fixed size histogram of latencies, used to report percentiles without keeping every measurement.
+ * Latencies under 64 microseconds are counted exactly, larger ones in buckets about 3% wide.
+ * The histogram is thread safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 32;     //Buckets per power of two
+    private static final int EXACT = 2 * SUB_BUCKETS;   //Latencies counted exactly, in microseconds
+    private final long[] counts = new long[EXACT + (64 - 6) * SUB_BUCKETS];
+    private long count, total, min = Long.MAX_VALUE, max;
+
+    /**
+     * Records a latency
+     *
+     * @param nanos is the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[bucket(micros)]++;
+        count++;
+        total += micros;
+        min = Math.min(min, micros);
+        max = Math.max(max, micros);
+    }
+
+    /**
+     * @param percentile is a number from 0 to 100
+     * @return the latency at the percentile in milliseconds, 0 if nothing was recorded
+     */
+    public synchronized double percentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(Math.max(lowerBound(i), min), max) / 1000.0;
+        }
+        return max / 1000.0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean latency in milliseconds, 0 if nothing was recorded
+     */
+    public synchronized double mean() {
+        return count == 0 ? 0 : total / 1000.0 / count;
+    }
+
+    /**
+     * @return the largest latency in milliseconds
+     */
+    public synchronized double max() {
+        return max / 1000.0;
+    }
+
+    /**
+     * @param micros is a latency in microseconds
+     * @return the index of the bucket counting the latency
+     */
+    private static int bucket(long micros) {
+        if (micros < EXACT) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);  //At least 6
+        int mantissa = (int) (micros >>> (exponent - 5)) & (SUB_BUCKETS - 1);
+        return EXACT + (exponent - 6) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * @param bucket is the index of a bucket
+     * @return the smallest latency counted by the bucket, in microseconds
+     */
+    private static long lowerBound(int bucket) {
+        if (bucket < EXACT) return bucket;
+        int exponent = (bucket - EXACT) / SUB_BUCKETS + 6;
+        int mantissa = (bucket - EXACT) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + mantissa) << (exponent - 5);
+    }
+
+    /**
+     * @return a summary of the latencies recorded
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("p50 %.2f ms, p99 %.2f ms, mean %.2f ms, max %.2f ms", percentile(50), percentile(99), mean(), max());
+    }
+}
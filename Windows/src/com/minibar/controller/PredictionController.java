@@ -1,16 +1,39 @@
 package com.minibar.controller;
 
+import com.minibar.model.CompletionCache;
+import com.minibar.model.HistoryJournal;
 import com.minibar.model.Prediction;
 import com.minibar.model.Sentence;
+import com.minibar.model.SuggestionCursor;
 import org.grammaticalframework.pgf.PGF;
+
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This controller handles everything related to predictions
  */
 public class PredictionController {
+    //Predictions run one at a time on a background thread, so the Prediction objects are never used concurrently
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "prediction-worker");
+        thread.setDaemon(true);     //Do not keep the application alive
+        return thread;
+    });
     private final Prediction prediction;
+    private final Map<Object, PendingRequest> pendingRequests = new ConcurrentHashMap<>();  //Latest request per requester
+    private final Map<Object, SuggestionCursor> openCursors = new HashMap<>();  //Per requester, prediction thread only
 
     /**
      * Creates a controller with a default Prediction object
@@ -63,6 +86,16 @@ public class PredictionController {
         prediction.storeWords(sentence);
     }
 
+    /**
+     * Adds a sentence to the previous words on the prediction thread, so a prediction running now does not hold up
+     * the caller, e.g. the UI thread. The predictions requested afterwards see the words.
+     *
+     * @param sentence is the sentence to be added
+     */
+    public void storeWordsAsync(String sentence) {
+        runOnWorker("store the words", () -> prediction.storeWords(sentence));
+    }
+
     /**
      * Adds a new Sentence object to the previous words
      *
@@ -87,6 +120,60 @@ public class PredictionController {
     public void setHistoricalData(Map<String, ArrayList<String>> data) {
        prediction.setHistoricalData(data);
     }
+
+    /**
+     * Journals the words stored from now on, histories are read from the journal when their grammar is first used
+     *
+     * @param journal is the history journal
+     */
+    public void setHistoryJournal(HistoryJournal journal) {
+        Prediction.setHistoryJournal(journal);
+    }
+    /**
+     * Reads the n-gram models of the languages from a directory of corpora, see Prediction.setCorpusDirectory
+     *
+     * @param directory is the directory of the corpora
+     */
+    public static void setCorpusDirectory(Path directory) {
+        Prediction.setCorpusDirectory(directory);
+    }
+
+    /**
+     * Trains the suggestions of a language with a sentence that was translated from or to it
+     *
+     * @param language is the language of the sentence
+     * @param sentence is the sentence
+     */
+    public void learn(String language, String sentence) {
+        prediction.learn(language, sentence);
+    }
+
+    /**
+     * Trains the suggestions of a language with a sentence on the prediction thread, see storeWordsAsync
+     *
+     * @param language is the language of the sentence
+     * @param sentence is the sentence
+     */
+    public void learnAsync(String language, String sentence) {
+        runOnWorker("learn the sentence", () -> prediction.learn(language, sentence));
+    }
+
+    /**
+     * Provides access to the cached completion results, e.g. to read its hit, miss and eviction counts
+     *
+     * @return the completion cache shared by all predictions
+     */
+    public CompletionCache getCompletionCache() {
+        return Prediction.getCompletionCache();
+    }
+
+    /**
+     * Removes all cached completion results, needed when a different grammar is loaded
+     */
+    public void clearCompletionCache() {
+        Prediction.getCompletionCache().clear();
+    }
+
     /**
      * Returns an array of valid words, with the leading words being the suggested words
      *
@@ -98,4 +185,208 @@ public class PredictionController {
     public ArrayList<String> predictNextWord(String text, String language, String startCat) {
         return prediction.predictNextWord(text, language, startCat);
     }
+
+    /**
+     * Returns the valid words starting with what the user is typing, with the suggested words at the front.
+     * The grammar is only consulted when the text before the word being typed changes.
+     *
+     * @param text        is the text typed before the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    is the language that text was typed in
+     * @param startCat    is the start category
+     * @return a list of valid words, with the suggested words at the front
+     */
+    public ArrayList<String> predictNextWord(String text, String partialWord, String language, String startCat) {
+        return prediction.predictNextWord(text, partialWord, language, startCat);
+    }
+
+    /**
+     * Returns the best few valid words starting with what the user is typing, best first
+     *
+     * @param text        is the text typed before the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    is the language that text was typed in
+     * @param startCat    is the start category
+     * @param limit       is the maximum number of words returned
+     * @return the best valid words
+     */
+    public ArrayList<String> suggest(String text, String partialWord, String language, String startCat, int limit) {
+        return prediction.suggest(text, partialWord, language, startCat, limit);
+    }
+
+    /**
+     * Predicts the next word on a background thread and publishes the result, unless a newer request was made for the
+     * same requester in the meantime. A request that has not started yet when a newer one arrives is cancelled, so
+     * quick keystrokes are debounced.
+     *
+     * @param requester   identifies where the predictions are shown, e.g. a sentence panel
+     * @param text        is the text typed before the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    is the language that text was typed in
+     * @param startCat    is the start category
+     * @param delayMillis is how long to wait for further keystrokes before predicting
+     * @param publisher   runs the callback, e.g. on the UI thread
+     * @param onResult    receives the predicted words
+     */
+    public void predictNextWordAsync(Object requester, String text, String partialWord, String language, String startCat,
+                                     long delayMillis, Executor publisher, Consumer<ArrayList<String>> onResult) {
+        schedule(requester, delayMillis, publisher,
+                () -> prediction.predictNextWord(text, partialWord, language, startCat), onResult);
+    }
+
+    /**
+     * Opens the suggestions on a background thread and publishes their first page, see predictNextWordAsync for
+     * how newer requests replace it. Only the words on the page are asked from the grammar, more are fetched
+     * through moreAsync. The suggestions opened before for the same requester are closed, once these are open.
+     *
+     * @param requester   identifies where the suggestions are shown, e.g. a sentence panel
+     * @param text        is the text typed before the word the user is still typing
+     * @param partialWord is the part of the word the user is still typing
+     * @param language    is the language that text was typed in
+     * @param startCat    is the start category
+     * @param pageSize    is the maximum number of words on a page
+     * @param delayMillis is how long to wait for further keystrokes before suggesting
+     * @param publisher   runs the callback, e.g. on the UI thread
+     * @param onResult    receives the cursor for the next pages, null if there are none, and the first page, best
+     *                    first
+     */
+    public void suggestAsync(Object requester, String text, String partialWord, String language, String startCat,
+                             int pageSize, long delayMillis, Executor publisher,
+                             BiConsumer<SuggestionCursor, ArrayList<String>> onResult) {
+        schedule(requester, delayMillis, publisher, () -> {
+            SuggestionCursor cursor = prediction.openSuggestions(text, partialWord, language, startCat);
+            SuggestionCursor previous = openCursors.put(requester, cursor);
+            if (previous != null) previous.close();     //Only now, it may have been narrowed down to the new one
+            return page(cursor, pageSize);
+        }, page -> onResult.accept(page.cursor, page.words));
+    }
+
+    /**
+     * Fetches the next page of suggestions on a background thread and publishes it, unless a newer request was made
+     * for the same requester in the meantime
+     *
+     * @param requester identifies where the suggestions are shown
+     * @param cursor    is the cursor opened by suggestAsync
+     * @param pageSize  is the maximum number of words on the page
+     * @param publisher runs the callback, e.g. on the UI thread
+     * @param onResult  receives the cursor for the next pages, null if there are none, and the words of the page,
+     *                  best first
+     */
+    public void moreAsync(Object requester, SuggestionCursor cursor, int pageSize, Executor publisher,
+                          BiConsumer<SuggestionCursor, ArrayList<String>> onResult) {
+        schedule(requester, 0, publisher, () -> page(cursor, pageSize), page -> onResult.accept(page.cursor, page.words));
+    }
+
+    /**
+     * Hands out the next page of a cursor, on the prediction thread, and checks there whether there are more
+     */
+    private static Page page(SuggestionCursor cursor, int pageSize) {
+        ArrayList<String> words = cursor.next(pageSize);
+        return new Page(cursor.hasMore() ? cursor : null, words);
+    }
+
+    /**
+     * Runs a request on the prediction thread, replacing the request pending for the same requester
+     *
+     * @param requester   identifies where the result is shown
+     * @param delayMillis is how long to wait before running the request
+     * @param publisher   runs the callback
+     * @param request     computes the result
+     * @param onResult    receives the result, if no newer request was made
+     */
+    private <T> void schedule(Object requester, long delayMillis, Executor publisher, Supplier<T> request,
+                              Consumer<T> onResult) {
+        PendingRequest pending = new PendingRequest();
+        PendingRequest previous = pendingRequests.put(requester, pending);
+        if (previous != null) previous.future.cancel(false);    //Superseded, no need to predict
+        pending.future = worker.schedule(() -> {
+            if (pendingRequests.get(requester) != pending) return;  //Superseded while waiting
+            T result;
+            try {
+                result = request.get();
+            } catch (RuntimeException e) {
+                pendingRequests.remove(requester, pending);     //Nothing is published for it
+                System.out.println("Could not predict: " + e.getMessage());
+                return;
+            }
+            publisher.execute(() -> {
+                if (pendingRequests.remove(requester, pending)) onResult.accept(result);    //Only publish the latest
+            });
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the prediction requested for a requester, so its result is never published, and closes its suggestions
+     *
+     * @param requester identifies where the predictions would be shown
+     */
+    public void cancelPredictions(Object requester) {
+        PendingRequest request = pendingRequests.remove(requester);
+        if (request != null) request.future.cancel(false);
+        runOnWorker("close the suggestions", () -> {     //After the prediction running now, which may open them
+            SuggestionCursor cursor = openCursors.remove(requester);
+            if (cursor != null) cursor.close();
+        });
+    }
+
+    /**
+     * Cancels all predictions requested from this controller, e.g. when the grammar changes, and closes all their
+     * suggestions
+     */
+    public void cancelAllPredictions() {
+        for (Object requester : pendingRequests.keySet()) {
+            PendingRequest request = pendingRequests.remove(requester);
+            if (request != null) request.future.cancel(false);
+        }
+        runOnWorker("close the suggestions", () -> {
+            for (SuggestionCursor cursor : openCursors.values()) cursor.close();
+            openCursors.clear();
+        });
+    }
+
+    /**
+     * Runs an action on the prediction thread, logging its failure, which the executor would otherwise swallow
+     *
+     * @param what   describes the action, for the log
+     * @param action is the action to run
+     */
+    private static void runOnWorker(String what, Runnable action) {
+        worker.execute(() -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.out.println("Could not " + what + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Runs an action on the prediction thread once the prediction running now, if any, is done.
+     * After cancelling the predictions, this is the point from which nothing they used is touched anymore.
+     *
+     * @param action is the action to run
+     */
+    public static void afterRunningPrediction(Runnable action) {
+        worker.execute(action);
+    }
+
+    /**
+     * A page of suggestions and the cursor for the next pages, or null if there are none
+     */
+    private static final class Page {
+        private final SuggestionCursor cursor;
+        private final ArrayList<String> words;
+
+        private Page(SuggestionCursor cursor, ArrayList<String> words) {
+            this.cursor = cursor;
+            this.words = words;
+        }
+    }
+
+    /**
+     * A prediction that has been requested but not published yet
+     */
+    private static final class PendingRequest {
+        private volatile ScheduledFuture<?> future;
+    }
 }
@@ -0,0 +1,211 @@
+package com.minibar.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe least-recently-used cache of completion results.
+ * Results are keyed by grammar, language, start category and the sentence typed so far.
+ * The cache is bounded both by the number of entries and by an estimate of the memory they use.
+ */
+public class CompletionCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);  //Access order
+    private long bytes;     //Estimated size of all entries
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache with the bounds specified
+     *
+     * @param maxEntries is the maximum number of results kept
+     * @param maxBytes   is the maximum estimated size of the results kept, in bytes
+     */
+    public CompletionCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) throw new IllegalArgumentException("Cache bounds must be positive");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the words that may follow a sentence prefix
+     *
+     * @param grammar  names the grammar, e.g. by its abstract name
+     * @param language is the concrete syntax name
+     * @param category is the start category
+     * @param prefix   is the sentence typed so far
+     * @return the cached words, or null if they are not cached
+     */
+    public synchronized List<String> get(String grammar, String language, String category, String prefix) {
+        Entry entry = entries.get(new Key(grammar, language, category, normalize(prefix)));
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.words;
+    }
+
+    /**
+     * Looks up the grammar's costs of the words that may follow a sentence prefix, without counting a hit or miss
+     *
+     * @param grammar  names the grammar, e.g. by its abstract name
+     * @param language is the concrete syntax name
+     * @param category is the start category
+     * @param prefix   is the sentence typed so far
+     * @return the negative log probability of each cached word, or null if they are not cached with their costs
+     */
+    public synchronized double[] getCosts(String grammar, String language, String category, String prefix) {
+        Entry entry = entries.get(new Key(grammar, language, category, normalize(prefix)));
+        return entry == null ? null : entry.costs;
+    }
+
+    /**
+     * Stores the words that may follow a sentence prefix, evicting the least recently used results if needed
+     *
+     * @param grammar  names the grammar, e.g. by its abstract name
+     * @param language is the concrete syntax name
+     * @param category is the start category
+     * @param prefix   is the sentence typed so far
+     * @param words    are the words that may follow the prefix
+     */
+    public void put(String grammar, String language, String category, String prefix, List<String> words) {
+        put(grammar, language, category, prefix, words, null);
+    }
+
+    /**
+     * Stores the words that may follow a sentence prefix with their costs, evicting the least recently used results
+     * if needed
+     *
+     * @param grammar  names the grammar, e.g. by its abstract name
+     * @param language is the concrete syntax name
+     * @param category is the start category
+     * @param prefix   is the sentence typed so far
+     * @param words    are the words that may follow the prefix
+     * @param costs    is the negative log probability of each word, or null
+     */
+    public synchronized void put(String grammar, String language, String category, String prefix, List<String> words,
+                                 double[] costs) {
+        Key key = new Key(grammar, language, category, normalize(prefix));
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList<>(words)),
+                costs == null ? null : Arrays.copyOf(costs, words.size()), estimateBytes(key, words, costs));
+        if (entry.bytes > maxBytes) return;     //Would evict everything else, not worth caching
+        Entry previous = entries.put(key, entry);
+        if (previous != null) bytes -= previous.bytes;
+        bytes += entry.bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the cached results, e.g. after a different grammar is loaded
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated size of the cached results in bytes
+     */
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Collapses white space so that "these  pizzas " and "these pizzas" share a result
+     *
+     * @param prefix is the sentence typed so far
+     * @return the normalized prefix
+     */
+    private static String normalize(String prefix) {
+        return prefix.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Estimates the memory used by an entry, counting the strings, the list holding them and the costs
+     */
+    private static long estimateBytes(Key key, List<String> words, double[] costs) {
+        long size = 64 + 2L * (key.grammar.length() + key.language.length() + key.category.length() + key.prefix.length());
+        for (String word : words) size += 48 + 2L * word.length();
+        if (costs != null) size += 16 + 8L * words.size();
+        return size;
+    }
+
+    /**
+     * @return a summary of the cache usage
+     */
+    @Override
+    public synchronized String toString() {
+        return "CompletionCache{" + "entries=" + entries.size() + ", bytes=" + bytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+
+    private static final class Key {
+        private final String grammar, language, category, prefix;
+
+        private Key(String grammar, String language, String category, String prefix) {
+            this.grammar = grammar;
+            this.language = language;
+            this.category = category;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return grammar.equals(key.grammar) && language.equals(key.language)
+                    && category.equals(key.category) && prefix.equals(key.prefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(grammar, language, category, prefix);
+        }
+    }
+
+    private static final class Entry {
+        private final List<String> words;
+        private final double[] costs;
+        private final long bytes;
+
+        private Entry(List<String> words, double[] costs, long bytes) {
+            this.words = words;
+            this.costs = costs;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.Expr;
+import org.grammaticalframework.pgf.Hypo;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.Type;
+
+import java.util.*;
+
+/**
+ * Samples random abstract syntax trees from the functions of a grammar, top-down: each category is expanded with one
+ * of its functions, picked with the probability the grammar gives it, until only constants are left. A depth bound
+ * keeps recursive grammars from growing trees without end: near the bound only the functions that can still finish
+ * within it are picked. The cost of a tree is proportional to its size, a sentence is then made by linearizing it once.
+ * <p>
+ * The functions are read from the grammar once; a sampler can be shared by threads, each with its own Random.
+ */
+public class ExprSampler {
+    public static final int DEFAULT_MAX_DEPTH = 10;
+    private static final Map<PGF, ExprSampler> samplers = new WeakHashMap<>();   //Reading the functions is not free
+
+    private final Map<String, List<Function>> functionsByCat = new HashMap<>();
+    private final Map<String, Integer> heights = new HashMap<>();   //Depth of the smallest tree of each category
+
+    /**
+     * @param grammar is a grammar
+     * @return the sampler of the grammar, made the first time it is asked for
+     */
+    public static ExprSampler of(PGF grammar) {
+        synchronized (samplers) {
+            ExprSampler sampler = samplers.get(grammar);
+            if (sampler == null) {
+                sampler = new ExprSampler(functionsOf(grammar));
+                samplers.put(grammar, sampler);
+            }
+            return sampler;
+        }
+    }
+
+    /**
+     * Creates a sampler for a set of functions
+     *
+     * @param functions are the functions of the abstract syntax
+     */
+    public ExprSampler(Collection<Function> functions) {
+        for (Function function : functions)
+            functionsByCat.computeIfAbsent(function.getCategory(), cat -> new ArrayList<>()).add(function);
+        for (String literal : new String[]{"String", "Int", "Float"}) heights.put(literal, 0);
+        //The height of a category is one more than the highest argument of its lowest function, repeat until stable
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<Function>> cat : functionsByCat.entrySet()) {
+                for (Function function : cat.getValue()) {
+                    int height = heightOf(function);
+                    if (height < heights.getOrDefault(cat.getKey(), Integer.MAX_VALUE)) {
+                        heights.put(cat.getKey(), height);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the functions of a grammar. Functions with higher-order arguments are left out, and the indices of
+     * dependent types are ignored.
+     */
+    private static List<Function> functionsOf(PGF grammar) {
+        List<Function> functions = new ArrayList<>();
+        for (String name : grammar.getFunctions()) {
+            Type type = grammar.getFunctionType(name);
+            if (type == null) continue;
+            Hypo[] hypos = type.getHypos();
+            String[] arguments = new String[hypos.length];
+            boolean firstOrder = true;
+            for (int i = 0; i < hypos.length; i++) {
+                Type argument = hypos[i].getType();
+                firstOrder &= argument.getHypos().length == 0;
+                arguments[i] = argument.getCategory();
+            }
+            if (firstOrder) functions.add(new Function(name, type.getCategory(), arguments, grammar.getFunctionProb(name)));
+        }
+        return functions;
+    }
+
+    /**
+     * @return the depth of the smallest tree made with the function, or Integer.MAX_VALUE if none is known yet
+     */
+    private int heightOf(Function function) {
+        int height = 0;
+        for (String argument : function.arguments) {
+            int argumentHeight = heights.getOrDefault(argument, Integer.MAX_VALUE);
+            if (argumentHeight == Integer.MAX_VALUE) return Integer.MAX_VALUE;
+            height = Math.max(height, argumentHeight);
+        }
+        return height + 1;
+    }
+
+    /**
+     * @param category is a category of the grammar
+     * @return true if trees of the category can be made
+     */
+    public boolean canSample(String category) {
+        return heights.getOrDefault(category, Integer.MAX_VALUE) != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Samples a tree
+     *
+     * @param category is the category of the tree
+     * @param maxDepth is the depth the tree should not exceed, it does when the category has no tree that small
+     * @param random   is the source of randomness
+     * @return the tree
+     */
+    public Expr sample(String category, int maxDepth, Random random) {
+        return Expr.readExpr(sampleTree(category, maxDepth, random));
+    }
+
+    /**
+     * Samples a tree, written in the GF syntax
+     *
+     * @param category is the category of the tree
+     * @param maxDepth is the depth the tree should not exceed, it does when the category has no tree that small
+     * @param random   is the source of randomness
+     * @return the tree, e.g. Pred (This Pizza) Warm
+     * @throws IllegalArgumentException if no tree of the category can be made
+     */
+    public String sampleTree(String category, int maxDepth, Random random) {
+        if (!canSample(category)) throw new IllegalArgumentException("No trees of category " + category);
+        StringBuilder tree = new StringBuilder();
+        sample(category, 1, maxDepth, random, tree);
+        return tree.toString();
+    }
+
+    private void sample(String category, int depth, int maxDepth, Random random, StringBuilder tree) {
+        switch (category) {
+            case "String":
+                tree.append('"').append((char) ('a' + random.nextInt(26))).append('"');
+                return;
+            case "Int":
+                tree.append(random.nextInt(100));
+                return;
+            case "Float":
+                tree.append(random.nextInt(100)).append('.').append(random.nextInt(10));
+                return;
+        }
+        Function function = pick(functionsByCat.get(category), maxDepth - depth + 1, random);
+        boolean parenthesise = depth > 1 && function.arguments.length > 0;
+        if (parenthesise) tree.append('(');
+        tree.append(function.getName());
+        for (String argument : function.arguments) {
+            tree.append(' ');
+            sample(argument, depth + 1, maxDepth, random, tree);
+        }
+        if (parenthesise) tree.append(')');
+    }
+
+    /**
+     * Picks one of the functions that fit in the depth left, with the probabilities of the grammar.
+     * When none of them fits, the lowest one is taken.
+     */
+    private Function pick(List<Function> functions, int depthLeft, Random random) {
+        double total = 0;
+        Function lowest = null;
+        int lowestHeight = Integer.MAX_VALUE;
+        for (Function function : functions) {
+            int height = heightOf(function);
+            if (height <= depthLeft) total += function.getWeight();
+            if (height < lowestHeight) {
+                lowest = function;
+                lowestHeight = height;
+            }
+        }
+        if (total == 0) return lowest;  //Nothing fits, or the functions that fit have no probability
+        double point = random.nextDouble() * total;
+        for (Function function : functions) {
+            if (heightOf(function) > depthLeft) continue;
+            point -= function.getWeight();
+            if (point < 0) return function;
+        }
+        return lowest;  //Rounding left a tiny remainder
+    }
+
+    /**
+     * A function of the abstract syntax, e.g. Pred : Item -&gt; Quality -&gt; Comment
+     */
+    public static final class Function {
+        private final String name, category;
+        private final String[] arguments;
+        private final double weight;
+
+        /**
+         * @param name        is the name of the function
+         * @param category    is the category of the result
+         * @param arguments   are the categories of the arguments
+         * @param probability is the negative logarithm of the probability of the function, as in the grammar
+         */
+        public Function(String name, String category, String[] arguments, double probability) {
+            this.name = name;
+            this.category = category;
+            this.arguments = arguments.clone();
+            this.weight = Math.exp(-probability);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String[] getArguments() {
+            return arguments.clone();
+        }
+
+        /**
+         * @return the probability of the function among the functions of its category
+         */
+        public double getWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.minibar.model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recording of the keystrokes typed in a session, so typing workloads can be replayed without the UI.
+ * A trace is a text file with one keystroke per line and tab separated fields: the time in microseconds since the
+ * recording started, the sentence panel, KEY or ENTER, the grammar path, the from and to languages, the start
+ * category and the text of the sentence field after the keystroke.
+ */
+public class KeystrokeTrace {
+    private static final int FIELDS = 8;
+
+    public enum Type {KEY, ENTER}
+
+    private KeystrokeTrace() {
+    }
+
+    /**
+     * Reads a trace
+     *
+     * @param path is the trace file
+     * @return the keystrokes, in the order they were typed
+     * @throws IOException if the file can not be read or is not a trace
+     */
+    public static List<Keystroke> read(Path path) throws IOException {
+        List<Keystroke> keystrokes = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) continue;
+                String[] fields = line.split("\t", -1);
+                try {
+                    if (fields.length != FIELDS) throw new IllegalArgumentException();
+                    keystrokes.add(new Keystroke(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                            Type.valueOf(fields[2]), fields[3], fields[4], fields[5], fields[6], fields[7]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ":" + lineNumber + ": not a keystroke");
+                }
+            }
+        }
+        return keystrokes;
+    }
+
+    /**
+     * A keystroke and the state of the application after it
+     */
+    public static final class Keystroke {
+        private final long micros;
+        private final int panel;
+        private final Type type;
+        private final String grammar, from, to, category, text;
+
+        public Keystroke(long micros, int panel, Type type, String grammar, String from, String to, String category, String text) {
+            this.micros = micros;
+            this.panel = panel;
+            this.type = type;
+            this.grammar = grammar;
+            this.from = from;
+            this.to = to;
+            this.category = category;
+            this.text = text;
+        }
+
+        /**
+         * @return the time of the keystroke in microseconds since the recording started
+         */
+        public long getMicros() {
+            return micros;
+        }
+
+        /**
+         * @return the number of the sentence panel typed on, from 1 in the order the panels were first typed on
+         */
+        public int getPanel() {
+            return panel;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getGrammar() {
+            return grammar;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the keystroke as a line of a trace, without the line break
+         */
+        @Override
+        public String toString() {
+            return micros + "\t" + panel + "\t" + type + "\t" + field(grammar) + "\t" + field(from) + "\t" + field(to)
+                    + "\t" + field(category) + "\t" + field(text);
+        }
+
+        private static String field(String value) {
+            return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    /**
+     * Writes keystrokes to a trace file as they are typed
+     */
+    public static final class Recorder implements Closeable {
+        private final Writer out;
+        private final long start = System.nanoTime();
+
+        /**
+         * Starts a new trace, replacing the file if it exists
+         *
+         * @param path is the trace file
+         * @throws IOException if the file can not be created
+         */
+        public Recorder(Path path) throws IOException {
+            out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Records a keystroke, timed now
+         *
+         * @param panel    is the number of the sentence panel typed on
+         * @param type     is the kind of keystroke
+         * @param grammar  is the path of the grammar in use
+         * @param from     is the language typed in
+         * @param to       is the language translated to, or All
+         * @param category is the start category
+         * @param text     is the text of the sentence field after the keystroke
+         * @throws IOException if the keystroke can not be written
+         */
+        public synchronized void record(int panel, Type type, String grammar, String from, String to, String category,
+                                        String text) throws IOException {
+            long micros = (System.nanoTime() - start) / 1000;
+            out.write(new Keystroke(micros, panel, type, grammar, from, to, category, text) + "\n");
+            out.flush();    //Keystrokes are rare, nothing is lost if the application is killed
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
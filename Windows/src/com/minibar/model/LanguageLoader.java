@@ -0,0 +1,209 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.PGF;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Loads the concrete syntaxes of a split grammar on first use and unloads the least recently used ones.
+ * A split grammar (compiled with gf -split-pgf) keeps each language in its own Name.pgf_c file next to the .pgf
+ * file, so only the languages being used have to be in memory. Languages are unloaded in LRU order when their
+ * estimated size goes over the budget, or when trimmed because the heap runs low, see {@link #watchMemory(Runnable)}.
+ * <p>
+ * A language can only be unloaded while nobody holds it, see {@link #acquire(Collection)}.
+ * For grammars that are not split every language is always loaded and the loader does nothing.
+ */
+public class LanguageLoader {
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+    public static final double LOW_MEMORY_THRESHOLD = 0.8;     //Fraction of the heap used after a collection
+    private static final String EXTENSION = ".pgf_c";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static boolean watching;    //Whether the low memory notification is set up
+
+    private final PGF grammar;
+    private final Map<String, Concr> languages;
+    private final Path directory;
+    private final boolean split;
+    private final long budget;
+    private final LinkedHashMap<String, Long> loaded = new LinkedHashMap<>(16, 0.75f, true);  //Size, LRU first
+    private final Map<String, Integer> holds = new HashMap<>();     //Languages in use and how many times
+    private long bytes;     //Estimated memory of the languages loaded
+
+    /**
+     * Creates a loader for a grammar
+     *
+     * @param grammar     is the grammar
+     * @param grammarPath is the path of the .pgf file, its concrete syntaxes are looked for in the same directory
+     * @param budget      is the estimated memory the loaded languages may use, in bytes
+     */
+    public LanguageLoader(PGF grammar, String grammarPath, long budget) {
+        if (budget <= 0) throw new IllegalArgumentException("budget must be positive");
+        this.grammar = grammar;
+        this.languages = grammar.getLanguages();
+        Path parent = Paths.get(grammarPath).toAbsolutePath().getParent();
+        this.directory = parent == null ? Paths.get(".") : parent;
+        this.split = languages.keySet().stream().anyMatch(language -> Files.isRegularFile(file(language)));
+        this.budget = budget;
+    }
+
+    /**
+     * @return true if the languages of the grammar are stored in separate files
+     */
+    public boolean isSplit() {
+        return split;
+    }
+
+    public PGF getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * Loads the languages if needed and holds them, so they are not unloaded until the hold is released
+     *
+     * @param names are the names of the languages
+     * @return the hold, to be closed once the languages are no longer used
+     */
+    public synchronized Hold acquire(Collection<String> names) {
+        List<String> held = new ArrayList<>(names);
+        for (String name : held) holds.merge(name, 1, Integer::sum);
+        try {
+            for (String name : held) load(name);
+        } catch (RuntimeException e) {
+            release(held);
+            throw e;
+        }
+        trim(budget);
+        return new Hold(held);
+    }
+
+    /**
+     * Loads the languages if needed and holds them
+     *
+     * @param names are the names of the languages
+     * @return the hold, to be closed once the languages are no longer used
+     */
+    public Hold acquire(String... names) {
+        return acquire(Arrays.asList(names));
+    }
+
+    /**
+     * @param name is the name of a language
+     * @return true if the language is in memory
+     */
+    public synchronized boolean isLoaded(String name) {
+        return !split || loaded.containsKey(name);
+    }
+
+    /**
+     * @return the names of the languages in memory, least recently used first
+     */
+    public synchronized List<String> getLoaded() {
+        return split ? new ArrayList<>(loaded.keySet()) : new ArrayList<>(languages.keySet());
+    }
+
+    /**
+     * @return the estimated memory used by the languages loaded, in bytes
+     */
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    /**
+     * Unloads the least recently used languages nobody holds, until the loaded languages fit in the limit
+     *
+     * @param limit is the estimated memory the languages may use, in bytes, 0 to unload all that are not held
+     */
+    public synchronized void trim(long limit) {
+        Iterator<Map.Entry<String, Long>> eldest = loaded.entrySet().iterator();
+        while (bytes > limit && eldest.hasNext()) {
+            Map.Entry<String, Long> language = eldest.next();
+            if (holds.containsKey(language.getKey())) continue;     //In use
+            languages.get(language.getKey()).unload();
+            bytes -= language.getValue();
+            eldest.remove();
+            System.out.println("Unloaded language " + language.getKey());
+        }
+    }
+
+    private void load(String name) {
+        if (!split || loaded.get(name) != null) return;     //Looking it up marks it as the most recently used
+        Concr language = languages.get(name);
+        if (language == null) throw new IllegalArgumentException("Unknown language: " + name);
+        Path file = file(name);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            language.load(in);
+            long size = Files.size(file);
+            loaded.put(name, size);
+            bytes += size;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void release(List<String> names) {
+        for (String name : names) holds.computeIfPresent(name, (language, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private Path file(String language) {
+        return directory.resolve(language + EXTENSION);
+    }
+
+    /**
+     * Asks the JVM to report when the heap is still nearly full after a garbage collection.
+     * Only the first call sets up the notification.
+     *
+     * @param onLowMemory is run on a JVM thread when memory is low, e.g. to trim the loader in use
+     */
+    public static synchronized void watchMemory(Runnable onLowMemory) {
+        if (watching) return;
+        watching = true;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0)
+                pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * LOW_MEMORY_THRESHOLD));
+        }
+        NotificationListener listener = (notification, handback) -> {
+            if (notification.getType().equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED))
+                onLowMemory.run();
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+
+    /**
+     * Languages held by someone, released by closing the hold
+     */
+    public final class Hold implements AutoCloseable {
+        private final List<String> names;
+        private boolean closed;
+
+        private Hold(List<String> names) {
+            this.names = names;
+        }
+
+        public List<String> getNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        @Override
+        public void close() {
+            synchronized (LanguageLoader.this) {
+                if (closed) return;
+                closed = true;
+                release(names);
+            }
+        }
+    }
+}
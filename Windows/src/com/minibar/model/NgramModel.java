@@ -0,0 +1,358 @@
+package com.minibar.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A trigram model of the sentences written in one language of a grammar, used to rank the suggestions by the words
+ * typed before them. It is trained from a corpus, one sentence per line, and from every sentence translated.
+ * <p>
+ * Words are the IDs of the grammar's symbol table. The unigram, bigram and trigram counts, and the counts of the
+ * contexts they follow, share one open addressing table of longs to ints, three IDs packed per key, so a lookup
+ * creates no objects. Scores use stupid backoff: the trigram frequency if the trigram was seen, otherwise 0.4 times
+ * the bigram frequency, otherwise 0.16 times the add-one unigram frequency.
+ * <p>
+ * The methods are synchronized, a model is trained from the UI thread and its corpus file at the same time. The
+ * sentences learnt are appended to the corpus file on a background thread. Once the file reaches its maximum size it
+ * is renamed with a .1 suffix, replacing the previous one, so a corpus takes at most twice that size on disk.
+ */
+public class NgramModel {
+    public static final int START = -2;     //ID of the start of a sentence, any other negative ID is unknown
+    private static final int ID_BITS = 20;
+    private static final int MAX_ID = (1 << ID_BITS) - 3;   //Larger IDs are treated as unknown words
+    private static final long UNIGRAM = 1, BIGRAM = 2, TRIGRAM = 3, CONTEXT1 = 4, CONTEXT2 = 5;    //Key tags
+    private static final double BACKOFF = Math.log(0.4);
+    public static final long DEFAULT_MAX_CORPUS_BYTES = 4L * 1024 * 1024;
+    private static final Map<String, NgramModel> models = new HashMap<>();     //Model of each grammar and language
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "ngram-writer");
+        thread.setDaemon(true);     //Do not keep the application running
+        return thread;
+    });
+
+    private final SymbolTable symbols;
+    private final Path corpus;      //Where the sentences learnt are appended, or null
+    private final long maxCorpusBytes;
+    private CompletableFuture<Integer> loaded = CompletableFuture.completedFuture(0);
+    private long[] keys = new long[1024];   //0 when free
+    private int[] counts = new int[1024];
+    private int size;               //Number of keys
+    private long tokens;            //Number of words trained on
+    private int types;              //Number of distinct words trained on
+    private int sentences;
+
+    /**
+     * Creates an empty model without a corpus file
+     *
+     * @param symbols is the symbol table of the grammar
+     */
+    public NgramModel(SymbolTable symbols) {
+        this(symbols, null);
+    }
+
+    /**
+     * Creates an empty model that appends the sentences it learns to a corpus file
+     *
+     * @param symbols is the symbol table of the grammar
+     * @param corpus  is the corpus file, or null
+     */
+    public NgramModel(SymbolTable symbols, Path corpus) {
+        this(symbols, corpus, DEFAULT_MAX_CORPUS_BYTES);
+    }
+
+    /**
+     * Creates an empty model that appends the sentences it learns to a corpus file of bounded size
+     *
+     * @param symbols        is the symbol table of the grammar
+     * @param corpus         is the corpus file, or null
+     * @param maxCorpusBytes is the size the corpus file is rotated at
+     */
+    public NgramModel(SymbolTable symbols, Path corpus, long maxCorpusBytes) {
+        if (maxCorpusBytes <= 0) throw new IllegalArgumentException("maxCorpusBytes must be positive");
+        this.symbols = symbols;
+        this.corpus = corpus;
+        this.maxCorpusBytes = maxCorpusBytes;
+    }
+
+    /**
+     * Gets the model of a language, made the first time it is asked for. The corpus of a language is in a directory
+     * named after the grammar, e.g. Foods/FoodsEng.txt, so languages of the same name in different grammars do not
+     * share one. If the corpus exists, the model is trained from it and its rotated file in the background. The
+     * sentences learnt are appended to it.
+     *
+     * @param grammar         is the abstract name of the grammar
+     * @param language        is the concrete syntax name
+     * @param corpusDirectory is the directory of the corpora, or null
+     * @return the model
+     */
+    public static NgramModel of(String grammar, String language, Path corpusDirectory) {
+        synchronized (models) {
+            NgramModel model = models.get(grammar + "\t" + language);
+            if (model == null) {
+                Path corpus = corpusDirectory == null ? null : corpusDirectory.resolve(grammar).resolve(language + ".txt");
+                model = new NgramModel(SymbolTable.of(grammar), corpus);
+                if (corpus != null && (Files.isRegularFile(corpus) || Files.isRegularFile(rotated(corpus))))
+                    model.loaded = model.trainAsync(rotated(corpus), corpus);
+                models.put(grammar + "\t" + language, model);
+            }
+            return model;
+        }
+    }
+
+    /**
+     * @return the training from the corpus file, completed with the number of sentences read
+     */
+    public CompletableFuture<Integer> getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the symbol table the IDs of the words are from
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Counts the words of a sentence, separated by spaces
+     *
+     * @param sentence is the sentence
+     */
+    public synchronized void train(CharSequence sentence) {
+        int u = START, v = START;
+        for (int start = 0, end; start < sentence.length(); start = end + 1) {
+            end = start;
+            while (end < sentence.length() && sentence.charAt(end) != ' ') end++;
+            if (end == start) continue;
+            int w = packable(symbols.intern(sentence, start, end));
+            if (w >= 0) {   //A word without a packable ID is not counted, only ends the context
+                if (increment(key(UNIGRAM, 0, 0, w)) == 1) types++;
+                increment(key(BIGRAM, 0, v, w));
+                increment(key(TRIGRAM, u, v, w));
+                increment(key(CONTEXT1, 0, 0, v));
+                increment(key(CONTEXT2, 0, u, v));
+                tokens++;
+            }
+            u = v;
+            v = w;
+        }
+        if (v != START) sentences++;
+    }
+
+    /**
+     * Counts the sentences of a corpus, one per line
+     *
+     * @param corpus is the corpus file, in UTF-8
+     * @return the number of sentences read
+     * @throws IOException if the file could not be read
+     */
+    public int train(Path corpus) throws IOException {
+        int read = 0;
+        try (BufferedReader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                train(line.trim());
+                read++;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Counts the sentences of corpora on a background thread, the files that do not exist are skipped
+     *
+     * @param corpora are the corpus files, in UTF-8
+     * @return the training, completed with the number of sentences read
+     */
+    public CompletableFuture<Integer> trainAsync(Path... corpora) {
+        CompletableFuture<Integer> training = new CompletableFuture<>();
+        Thread worker = new Thread(() -> {
+            int read = 0;
+            for (Path corpus : corpora) {
+                if (!Files.isRegularFile(corpus)) continue;
+                try {
+                    read += train(corpus);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Could not read the corpus " + corpus + ": " + e.getMessage());
+                    training.completeExceptionally(e);
+                    return;
+                }
+            }
+            training.complete(read);
+        }, "ngram-worker");
+        worker.setDaemon(true);
+        worker.start();
+        return training;
+    }
+
+    /**
+     * Counts a sentence that was translated, and appends it to the corpus file if the model has one. The file is
+     * written on a background thread.
+     *
+     * @param sentence is the sentence
+     * @return the append, completed at once if there is nothing to append
+     */
+    public CompletableFuture<Void> learn(String sentence) {
+        train(sentence);
+        if (corpus == null || sentence.trim().isEmpty()) return CompletableFuture.completedFuture(null);
+        String line = sentence.trim().replace('\n', ' ') + "\n";
+        return CompletableFuture.runAsync(() -> append(line), writer);
+    }
+
+    /**
+     * Appends a line to the corpus file, rotating the file first if the line would take it past its maximum size
+     */
+    private void append(String line) {
+        try {
+            Files.createDirectories(corpus.toAbsolutePath().getParent());
+            long length = line.getBytes(StandardCharsets.UTF_8).length;
+            if (Files.isRegularFile(corpus) && Files.size(corpus) + length > maxCorpusBytes)
+                Files.move(corpus, rotated(corpus), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Could not rotate the corpus " + corpus + ": " + e.getMessage());
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(corpus, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+        } catch (IOException e) {
+            System.out.println("Could not append to the corpus " + corpus + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the file a corpus file is renamed to once it is full
+     */
+    private static Path rotated(Path corpus) {
+        return corpus.resolveSibling(corpus.getFileName() + ".1");
+    }
+
+    /**
+     * Scores a word following two others, the higher the more likely
+     *
+     * @param u is the ID of the word before v, START or unknown if there is none
+     * @param v is the ID of the word before w, START or unknown if there is none
+     * @param w is the ID of the word
+     * @return the log of the stupid backoff score of w, at most 0
+     */
+    public synchronized double score(int u, int v, int w) {
+        u = packable(u);
+        v = packable(v);
+        w = packable(w);
+        if (w < 0) return 2 * BACKOFF + Math.log(1.0 / (tokens + types + 1));   //Never counted
+        int trigram = count(key(TRIGRAM, u, v, w));
+        if (trigram > 0) return Math.log((double) trigram / count(key(CONTEXT2, 0, u, v)));
+        int bigram = count(key(BIGRAM, 0, v, w));
+        if (bigram > 0) return BACKOFF + Math.log((double) bigram / count(key(CONTEXT1, 0, 0, v)));
+        return 2 * BACKOFF + Math.log((count(key(UNIGRAM, 0, 0, w)) + 1.0) / (tokens + types + 1));
+    }
+
+    /**
+     * Finds the two words at the end of a text, the context of the next word
+     *
+     * @param text is the sentence typed so far, words separated by spaces
+     * @return the ID of the second last word in the high int and of the last word in the low int,
+     * START if there are not as many words, -1 for a word without an ID
+     */
+    public long context(CharSequence text) {
+        int[] words = {START, START};     //Last word, then second last
+        int end = text.length();
+        for (int found = 0; found < 2; found++) {
+            while (end > 0 && text.charAt(end - 1) == ' ') end--;
+            if (end == 0) break;
+            int start = end;
+            while (start > 0 && text.charAt(start - 1) != ' ') start--;
+            words[found] = symbols.lookup(text, start, end);
+            end = start;
+        }
+        return ((long) words[1] << 32) | (words[0] & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the number of sentences trained on
+     */
+    public synchronized int getSentenceCount() {
+        return sentences;
+    }
+
+    /**
+     * @return the number of words trained on
+     */
+    public synchronized long getTokenCount() {
+        return tokens;
+    }
+
+    /**
+     * @return the ID if it fits in the bits of a key, otherwise -1, an unknown word
+     */
+    private static int packable(int id) {
+        return id == START || (id >= 0 && id <= MAX_ID) ? id : -1;
+    }
+
+    private static long key(long tag, int u, int v, int w) {
+        return tag << (3 * ID_BITS) | (long) code(u) << (2 * ID_BITS) | (long) code(v) << ID_BITS | code(w);
+    }
+
+    /**
+     * @return the number packed in keys for the ID, 0 for the start of a sentence
+     * @throws IllegalArgumentException if the ID does not fit in the bits of a key, IDs are not wrapped around
+     */
+    private static int code(int id) {
+        if (id == START) return 0;
+        if (id > MAX_ID) throw new IllegalArgumentException("Word ID " + id + " does not fit in " + ID_BITS + " bits");
+        return id < 0 ? MAX_ID + 2 : id + 1;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int mask = keys.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int count(long key) {
+        int slot = slot(key);
+        return keys[slot] == key ? counts[slot] : 0;
+    }
+
+    /**
+     * @return the count after adding one
+     */
+    private int increment(long key) {
+        int slot = slot(key);
+        if (keys[slot] == 0) {
+            if (2 * (size + 1) > keys.length) {     //Keep the table at most half full
+                grow();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        if (counts[slot] < Integer.MAX_VALUE) counts[slot]++;
+        return counts[slot];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.Concr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Linearizes one analysis to many concrete syntaxes in parallel, one task per language.
+ * The tasks run on a bounded pool of daemon threads. Every call into the grammar runtime allocates its own
+ * memory pool, and the analysis keeps the parsed expression alive until all the tasks are done, so no native
+ * state is shared between the threads.
+ */
+public class ParallelLinearizer {
+    public static final int THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService workers = Executors.newFixedThreadPool(THREADS, task -> {
+        Thread thread = new Thread(task, "linearization-worker-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);     //Do not keep the application running
+        return thread;
+    });
+
+    private ParallelLinearizer() {
+    }
+
+    /**
+     * Linearizes an analysis to every language provided, handing each result over as soon as it is ready
+     *
+     * @param analysis  is the analysis of the sentence
+     * @param languages are the concrete syntaxes to linearize to, by name
+     * @param publisher is the executor the results are handed over on, e.g. Platform::runLater
+     * @param onResult  receives the name of each language and its linearization
+     * @return a future completed once every language is linearized; cancelling it skips the languages not started yet
+     */
+    public static CompletableFuture<Void> linearizeAll(Analysis analysis, Map<String, Concr> languages,
+                                                       Executor publisher, BiConsumer<String, String> onResult) {
+        return linearizeAll(analysis, languages, publisher, onResult, () -> {
+        });
+    }
+
+    /**
+     * Linearizes an analysis to every language provided, handing each result over as soon as it is ready
+     *
+     * @param analysis   is the analysis of the sentence
+     * @param languages  are the concrete syntaxes to linearize to, by name
+     * @param publisher  is the executor the results are handed over on, e.g. Platform::runLater
+     * @param onResult   receives the name of each language and its linearization
+     * @param onFinished runs once no language is being linearized anymore, even if the future was cancelled,
+     *                   e.g. to let the languages be unloaded
+     * @return a future completed once every language is linearized; cancelling it skips the languages not started yet
+     */
+    public static CompletableFuture<Void> linearizeAll(Analysis analysis, Map<String, Concr> languages, Executor publisher,
+                                                       BiConsumer<String, String> onResult, Runnable onFinished) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!analysis.isComplete() || languages.isEmpty()) {
+            onFinished.run();
+            done.complete(null);
+            return done;
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(languages.size());
+        for (Map.Entry<String, Concr> language : languages.entrySet()) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                if (done.isDone()) return;      //Cancelled, e.g. the panel was cleared
+                String linearization = analysis.linearize(language.getValue());
+                publisher.execute(() -> {
+                    if (!done.isCancelled()) onResult.accept(language.getKey(), linearization);
+                });
+            }, workers));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((result, error) -> {
+            onFinished.run();
+            if (error != null) done.completeExceptionally(error);
+            else publisher.execute(() -> done.complete(null));    //After all the results were handed over
+        });
+        return done;
+    }
+
+    /**
+     * Linearizes an analysis to every language provided and waits for all the results
+     *
+     * @param analysis  is the analysis of the sentence
+     * @param languages are the concrete syntaxes to linearize to, by name
+     * @param onResult  receives the name of each language and its linearization, on the worker threads
+     */
+    public static void linearizeAll(Analysis analysis, Map<String, Concr> languages, BiConsumer<String, String> onResult) {
+        try {
+            linearizeAll(analysis, languages, Runnable::run, onResult).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();    //E.g. a PGFError
+            throw e;
+        }
+    }
+}
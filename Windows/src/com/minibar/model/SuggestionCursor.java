@@ -0,0 +1,313 @@
+package com.minibar.model;
+
+import org.grammaticalframework.pgf.CompletionCursor;
+import org.grammaticalframework.pgf.TokenProb;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The suggestions for what the user typed, handed out a page at a time, best first.
+ * Candidates are fetched from the grammar as they are needed, the most probable first, a few times as many as the
+ * page asked for. A page is the best of the candidates fetched so far that were not handed out yet, picked with a
+ * bounded heap. So a page costs the same however large the lexicon is. The price is that the ranking only looks that
+ * far ahead: a word the grammar finds improbable, but the history or the n-gram model favours, may come a page late.
+ * <p>
+ * A cursor uses the prediction that opened it, so it synchronizes on it.
+ */
+public class SuggestionCursor implements Closeable {
+    public static final int LOOKAHEAD = 4;     //Candidates fetched per suggestion handed out
+    private static final int BATCH_SIZE = 64;  //Candidates fetched at a time
+
+    /**
+     * Scores a candidate, the higher the better
+     */
+    public interface Scorer {
+        /**
+         * @param id   is the ID of the word
+         * @param cost is the grammar's negative log probability of the word
+         * @return the score
+         */
+        double score(int id, double cost);
+    }
+
+    private final Object lock;
+    private final SymbolTable symbols;
+    private final Scorer scorer;
+    private final String prefix;        //Start of the words suggested
+    private CompletionCursor source;    //Completions still to fetch, or null
+    private List<String> words;         //Or words still to fetch, with their costs, or null
+    private double[] wordCosts;
+    private int wordPosition;
+    private Supplier<CompletionCursor> rest;    //Opens the completions to fetch after the words, or null
+    private int[] ids = new int[16];    //Candidates fetched, in the order fetched
+    private double[] costs = new double[16], scores = new double[16];
+    private boolean[] shown = new boolean[16];
+    private int[] slots = new int[32];  //Open addressing, index + 1 of each candidate ID, 0 when free
+    private int size, shownCount;
+    private boolean truncated;          //Closed before every candidate was fetched
+
+    /**
+     * Creates a cursor over completions computed by the grammar
+     *
+     * @param lock    is the object the cursor synchronizes on
+     * @param symbols is the symbol table of the grammar
+     * @param scorer  scores the candidates
+     * @param prefix  is the start of the words suggested
+     * @param source  is the cursor over the completions, or null if there are none
+     */
+    SuggestionCursor(Object lock, SymbolTable symbols, Scorer scorer, String prefix, CompletionCursor source) {
+        this.lock = lock;
+        this.symbols = symbols;
+        this.scorer = scorer;
+        this.prefix = prefix;
+        this.source = source;
+    }
+
+    /**
+     * Creates a cursor over words completed before
+     *
+     * @param lock    is the object the cursor synchronizes on
+     * @param symbols is the symbol table of the grammar
+     * @param scorer  scores the candidates
+     * @param prefix  is the start of the words suggested, the other words are skipped
+     * @param words   are the words, in the grammar's order
+     * @param costs   is the grammar's negative log probability of each word, or null
+     */
+    public SuggestionCursor(Object lock, SymbolTable symbols, Scorer scorer, String prefix, List<String> words, double[] costs) {
+        this(lock, symbols, scorer, prefix, (CompletionCursor) null);
+        this.words = words;
+        this.wordCosts = costs;
+    }
+
+    /**
+     * @return the start of the words suggested
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Hands out the next best suggestions
+     *
+     * @param limit is the maximum number of suggestions
+     * @return the best suggestions not handed out yet, best first, fewer than limit only if there are no more
+     */
+    public ArrayList<String> next(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        synchronized (lock) {
+            fill((long) limit * LOOKAHEAD);
+            int[] heap = new int[Math.min(limit, size - shownCount)];  //Best candidates so far, worst at the root
+            int count = 0;
+            for (int i = 0; i < size && heap.length > 0; i++) {
+                if (shown[i]) continue;
+                if (count < heap.length) {
+                    heap[count] = i;
+                    siftUp(heap, count++);
+                } else if (ranksBefore(i, heap[0])) {   //Better than the worst kept
+                    heap[0] = i;
+                    siftDown(heap, 0, count);
+                }
+            }
+            for (int last = count - 1; last > 0; last--) {  //Moves the worst to the end, best first
+                int worst = heap[0];
+                heap[0] = heap[last];
+                heap[last] = worst;
+                siftDown(heap, 0, last);
+            }
+            ArrayList<String> page = new ArrayList<>(count);
+            for (int i : heap) {
+                shown[i] = true;
+                page.add(symbols.token(ids[i]));
+            }
+            shownCount += count;
+            return page;
+        }
+    }
+
+    /**
+     * @return false if every suggestion was handed out, true if there may be more
+     */
+    public boolean hasMore() {
+        synchronized (lock) {
+            return size > shownCount || !exhausted();
+        }
+    }
+
+    /**
+     * @return true if every candidate was fetched, false if some were not or the cursor was closed before
+     */
+    public boolean isComplete() {
+        synchronized (lock) {
+            return !truncated && exhausted();
+        }
+    }
+
+    /**
+     * @return the number of distinct candidates fetched so far
+     */
+    public int getFetched() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Makes a cursor over the candidates of this cursor that start with a longer prefix, e.g. once the user typed
+     * another letter. The candidates fetched so far, and the words not fetched yet, are handed out first. Only if
+     * they run short while the grammar had more completions is it asked again, for those of the longer prefix.
+     *
+     * @param longerPrefix is the new prefix, starting with the prefix of this cursor
+     * @param rest         opens the completions of the longer prefix, or returns null if there are none
+     * @return the new cursor, with nothing handed out yet
+     */
+    public SuggestionCursor narrow(String longerPrefix, Supplier<CompletionCursor> rest) {
+        synchronized (lock) {
+            if (!longerPrefix.startsWith(prefix)) throw new IllegalArgumentException("Can not narrow to " + longerPrefix);
+            List<String> candidates = new ArrayList<>();
+            double[] candidateCosts = new double[16];
+            for (int i = 0; i < size; i++) {
+                String token = symbols.token(ids[i]);
+                if (!token.startsWith(longerPrefix)) continue;
+                if (candidates.size() == candidateCosts.length) candidateCosts = Arrays.copyOf(candidateCosts, 2 * candidates.size());
+                candidateCosts[candidates.size()] = costs[i];
+                candidates.add(token);
+            }
+            for (int i = wordPosition; words != null && i < words.size(); i++) {    //Not fetched yet
+                if (!words.get(i).startsWith(longerPrefix)) continue;
+                if (candidates.size() == candidateCosts.length) candidateCosts = Arrays.copyOf(candidateCosts, 2 * candidates.size());
+                candidateCosts[candidates.size()] = wordCosts == null ? 0 : wordCosts[i];
+                candidates.add(words.get(i));
+            }
+            SuggestionCursor narrowed = new SuggestionCursor(lock, symbols, scorer, longerPrefix, candidates, candidateCosts);
+            if (truncated || source != null || this.rest != null) narrowed.rest = rest;   //The grammar has more
+            return narrowed;
+        }
+    }
+
+    /**
+     * Lists every candidate of this complete cursor, e.g. to cache them
+     *
+     * @param words is filled with the candidates, in the order fetched
+     * @return the grammar's cost of each candidate
+     */
+    double[] candidates(List<String> words) {
+        synchronized (lock) {
+            if (!isComplete()) throw new IllegalStateException("Not every candidate was fetched");
+            for (int i = 0; i < size; i++) words.add(symbols.token(ids[i]));
+            return Arrays.copyOf(costs, size);
+        }
+    }
+
+    /**
+     * Frees the parser state, the candidates fetched so far can still be handed out
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!exhausted()) truncated = true;
+            if (source != null) source.close();
+            source = null;
+            words = null;
+            rest = null;
+        }
+    }
+
+    /**
+     * @return true if there are no candidates left to fetch
+     */
+    private boolean exhausted() {
+        return source == null && (words == null || wordPosition == words.size()) && rest == null;
+    }
+
+    /**
+     * Fetches candidates until enough were not handed out yet, or there are no more
+     */
+    private void fill(long unshown) {
+        while (size - shownCount < unshown && !exhausted()) {
+            if (source != null) {
+                for (TokenProb token : source.next(BATCH_SIZE)) add(token.getToken(), token.getProb());
+                if (!source.hasMore()) {    //Frees the parser state now
+                    source.close();
+                    source = null;
+                }
+            } else if (words == null || wordPosition == words.size()) {
+                source = rest.get();    //The words ran short, asks the grammar
+                rest = null;
+            } else {
+                int end = Math.min(words.size(), wordPosition + BATCH_SIZE);
+                for (; wordPosition < end; wordPosition++)
+                    add(words.get(wordPosition), wordCosts == null ? 0 : wordCosts[wordPosition]);
+            }
+        }
+    }
+
+    private void add(String token, double cost) {
+        if (!token.startsWith(prefix)) return;
+        int id = symbols.intern(token);
+        int mask = slots.length - 1;
+        int slot = (id * 0x9E3779B9 >>> 16) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int i = slots[slot] - 1;
+            if (ids[i] != id) continue;
+            if (cost < costs[i] && !shown[i]) {     //Reached by a more probable function too
+                costs[i] = cost;
+                scores[i] = scorer.score(id, cost);
+            }
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            costs = Arrays.copyOf(costs, 2 * size);
+            scores = Arrays.copyOf(scores, 2 * size);
+            shown = Arrays.copyOf(shown, 2 * size);
+        }
+        ids[size] = id;
+        costs[size] = cost;
+        scores[size] = scorer.score(id, cost);
+        slots[slot] = ++size;
+        if (2 * size > slots.length) rehash();     //Keep the slots at most half full
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = (ids[i] * 0x9E3779B9 >>> 16) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * @return whether candidate a ranks before candidate b, by score and then in the order fetched
+     */
+    private boolean ranksBefore(int a, int b) {
+        if (scores[a] != scores[b]) return scores[a] > scores[b];
+        return a < b;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0 && ranksBefore(heap[(i - 1) / 2], heap[i])) {
+            int parent = (i - 1) / 2, swap = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = swap;
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1])) child++;  //The child ranking last
+            if (!ranksBefore(heap[i], heap[child])) return;
+            int swap = heap[i];
+            heap[i] = heap[child];
+            heap[child] = swap;
+            i = child;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.minibar.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded history of the words a user has translated with a grammar.
+ * Every word has a score that grows each time it is used and decays as other words are used, so words that are
+ * used often and recently rank first. Storing a word and looking up its score take constant time, no matter how
+ * long the history is.
+ * <p>
+ * Words are kept as their IDs in a symbol table, in parallel arrays of slots linked from least to most recently used,
+ * so storing and ranking words creates no objects per word.
+ */
+public class WordHistory {
+    public static final int DEFAULT_CAPACITY = 1000;
+    private static final double DECAY = 0.98;   //Score kept per word stored since, a half-life of about 35 words
+
+    private final int capacity;
+    private final SymbolTable symbols;
+    private int[] slotOf = new int[0];  //Slot + 1 of each word ID, 0 if the word is not in the history
+    private int[] ids = new int[0];     //Word ID of each slot
+    private double[] scores = new double[0];    //Score of each slot at the time of its last use
+    private long[] lastUses = new long[0];
+    private int[] older = new int[0], newer = new int[0];   //Links between the slots, -1 at either end
+    private double[] rankScores = new double[0];    //Current score of each slot, while ranking
+    private int oldest = -1, newest = -1;
+    private int size;
+    private long clock;     //Number of words stored so far
+
+    /**
+     * Creates an empty history with a symbol table of its own
+     *
+     * @param capacity is the maximum number of words remembered
+     */
+    public WordHistory(int capacity) {
+        this(capacity, new SymbolTable());
+    }
+
+    /**
+     * Creates an empty history
+     *
+     * @param capacity is the maximum number of words remembered
+     * @param symbols  is the symbol table of the grammar
+     */
+    public WordHistory(int capacity, SymbolTable symbols) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Creates a history from a list of previous words
+     *
+     * @param capacity      is the maximum number of words remembered
+     * @param previousWords are the previous words, most recently used first
+     */
+    public WordHistory(int capacity, List<String> previousWords) {
+        this(capacity, new SymbolTable(), previousWords);
+    }
+
+    /**
+     * Creates a history from a list of previous words
+     *
+     * @param capacity      is the maximum number of words remembered
+     * @param symbols       is the symbol table of the grammar
+     * @param previousWords are the previous words, most recently used first
+     */
+    public WordHistory(int capacity, SymbolTable symbols, List<String> previousWords) {
+        this(capacity, symbols);
+        for (int i = previousWords.size() - 1; i >= 0; i--) use(previousWords.get(i));
+    }
+
+    /**
+     * @return the symbol table the IDs of the words are from
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Records a use of the word, forgetting the least recently used word if the history is full
+     *
+     * @param word is the word used
+     */
+    public void use(String word) {
+        use(symbols.intern(word));
+    }
+
+    /**
+     * Records a use of the word, forgetting the least recently used word if the history is full
+     *
+     * @param id is the ID of the word used
+     */
+    public void use(int id) {
+        clock++;
+        int slot = slotOf(id);
+        if (slot < 0) {
+            if (id >= slotOf.length) slotOf = Arrays.copyOf(slotOf, Math.max(id + 1, 2 * slotOf.length));
+            slot = allocate();
+            ids[slot] = id;
+            scores[slot] = 0;
+            slotOf[id] = slot + 1;
+        } else {
+            unlink(slot);   //Linked again below as the most recently used
+        }
+        scores[slot] = scores[slot] * Math.pow(DECAY, clock - lastUses[slot]) + 1;
+        lastUses[slot] = clock;
+        link(slot);
+    }
+
+    /**
+     * @param word is the word to look up
+     * @return the current score of the word, 0 if the word is not in the history
+     */
+    public double score(String word) {
+        return score(symbols.lookup(word));
+    }
+
+    /**
+     * @param id is the ID of the word to look up
+     * @return the current score of the word, 0 if the word is not in the history
+     */
+    public double score(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) return 0;
+        return scores[slot] * Math.pow(DECAY, clock - lastUses[slot]);
+    }
+
+    public boolean contains(String word) {
+        return contains(symbols.lookup(word));
+    }
+
+    public boolean contains(int id) {
+        return slotOf(id) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the words found in the history to the front, highest score first.
+     * The other words keep their order. Takes O(k log k) time for k words.
+     *
+     * @param words is the list of words to rank
+     * @return a new list with the ranked words
+     */
+    public ArrayList<String> rank(List<String> words) {
+        int[] wordIds = new int[words.size()];
+        for (int i = 0; i < wordIds.length; i++) wordIds[i] = symbols.intern(words.get(i));
+        int[] ranked = rank(wordIds, wordIds.length);
+        ArrayList<String> rankedWords = new ArrayList<>(ranked.length);
+        for (int id : ranked) rankedWords.add(symbols.token(id));
+        return rankedWords;
+    }
+
+    /**
+     * Moves the words found in the history to the front, highest score first.
+     * The other words keep their order. Takes O(k log k) time for k words, and allocates only the array returned.
+     *
+     * @param wordIds are the IDs of the words to rank
+     * @param count   is the number of IDs to rank, from the start of the array
+     * @return a new array with the IDs of the ranked words
+     */
+    public int[] rank(int[] wordIds, int count) {
+        if (rankScores.length < scores.length) rankScores = new double[scores.length];
+        int[] ranked = new int[count];
+        int used = 0;
+        for (int i = 0; i < count; i++) {      //Slots of the used words first
+            int slot = slotOf(wordIds[i]);
+            if (slot < 0) continue;
+            rankScores[slot] = scores[slot] * Math.pow(DECAY, clock - lastUses[slot]);
+            ranked[used++] = slot;
+        }
+        int next = used;
+        for (int i = 0; i < count; i++) {      //Then the other words, in their order
+            if (slotOf(wordIds[i]) < 0) ranked[next++] = wordIds[i];
+        }
+        sortSlots(ranked, used);
+        for (int i = 0; i < used; i++) ranked[i] = ids[ranked[i]];
+        return ranked;
+    }
+
+    /**
+     * @return the words in the history, most recently used first
+     */
+    public ArrayList<String> toList() {
+        ArrayList<String> words = new ArrayList<>(size);
+        for (int slot = newest; slot >= 0; slot = older[slot]) words.add(symbols.token(ids[slot]));
+        return words;
+    }
+
+    /**
+     * @return the words in the history, most recently used first
+     */
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    private int slotOf(int id) {
+        return id >= 0 && id < slotOf.length ? slotOf[id] - 1 : -1;
+    }
+
+    /**
+     * @return a free slot, the slot of the least recently used word if the history is full
+     */
+    private int allocate() {
+        if (size == capacity) {
+            int slot = oldest;
+            unlink(slot);
+            slotOf[ids[slot]] = 0;
+            return slot;
+        }
+        if (size == ids.length) {
+            int length = Math.min(capacity, Math.max(16, 2 * size));
+            ids = Arrays.copyOf(ids, length);
+            scores = Arrays.copyOf(scores, length);
+            lastUses = Arrays.copyOf(lastUses, length);
+            older = Arrays.copyOf(older, length);
+            newer = Arrays.copyOf(newer, length);
+        }
+        return size;
+    }
+
+    /**
+     * Links the slot in as the most recently used
+     */
+    private void link(int slot) {
+        older[slot] = newest;
+        newer[slot] = -1;
+        if (newest >= 0) newer[newest] = slot;
+        else oldest = slot;
+        newest = slot;
+        size++;
+    }
+
+    private void unlink(int slot) {
+        if (older[slot] >= 0) newer[older[slot]] = newer[slot];
+        else oldest = newer[slot];
+        if (newer[slot] >= 0) older[newer[slot]] = older[slot];
+        else newest = older[slot];
+        size--;
+    }
+
+    /**
+     * @return whether slot a ranks before slot b, by score and then by recency
+     */
+    private boolean ranksBefore(int a, int b) {
+        if (rankScores[a] != rankScores[b]) return rankScores[a] > rankScores[b];
+        return lastUses[a] > lastUses[b];
+    }
+
+    /**
+     * Heap sorts the first count slots into rank order, without boxing them
+     */
+    private void sortSlots(int[] slots, int count) {
+        for (int i = count / 2 - 1; i >= 0; i--) siftDown(slots, i, count);
+        for (int end = count - 1; end > 0; end--) {
+            int last = slots[0];    //The slot ranking last goes to the end
+            slots[0] = slots[end];
+            slots[end] = last;
+            siftDown(slots, 0, end);
+        }
+    }
+
+    private void siftDown(int[] slots, int i, int count) {
+        while (2 * i + 1 < count) {
+            int child = 2 * i + 1;
+            if (child + 1 < count && ranksBefore(slots[child], slots[child + 1])) child++;
+            if (!ranksBefore(slots[i], slots[child])) return;
+            int swap = slots[i];
+            slots[i] = slots[child];
+            slots[child] = swap;
+            i = child;
+        }
+    }
+}
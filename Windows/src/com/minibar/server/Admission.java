@@ -0,0 +1,98 @@
+package com.minibar.server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded admission of requests: at most maxRunning requests run at once and at most maxQueued more wait for
+ * their turn. Requests arriving when the queue is full are turned away at once, so a burst of requests can not pile
+ * up unbounded work and memory.
+ */
+public class Admission {
+    private final Semaphore running;
+    private final int capacity;     //Running and queued requests
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param maxRunning is the number of requests that may run at once
+     * @param maxQueued  is the number of requests that may wait to run
+     */
+    public Admission(int maxRunning, int maxQueued) {
+        if (maxRunning <= 0 || maxQueued < 0)
+            throw new IllegalArgumentException("maxRunning must be positive and maxQueued not negative");
+        this.running = new Semaphore(maxRunning, true);     //Fair, queued requests run in arrival order
+        this.capacity = maxRunning + maxQueued;
+    }
+
+    /**
+     * Admits a request, waiting in the queue until it may run. Every admitted request must call exit() once done.
+     *
+     * @return true if the request may run, false if the queue is full
+     * @throws InterruptedException if interrupted while queued
+     */
+    public boolean enter() throws InterruptedException {
+        if (!admit()) return false;
+        await();
+        return true;
+    }
+
+    /**
+     * Admits a request to the queue without waiting, e.g. on the thread accepting the requests. Every admitted
+     * request must then either call await() and, once done, exit(), or call withdraw().
+     *
+     * @return true if the request was queued, false if the queue is full
+     */
+    public boolean admit() {
+        if (admitted.incrementAndGet() > capacity) {
+            admitted.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits until an admitted request may run
+     *
+     * @throws InterruptedException if interrupted while queued, the request is then withdrawn
+     */
+    public void await() throws InterruptedException {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            withdraw();
+            throw e;
+        }
+    }
+
+    /**
+     * Removes an admitted request that will not run from the queue
+     */
+    public void withdraw() {
+        admitted.decrementAndGet();
+    }
+
+    /**
+     * Lets the next queued request run
+     */
+    public void exit() {
+        running.release();
+        admitted.decrementAndGet();
+    }
+
+    /**
+     * @return the number of requests running or queued
+     */
+    public int getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * @return the number of requests turned away because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,66 @@
+package com.minibar.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical requests: while a value is being computed for a key, other requests for the same key wait
+ * for that computation instead of starting their own. Nothing is kept once the computation is done, caching is
+ * left to the caller.
+ *
+ * @param <K> is the type of the keys identifying identical requests
+ * @param <V> is the type of the values
+ */
+public class Coalescer<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Computes the value of a key, or waits for the computation of the same key already running
+     *
+     * @param key         identifies the request
+     * @param computation computes the value, on the calling thread
+     * @return the value
+     */
+    public V get(K key, Supplier<V> computation) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {  //Same request in flight, share its result
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            V value = computation.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return the number of requests that waited for an identical request instead of being computed
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of keys being computed now
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.minibar.server;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes the JSON responses of the server. Values are strings, numbers, booleans, nulls, collections and maps
+ * with string keys, written in their iteration order.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * @param value is the value to write
+     * @return the JSON text of the value
+     */
+    public static String write(Object value) {
+        StringBuilder json = new StringBuilder();
+        write(value, json);
+        return json.toString();
+    }
+
+    private static void write(Object value, StringBuilder json) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Map) {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) json.append(',');
+                first = false;
+                quote(String.valueOf(entry.getKey()), json);
+                json.append(':');
+                write(entry.getValue(), json);
+            }
+            json.append('}');
+        } else if (value instanceof Collection) {
+            json.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) json.append(',');
+                first = false;
+                write(element, json);
+            }
+            json.append(']');
+        } else {
+            quote(value.toString(), json);
+        }
+    }
+
+    private static void quote(String value, StringBuilder json) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,65 @@
+package com.minibar.tests;
+
+import com.minibar.server.Coalescer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for Coalescer class
+ */
+public final class CoalescerTest {
+
+    /**
+     * Tests that identical requests in flight at the same time are computed once
+     */
+    @Test
+    void testIdenticalRequestsAreCoalesced() throws Exception {
+        Coalescer<String, Integer> coalescer = new Coalescer<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<Integer> first = pool.submit(() -> coalescer.get("this", () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 42;
+            }));
+            started.await();
+            List<Future<Integer>> others = new ArrayList<>();
+            for (int i = 0; i < 3; i++) others.add(pool.submit(() -> coalescer.get("this", computations::incrementAndGet)));
+            while (coalescer.getCoalescedCount() < 3) Thread.sleep(1);    //All waiting for the first
+            release.countDown();
+            assertEquals(42, first.get());
+            for (Future<Integer> other : others) assertEquals(42, other.get());
+            assertEquals(1, computations.get());
+            assertEquals(0, coalescer.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a key is computed again once its computation is done, and that failures are shared
+     */
+    @Test
+    void testNothingIsKept() {
+        Coalescer<String, Integer> coalescer = new Coalescer<>();
+        assertEquals(1, coalescer.get("a", () -> 1));
+        assertEquals(2, coalescer.get("a", () -> 2));
+        assertThrows(IllegalArgumentException.class, () -> coalescer.get("b", () -> {
+            throw new IllegalArgumentException();
+        }));
+        assertEquals(0, coalescer.size());
+    }
+}
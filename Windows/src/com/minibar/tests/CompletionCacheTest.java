@@ -0,0 +1,83 @@
+package com.minibar.tests;
+
+import com.minibar.model.CompletionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionCacheTest {
+
+    /**
+     * Tests that stored results are found again and counted as hits
+     */
+    @Test
+    void testHitAndMiss() {
+        CompletionCache cache = new CompletionCache(10, 1024 * 1024);
+        assertNull(cache.get("Foods", "FoodsEng", "Comment", "these"));
+        cache.put("Foods", "FoodsEng", "Comment", "these", Arrays.asList("pizzas", "wines"));
+        assertEquals(Arrays.asList("pizzas", "wines"), cache.get("Foods", "FoodsEng", "Comment", "these"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Tests that every part of the key is used
+     */
+    @Test
+    void testKeys() {
+        CompletionCache cache = new CompletionCache(10, 1024 * 1024);
+        cache.put("Foods", "FoodsEng", "Comment", "these", Arrays.asList("pizzas"));
+        assertNull(cache.get("Letter", "FoodsEng", "Comment", "these"));
+        assertNull(cache.get("Foods", "FoodsIta", "Comment", "these"));
+        assertNull(cache.get("Foods", "FoodsEng", "Item", "these"));
+        assertNull(cache.get("Foods", "FoodsEng", "Comment", "this"));
+        assertNotNull(cache.get("Foods", "FoodsEng", "Comment", " these "));  //White space is ignored
+    }
+
+    /**
+     * Tests that the least recently used result is evicted when there are too many entries
+     */
+    @Test
+    void testEntryBound() {
+        CompletionCache cache = new CompletionCache(2, 1024 * 1024);
+        cache.put("Foods", "FoodsEng", "Comment", "this", Arrays.asList("pizza"));
+        cache.put("Foods", "FoodsEng", "Comment", "that", Arrays.asList("wine"));
+        cache.get("Foods", "FoodsEng", "Comment", "this");     //"that" is now the least recently used
+        cache.put("Foods", "FoodsEng", "Comment", "these", Arrays.asList("wines"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("Foods", "FoodsEng", "Comment", "that"));
+        assertNotNull(cache.get("Foods", "FoodsEng", "Comment", "this"));
+    }
+
+    /**
+     * Tests that results are evicted when the byte bound is exceeded
+     */
+    @Test
+    void testByteBound() {
+        CompletionCache cache = new CompletionCache(100, 1000);
+        List<String> words = Arrays.asList("pizzas", "cheeses", "wines", "fish");
+        for (int i = 0; i < 20; i++) cache.put("Foods", "FoodsEng", "Comment", "prefix" + i, words);
+        assertTrue(cache.getByteSize() <= 1000);
+        assertTrue(cache.getEvictionCount() > 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getByteSize());
+    }
+
+    /**
+     * Tests that the grammar's costs are kept with the words
+     */
+    @Test
+    void testCosts() {
+        CompletionCache cache = new CompletionCache(10, 1024 * 1024);
+        cache.put("Foods", "FoodsEng", "Comment", "these", Arrays.asList("pizzas", "wines"), new double[]{1.5, 2.5, 9});
+        assertArrayEquals(new double[]{1.5, 2.5}, cache.getCosts("Foods", "FoodsEng", "Comment", "these"));
+        cache.put("Foods", "FoodsEng", "Comment", "this", Arrays.asList("pizza"));
+        assertNull(cache.getCosts("Foods", "FoodsEng", "Comment", "this"));
+        assertNull(cache.getCosts("Foods", "FoodsEng", "Comment", "that"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.minibar.tests;
+
+import com.minibar.cli.CorpusGenerator;
+import com.minibar.model.GrammarPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for CorpusGenerator class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class CorpusGeneratorTest {
+
+    /**
+     * Tests that fingerprints detect strings seen before, and stop growing at their capacity
+     */
+    @Test
+    void testFingerprints() {
+        CorpusGenerator.Fingerprints fingerprints = new CorpusGenerator.Fingerprints(1000);
+        for (int i = 0; i < 1000; i++) assertTrue(fingerprints.add("Pred (This Pizza) " + i));
+        assertTrue(fingerprints.isFull());
+        for (int i = 0; i < 1000; i++) assertFalse(fingerprints.add("Pred (This Pizza) " + i));
+        assertTrue(fingerprints.add("Pred (That Wine) Warm"));   //Not remembered once full
+        assertTrue(fingerprints.add("Pred (That Wine) Warm"));
+        assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator.Fingerprints(0));
+    }
+
+    /**
+     * Tests that the corpus has the asked number of distinct trees, linearized into every language asked for
+     */
+    @Test
+    void testRun() throws IOException {
+        try (GrammarPool pool = new GrammarPool("grammars/Foods.pgf", 2)) {
+            CorpusGenerator generator = new CorpusGenerator(pool, new String[]{"FoodsEng", "FoodsGer"},
+                    new String[]{"Comment"}, 10, 42, 100_000);
+            StringWriter out = new StringWriter();
+            CorpusGenerator.Summary summary = generator.run(1000, out, done -> assertTrue(done <= 1.0));
+            String[] lines = out.toString().split("\n");
+            assertEquals("category\tAbstract\tFoodsEng\tFoodsGer", lines[0]);
+            assertEquals(1000, summary.getSentences());
+            assertEquals(1001, lines.length);
+            Set<String> trees = new HashSet<>();
+            for (int i = 1; i < lines.length; i++) {
+                String[] columns = lines[i].split("\t", -1);
+                assertEquals(4, columns.length);
+                assertEquals("Comment", columns[0]);
+                assertTrue(trees.add(columns[1]), columns[1]);
+                assertFalse(columns[2].isEmpty());
+            }
+            assertTrue(summary.getThroughput() > 0);
+        }
+    }
+
+    /**
+     * Tests that generation stops when a grammar has fewer distinct trees than asked for
+     */
+    @Test
+    void testExhausted() throws IOException {
+        try (GrammarPool pool = new GrammarPool("grammars/Foods.pgf", 2)) {
+            //At depth 1 the only trees of Kind are its constants, like Pizza
+            CorpusGenerator generator = new CorpusGenerator(pool, new String[]{"FoodsEng"},
+                    new String[]{"Kind"}, 1, 1, 1000);
+            CorpusGenerator.Summary summary = generator.run(1000, new StringWriter(), done -> { });
+            assertTrue(summary.isExhausted());
+            assertTrue(summary.getSentences() < 20);
+        }
+    }
+}
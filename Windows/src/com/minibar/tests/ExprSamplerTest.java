@@ -0,0 +1,110 @@
+package com.minibar.tests;
+
+import com.minibar.model.ExprSampler;
+import com.minibar.model.ExprSampler.Function;
+import org.grammaticalframework.pgf.Concr;
+import org.grammaticalframework.pgf.Expr;
+import org.grammaticalframework.pgf.ExprProb;
+import org.grammaticalframework.pgf.PGF;
+import org.grammaticalframework.pgf.ParseError;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ExprSampler class
+ * Uses small made-up abstract syntaxes, and grammars/Foods.pgf
+ */
+public final class ExprSamplerTest {
+
+    /**
+     * Pred : NP -> S, And : NP -> NP -> NP (recursive), John : NP (constant)
+     */
+    private static ExprSampler recursive(double recursionProbability) {
+        return new ExprSampler(Arrays.asList(
+                new Function("Pred", "S", new String[]{"NP"}, 0),
+                new Function("And", "NP", new String[]{"NP", "NP"}, -Math.log(recursionProbability)),
+                new Function("John", "NP", new String[0], -Math.log(1 - recursionProbability))));
+    }
+
+    private static int depth(String tree) {
+        int depth = 0, maxDepth = 0;
+        for (char c : tree.toCharArray()) {
+            if (c == '(') maxDepth = Math.max(maxDepth, ++depth);
+            else if (c == ')') depth--;
+        }
+        return maxDepth + 1;
+    }
+
+    /**
+     * Tests that trees never exceed the depth bound, even when recursion is very likely
+     */
+    @Test
+    void testDepthBound() {
+        ExprSampler sampler = recursive(0.99);
+        Random random = new Random(1);
+        for (int maxDepth = 2; maxDepth <= 8; maxDepth++) {
+            for (int i = 0; i < 100; i++) {
+                String tree = sampler.sampleTree("S", maxDepth, random);
+                assertTrue(tree.startsWith("Pred "), tree);
+                //Constants are not parenthesised, so the deepest level has no parentheses of its own
+                assertTrue(depth(tree) <= maxDepth, tree);
+            }
+        }
+        assertEquals("Pred John", sampler.sampleTree("S", 2, random));
+    }
+
+    /**
+     * Tests that functions are picked with the probabilities of the grammar
+     */
+    @Test
+    void testProbabilities() {
+        ExprSampler sampler = new ExprSampler(Arrays.asList(
+                new Function("Warm", "Quality", new String[0], -Math.log(0.7)),
+                new Function("Cold", "Quality", new String[0], -Math.log(0.2)),
+                new Function("Boring", "Quality", new String[0], -Math.log(0.1))));
+        Map<String, Integer> counts = new HashMap<>();
+        Random random = new Random(7);
+        int samples = 20000;
+        for (int i = 0; i < samples; i++) counts.merge(sampler.sampleTree("Quality", 5, random), 1, Integer::sum);
+        assertEquals(0.7, counts.get("Warm") / (double) samples, 0.02);
+        assertEquals(0.2, counts.get("Cold") / (double) samples, 0.02);
+        assertEquals(0.1, counts.get("Boring") / (double) samples, 0.02);
+    }
+
+    /**
+     * Tests literals, and categories no finite tree can be made of
+     */
+    @Test
+    void testLiteralsAndEmptyCategories() {
+        ExprSampler sampler = new ExprSampler(Arrays.asList(
+                new Function("Name", "NP", new String[]{"String"}, 0),
+                new Function("Loop", "X", new String[]{"X"}, 0)));
+        assertTrue(sampler.sampleTree("NP", 3, new Random(3)).matches("Name \"[a-z]\""));
+        assertFalse(sampler.canSample("X"));
+        assertFalse(sampler.canSample("Unknown"));
+        assertThrows(IllegalArgumentException.class, () -> sampler.sampleTree("X", 3, new Random()));
+    }
+
+    /**
+     * Tests that sampled trees of a real grammar linearize to sentences that parse back to them
+     */
+    @Test
+    void testFoods() throws FileNotFoundException, ParseError {
+        PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+        Concr english = grammar.getLanguages().get("FoodsEng");
+        ExprSampler sampler = ExprSampler.of(grammar);
+        assertSame(sampler, ExprSampler.of(grammar));
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            Expr tree = sampler.sample("Comment", ExprSampler.DEFAULT_MAX_DEPTH, random);
+            String sentence = english.linearize(tree);
+            assertFalse(sentence.isEmpty());
+            Iterator<ExprProb> parses = english.parse("Comment", sentence).iterator();
+            assertTrue(parses.hasNext(), sentence);
+        }
+    }
+}
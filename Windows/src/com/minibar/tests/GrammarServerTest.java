@@ -0,0 +1,114 @@
+package com.minibar.tests;
+
+import com.minibar.server.GrammarServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for GrammarServer class
+ * Serves the grammars folder on localhost
+ */
+public final class GrammarServerTest {
+    private GrammarServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new GrammarServer(Paths.get("grammars"), 4, 16);
+        server.start("127.0.0.1", 0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    /**
+     * Sends a GET request to the server
+     *
+     * @return the status and the body of the response, separated by a space
+     */
+    private String get(String request) throws IOException {
+        return get(server, request);
+    }
+
+    private static String get(GrammarServer server, String request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + request).openConnection();
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return status + " " + new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Tests that the grammars are listed and described
+     */
+    @Test
+    void testGrammar() throws IOException {
+        assertEquals("200 [\"Foods.pgf\",\"Letter.pgf\"]", get("/grammars/"));
+        String info = get("/grammars/Foods.pgf");
+        assertTrue(info.startsWith("200 {\"name\":\"Foods\",\"startcat\":\"Comment\""));
+        assertTrue(info.contains("{\"name\":\"FoodsEng\"}"));
+        assertTrue(get("/grammars/Missing.pgf").startsWith("404 "));
+        assertTrue(get("/grammars/../grammars/Foods.pgf").startsWith("404 "));
+    }
+
+    /**
+     * Tests completing, parsing, linearizing and translating a sentence
+     */
+    @Test
+    void testCommands() throws IOException {
+        assertEquals("200 [{\"from\":\"FoodsEng\",\"text\":\"piz\",\"completions\":[\"pizza\"]}]",
+                get("/grammars/Foods.pgf?command=complete&from=FoodsEng&input=this+piz"));
+        String parse = get("/grammars/Foods.pgf?command=parse&from=FoodsEng&input=this+pizza+is+warm");
+        assertTrue(parse.contains("\"trees\":[\"Pred (This Pizza) Warm\"]"), parse);
+        assertTrue(get("/grammars/Foods.pgf?command=parse&from=FoodsEng&input=this+pizza+is").contains("parseFailed"));
+        assertEquals("200 [{\"to\":\"FoodsEng\",\"text\":\"this pizza is warm\"}]",
+                get("/grammars/Foods.pgf?command=linearize&to=FoodsEng&tree=Pred+(This+Pizza)+Warm"));
+        String translation = get("/grammars/Foods.pgf?command=translate&from=FoodsEng&to=FoodsEng&input=this+pizza+is+warm");
+        assertTrue(translation.contains("\"linearizations\":[{\"to\":\"FoodsEng\",\"text\":\"this pizza is warm\"}]"), translation);
+        assertTrue(get("/grammars/Foods.pgf?command=parse&from=FoodsXyz&input=this").startsWith("400 "));
+        assertTrue(get("/grammars/Foods.pgf?command=random&from=FoodsEng&limit=2").startsWith("200 [{\"tree\":"));
+    }
+
+    /**
+     * Tests that a request beyond the running and queued ones is answered 503 while the queued one waits its turn
+     */
+    @Test
+    void testBusyServer() throws Exception {
+        GrammarServer busy = new GrammarServer(Paths.get("grammars"), 1, 1);
+        busy.start("127.0.0.1", 0);
+        try {
+            assertTrue(busy.getAdmission().enter());   //Takes the only running slot
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return get(busy, "/grammars/");
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            while (busy.getAdmission().getAdmitted() < 2) Thread.sleep(1);
+            assertTrue(get(busy, "/grammars/").startsWith("503 "));
+            assertEquals(1, busy.getAdmission().getRejectedCount());
+            assertFalse(queued.isDone());
+            busy.getAdmission().exit();
+            assertEquals("200 [\"Foods.pgf\",\"Letter.pgf\"]", queued.get(5, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);    //The worker leaves after answering
+            while (busy.getAdmission().getAdmitted() > 0 && System.nanoTime() < deadline) Thread.sleep(1);
+            assertEquals(0, busy.getAdmission().getAdmitted());
+        } finally {
+            busy.stop();
+        }
+    }
+}
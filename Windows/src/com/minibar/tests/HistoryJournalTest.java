@@ -0,0 +1,132 @@
+package com.minibar.tests;
+
+import com.minibar.model.HistoryJournal;
+import com.minibar.model.WordHistory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HistoryJournal class
+ */
+public final class HistoryJournalTest {
+
+    /**
+     * Tests that the histories rebuilt after reopening the journal are the ones that were stored
+     */
+    @Test
+    void testReplay() throws IOException {
+        Path file = Files.createTempFile("history", ".journal");
+        try {
+            WordHistory expected = new WordHistory(WordHistory.DEFAULT_CAPACITY);
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                for (String sentence : new String[]{"this pizza is warm", "that wine is expensive", "this wine is warm"}) {
+                    List<String> words = Arrays.asList(sentence.split(" "));
+                    journal.append("Foods", words);
+                    for (String word : words) expected.use(word);
+                }
+                journal.append("Letter", Arrays.asList("dear", "sir"));
+            }
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                assertEquals(new HashSet<>(Arrays.asList("Foods", "Letter")), journal.getGrammars());
+                WordHistory replayed = journal.replay("Foods", WordHistory.DEFAULT_CAPACITY);
+                assertEquals(expected.toList(), replayed.toList());
+                assertEquals(expected.score("is"), replayed.score("is"), 1e-9);
+                assertEquals("[sir, dear]", journal.replay("Letter", 10).toString());
+                assertEquals(0, journal.replay("Unknown", 10).size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that words are journaled once, later uses are only their numbers
+     */
+    @Test
+    void testDictionary() throws IOException {
+        Path file = Files.createTempFile("history", ".journal");
+        try (HistoryJournal journal = HistoryJournal.open(file)) {
+            journal.append("Foods", Arrays.asList("this", "extraordinarily", "expensive", "pizza"));
+            long first = journal.getByteSize();
+            journal.append("Foods", Arrays.asList("this", "extraordinarily", "expensive", "pizza"));
+            assertTrue(journal.getByteSize() - first < 16, "A sentence of known words takes a few bytes");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a record cut short by a crash is dropped, and the journal can be appended to again
+     */
+    @Test
+    void testTornRecord() throws IOException {
+        Path file = Files.createTempFile("history", ".journal");
+        try {
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                journal.append("Foods", Arrays.asList("this", "pizza"));
+                journal.append("Foods", Arrays.asList("that", "wine"));
+            }
+            try (RandomAccessFile torn = new RandomAccessFile(file.toFile(), "rw")) {
+                torn.setLength(torn.length() - 2);  //The checksum of the last record is incomplete
+            }
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                assertEquals("[pizza, this]", journal.replay("Foods", 10).toString());
+                journal.append("Foods", Collections.singletonList("warm"));
+            }
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                assertEquals("[warm, pizza, this]", journal.replay("Foods", 10).toString());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that histories saved as lists, most recent first, are imported in the same order
+     */
+    @Test
+    void testImport() throws IOException {
+        Path file = Files.createTempFile("history", ".journal");
+        try (HistoryJournal journal = HistoryJournal.open(file)) {
+            Map<String, ArrayList<String>> data = new HashMap<>();
+            data.put("Foods", new ArrayList<>(Arrays.asList("warm", "pizza", "this")));
+            journal.importHistory(data);
+            assertEquals("[warm, pizza, this]", journal.replay("Foods", 10).toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that compaction bounds the file and keeps the recent history of every grammar
+     */
+    @Test
+    void testCompaction() throws IOException {
+        Path file = Files.createTempFile("history", ".journal");
+        try {
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                //About 13 bytes per sentence, 1.3 MB if nothing was left out
+                for (int i = 0; i < 100_000; i++)
+                    journal.append("Foods", Arrays.asList("word" + i % 5000, "pizza", "is", "warm"));
+                journal.append("Letter", Arrays.asList("dear", "sir"));
+                journal.compact().join();
+                assertTrue(journal.getByteSize() < 200_000, journal.getByteSize() + " bytes");
+                journal.append("Foods", Collections.singletonList("cheese"));   //Appended to the compacted file
+            }
+            try (HistoryJournal journal = HistoryJournal.open(file)) {
+                WordHistory foods = journal.replay("Foods", WordHistory.DEFAULT_CAPACITY);
+                assertEquals("[cheese, warm, is, pizza, word4999]", foods.toList().subList(0, 5).toString());
+                assertEquals("[sir, dear]", journal.replay("Letter", 10).toString());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
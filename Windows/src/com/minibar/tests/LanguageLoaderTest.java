@@ -0,0 +1,51 @@
+package com.minibar.tests;
+
+import com.minibar.model.LanguageLoader;
+import org.grammaticalframework.pgf.PGF;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LanguageLoader class
+ * Uses grammars/Foods.pgf to test, which is not split so every language is always loaded
+ */
+public final class LanguageLoaderTest {
+
+    /**
+     * Tests that a grammar that is not split has every language loaded and nothing to unload
+     */
+    @Test
+    void testNotSplit() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            LanguageLoader loader = new LanguageLoader(grammar, "grammars/Foods.pgf", LanguageLoader.DEFAULT_BUDGET);
+            assertFalse(loader.isSplit());
+            assertTrue(loader.isLoaded("FoodsEng"));
+            assertEquals(grammar.getLanguages().size(), loader.getLoaded().size());
+            try (LanguageLoader.Hold hold = loader.acquire("FoodsEng", "FoodsAfr")) {
+                assertEquals(2, hold.getNames().size());
+            }
+            loader.trim(0);
+            assertTrue(loader.isLoaded("FoodsAfr"));
+            assertEquals(0, loader.getByteSize());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
+    /**
+     * Tests that the budget must be positive
+     */
+    @Test
+    void testInvalidBudget() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            assertThrows(IllegalArgumentException.class, () -> new LanguageLoader(grammar, "grammars/Foods.pgf", 0));
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+}
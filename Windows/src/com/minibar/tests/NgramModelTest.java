@@ -0,0 +1,147 @@
+package com.minibar.tests;
+
+import com.minibar.model.NgramModel;
+import com.minibar.model.SymbolTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for NgramModel class
+ */
+public final class NgramModelTest {
+
+    /**
+     * Tests that the words seen after a context score higher than the words that were not
+     */
+    @Test
+    void testContext() {
+        SymbolTable symbols = new SymbolTable();
+        NgramModel model = new NgramModel(symbols);
+        model.train("this pizza is warm");
+        model.train("this pizza is warm");
+        model.train("this wine is expensive");
+        int pizza = symbols.lookup("pizza"), wine = symbols.lookup("wine"), is = symbols.lookup("is");
+        int warm = symbols.lookup("warm"), expensive = symbols.lookup("expensive");
+        int start = NgramModel.START, self = symbols.lookup("this");
+        assertEquals(Math.log(1), model.score(start, start, self), 1e-9);   //Every sentence starts with this
+        assertTrue(model.score(start, self, pizza) > model.score(start, self, wine));
+        assertTrue(model.score(pizza, is, warm) > model.score(pizza, is, expensive));
+        assertTrue(model.score(wine, is, expensive) > model.score(wine, is, warm));
+        assertEquals(3, model.getSentenceCount());
+        assertEquals(12, model.getTokenCount());
+    }
+
+    /**
+     * Tests that unseen trigrams back off to bigrams, and unseen bigrams to unigrams
+     */
+    @Test
+    void testBackoff() {
+        SymbolTable symbols = new SymbolTable();
+        NgramModel model = new NgramModel(symbols);
+        model.train("these fish are warm");
+        model.train("those fish are boring");
+        model.train("boring");
+        int fish = symbols.lookup("fish"), are = symbols.lookup("are"), warm = symbols.lookup("warm");
+        int boring = symbols.lookup("boring"), unknown = symbols.intern("cheese");
+        double seenTrigram = model.score(fish, are, warm);
+        double seenBigram = model.score(unknown, are, warm);
+        double unigram = model.score(unknown, unknown, boring);
+        assertTrue(seenTrigram > seenBigram && seenBigram > unigram);
+        assertTrue(unigram > model.score(unknown, unknown, unknown), "Words seen before rank above unseen words");
+        assertTrue(model.score(-1, -1, warm) < 0);
+    }
+
+    /**
+     * Tests that the context is the last two words of the text
+     */
+    @Test
+    void testContextOfText() {
+        SymbolTable symbols = new SymbolTable();
+        NgramModel model = new NgramModel(symbols);
+        model.train("this pizza is warm");
+        long context = model.context("this pizza  is ");
+        assertEquals(symbols.lookup("pizza"), (int) (context >> 32));
+        assertEquals(symbols.lookup("is"), (int) context);
+        context = model.context("this");
+        assertEquals(NgramModel.START, (int) (context >> 32));
+        assertEquals(symbols.lookup("this"), (int) context);
+        context = model.context("");
+        assertEquals(NgramModel.START, (int) (context >> 32));
+        assertEquals(NgramModel.START, (int) context);
+        assertEquals(-1, (int) model.context("this cheese"));
+    }
+
+    /**
+     * Tests that IDs too large to pack in a key score as unknown words instead of being wrapped around
+     */
+    @Test
+    void testLargeIds() {
+        SymbolTable symbols = new SymbolTable();
+        NgramModel model = new NgramModel(symbols);
+        model.train("this pizza is warm");
+        int is = symbols.lookup("is"), warm = symbols.lookup("warm"), large = 1 << 20;
+        assertEquals(model.score(-1, -1, -1), model.score(NgramModel.START, NgramModel.START, large), 1e-9);
+        assertEquals(model.score(-1, is, warm), model.score(large, is, warm), 1e-9);
+        assertEquals(model.score(-1, -1, warm), model.score(Integer.MAX_VALUE, large, warm), 1e-9);
+    }
+
+    /**
+     * Tests training from a corpus file, and that the sentences learnt are appended to it
+     */
+    @Test
+    void testCorpus(@TempDir Path directory) throws IOException {
+        Path corpus = directory.resolve("NgramModelTest").resolve("FoodsEng.txt");
+        Files.createDirectories(corpus.getParent());
+        Files.write(corpus, Arrays.asList("this pizza is warm", "", "that wine is expensive"), StandardCharsets.UTF_8);
+        NgramModel model = NgramModel.of("NgramModelTest", "FoodsEng", directory);
+        assertSame(model, NgramModel.of("NgramModelTest", "FoodsEng", directory));
+        assertNotSame(model, NgramModel.of("NgramModelOtherTest", "FoodsEng", directory));
+        assertEquals(3, model.getLoaded().join());
+        assertEquals(2, model.getSentenceCount());
+        model.learn("these fish are boring").join();
+        assertEquals(3, model.getSentenceCount());
+        NgramModel reread = new NgramModel(new SymbolTable());
+        assertEquals(4, reread.train(corpus));
+        assertEquals(3, reread.getSentenceCount());
+    }
+
+    /**
+     * Tests that a full corpus file is rotated, and that the model is trained from both files
+     */
+    @Test
+    void testCorpusRotation(@TempDir Path directory) throws IOException {
+        Path corpus = directory.resolve("FoodsEng.txt");
+        NgramModel model = new NgramModel(new SymbolTable(), corpus, 40);
+        model.learn("this pizza is warm");             //19 bytes
+        model.learn("that wine is expensive");         //23 bytes, rotates
+        model.learn("these fish are boring").join();   //22 bytes, rotates again
+        assertEquals(Arrays.asList("these fish are boring"), Files.readAllLines(corpus, StandardCharsets.UTF_8));
+        Path rotated = directory.resolve("FoodsEng.txt.1");
+        assertEquals(Arrays.asList("that wine is expensive"), Files.readAllLines(rotated, StandardCharsets.UTF_8));
+        NgramModel reread = new NgramModel(new SymbolTable());
+        assertEquals(2, reread.trainAsync(rotated, corpus, directory.resolve("Missing.txt")).join());
+        assertThrows(IllegalArgumentException.class, () -> new NgramModel(new SymbolTable(), corpus, 0));
+    }
+
+    /**
+     * Tests that the counts survive the table growing
+     */
+    @Test
+    void testGrowth() {
+        SymbolTable symbols = new SymbolTable();
+        NgramModel model = new NgramModel(symbols);
+        for (int i = 0; i < 5000; i++) model.train("word" + i + " follows word" + (i + 1));
+        int follows = symbols.lookup("follows");
+        for (int i = 0; i < 5000; i += 499) {
+            assertEquals(Math.log(1), model.score(symbols.lookup("word" + i), follows, symbols.lookup("word" + (i + 1))), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.minibar.tests;
+
+import com.minibar.model.SuggestionCursor;
+import com.minibar.model.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SuggestionCursor class
+ */
+public final class SuggestionCursorTest {
+
+    /**
+     * Tests that the pages are handed out best first, each suggestion once, until there are no more
+     */
+    @Test
+    void testPages() {
+        List<String> words = Arrays.asList("warm", "pizza", "wine", "very", "fish", "cheese", "boring");
+        double[] costs = {1, 2, 3, 4, 5, 6, 7};
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> -cost, "",
+                words, costs);
+        assertEquals("[warm, pizza, wine]", cursor.next(3).toString());
+        assertEquals("[very, fish, cheese]", cursor.next(3).toString());
+        assertTrue(cursor.hasMore());
+        assertEquals("[boring]", cursor.next(3).toString());
+        assertFalse(cursor.hasMore());
+        assertTrue(cursor.next(3).isEmpty());
+        assertTrue(cursor.isComplete());
+        cursor.close();
+        assertTrue(cursor.isComplete());    //Every candidate was fetched before
+    }
+
+    /**
+     * Tests that the scorer ranks the suggestions, not the order they were fetched in
+     */
+    @Test
+    void testScores() {
+        SymbolTable symbols = new SymbolTable();
+        int fish = symbols.intern("fish");
+        List<String> words = Arrays.asList("warm", "pizza", "fish");
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), symbols,
+                (id, cost) -> id == fish ? 1000 - cost : -cost, "", words, new double[]{1, 2, 3});
+        assertEquals("[fish, warm, pizza]", cursor.next(5).toString());
+    }
+
+    /**
+     * Tests that only the words starting with the prefix are suggested, once each with their lowest cost
+     */
+    @Test
+    void testPrefixAndDuplicates() {
+        List<String> words = Arrays.asList("warm", "pizza", "wine", "warm", "wines", "very");
+        double[] costs = {5, 1, 4, 2, 3, 0};
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> -cost, "w",
+                words, costs);
+        assertEquals("w", cursor.getPrefix());
+        assertEquals("[warm, wines, wine]", cursor.next(10).toString());
+        assertEquals(3, cursor.getFetched());
+    }
+
+    /**
+     * Tests that a page only fetches a few times as many candidates as it hands out, however many there are
+     */
+    @Test
+    void testBoundedFetch() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) words.add("word" + i);
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> 0, "", words, null);
+        assertEquals("[word0, word1, word2, word3, word4, word5, word6, word7, word8]", cursor.next(9).toString());
+        int fetched = cursor.getFetched();
+        assertTrue(fetched >= 9 * SuggestionCursor.LOOKAHEAD && fetched < 1000, "Fetched " + fetched);
+        assertFalse(cursor.isComplete());
+        assertEquals(9, cursor.next(9).size());
+        assertTrue(cursor.getFetched() < 1000);
+    }
+
+    /**
+     * Tests that the candidates fetched before the cursor was closed are still handed out, and that the cursor is
+     * not complete
+     */
+    @Test
+    void testClose() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) words.add("word" + i);
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> 0, "", words, null);
+        cursor.next(1);
+        int fetched = cursor.getFetched();
+        cursor.close();
+        assertFalse(cursor.isComplete());
+        assertEquals(fetched - 1, cursor.next(1000).size());
+        assertFalse(cursor.hasMore());
+    }
+
+    /**
+     * Tests that a cursor closed before every candidate was fetched is narrowed down from the candidates it has, and
+     * that the grammar is only asked again once they run short
+     */
+    @Test
+    void testNarrowFetched() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) words.add("word" + i);
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> -cost, "", words, null);
+        cursor.next(1);
+        cursor.close();
+        int[] asked = new int[1];
+        SuggestionCursor narrowed = cursor.narrow("word1", () -> {
+            asked[0]++;
+            return null;
+        });
+        assertEquals("word1", narrowed.getPrefix());
+        assertEquals("[word1]", narrowed.next(1).toString());
+        assertEquals(0, asked[0]);     //Fetched before
+        assertTrue(narrowed.next(1000).size() > 0);
+        assertEquals(1, asked[0]);
+        assertTrue(narrowed.isComplete());
+    }
+
+    /**
+     * Tests that a cursor over words is narrowed down to the words not fetched yet as well, without the grammar
+     */
+    @Test
+    void testNarrowWords() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) words.add("word" + i);
+        SuggestionCursor cursor = new SuggestionCursor(new Object(), new SymbolTable(), (id, cost) -> 0, "", words, null);
+        cursor.next(1);
+        SuggestionCursor narrowed = cursor.narrow("word99", () -> {
+            throw new AssertionError("Asked the grammar");
+        });
+        assertEquals("[word99, word990, word991, word992, word993, word994, word995, word996, word997, word998, word999]",
+                narrowed.next(100).toString());
+        assertFalse(narrowed.hasMore());
+    }
+}
@@ -0,0 +1,64 @@
+package com.minibar.tests;
+
+import com.minibar.model.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SymbolTable class
+ */
+public final class SymbolTableTest {
+
+    /**
+     * Tests that tokens get dense IDs in the order they are interned, and keep them
+     */
+    @Test
+    void testIntern() {
+        SymbolTable symbols = new SymbolTable();
+        assertEquals(0, symbols.intern("this"));
+        assertEquals(1, symbols.intern("pizza"));
+        assertEquals(0, symbols.intern(new String("this")));
+        assertEquals(2, symbols.size());
+        assertEquals("pizza", symbols.token(1));
+        assertEquals(-1, symbols.lookup("wine"));
+        assertEquals(2, symbols.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> symbols.token(2));
+    }
+
+    /**
+     * Tests that tokens found in a sentence are the same as the tokens interned on their own
+     */
+    @Test
+    void testRegions() {
+        SymbolTable symbols = new SymbolTable();
+        StringBuilder sentence = new StringBuilder("this pizza is warm");
+        int pizza = symbols.intern(sentence, 5, 10);
+        assertEquals(pizza, symbols.intern("pizza"));
+        assertEquals(pizza, symbols.lookup(sentence, 5, 10));
+        assertEquals(-1, symbols.lookup(sentence, 5, 9));     //"pizz"
+        assertSame(symbols.token(pizza), symbols.token(symbols.intern(sentence, 5, 10)));
+    }
+
+    /**
+     * Tests that the table keeps every token as it grows
+     */
+    @Test
+    void testGrowth() {
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 10_000; i++) assertEquals(i, symbols.intern("word" + i));
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, symbols.lookup("word" + i));
+            assertEquals("word" + i, symbols.token(i));
+        }
+    }
+
+    /**
+     * Tests that the predictions of a grammar share its table
+     */
+    @Test
+    void testPerGrammar() {
+        assertSame(SymbolTable.of("SymbolTableTestA"), SymbolTable.of("SymbolTableTestA"));
+        assertNotSame(SymbolTable.of("SymbolTableTestA"), SymbolTable.of("SymbolTableTestB"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.minibar.tests;
+
+import com.minibar.cli.LatencyHistogram;
+import com.minibar.cli.TraceReplayer;
+import com.minibar.model.KeystrokeTrace;
+import com.minibar.model.KeystrokeTrace.Keystroke;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TraceReplayer class
+ * Uses grammars/Foods.pgf to test
+ */
+public final class TraceReplayerTest {
+
+    /**
+     * Tests that every keystroke of every session is measured
+     */
+    @Test
+    void testRun() throws IOException {
+        List<Keystroke> trace = new ArrayList<>();
+        String sentence = "this pizza is warm";
+        for (int i = 1; i <= sentence.length(); i++) {
+            trace.add(new Keystroke(i * 1000L, 1, KeystrokeTrace.Type.KEY, "grammars/Foods.pgf", "FoodsEng", "All",
+                    "Comment", sentence.substring(0, i)));
+        }
+        trace.add(new Keystroke(20_000, 1, KeystrokeTrace.Type.ENTER, "grammars/Foods.pgf", "FoodsEng", "All", "Comment", sentence));
+        TraceReplayer replayer = new TraceReplayer(Collections.singletonList(trace), 3, 0);
+        Map<String, LatencyHistogram> latencies = replayer.run();
+        assertEquals(3L * sentence.length(), latencies.get(TraceReplayer.PREDICT).getCount());
+        assertEquals(3, latencies.get(TraceReplayer.PARSE).getCount());
+        assertEquals(3, latencies.get(TraceReplayer.TRANSLATE).getCount());     //The sentence is complete
+        assertTrue(TraceReplayer.report(latencies).contains("predict"));
+    }
+}
@@ -1,5 +1,6 @@
 package com.minibar.tests;
 
+import com.minibar.model.Analysis;
 import com.minibar.model.Sentence;
 import com.minibar.model.Translation;
 import org.grammaticalframework.pgf.PGF;
@@ -143,6 +144,25 @@ public final class TranslationTest {
         }
     }
 
+    /**
+     * Tests that one analysis gives the same translations as parsing the sentence for each translation
+     */
+    @Test
+    void testAnalyze() {
+        try {
+            PGF grammar = PGF.readPGF("grammars/Foods.pgf");
+            Translation translation = new Translation(grammar);
+            Sentence sentence = new Sentence("those boring cheeses are warm");
+            Analysis analysis = translation.analyze(sentence, "FoodsEng", grammar.getStartCat());
+            assertTrue(analysis.isComplete());
+            assertEquals(translation.translateToAllLanguages(sentence, "FoodsEng", grammar.getStartCat()), translation.translateToAllLanguages(analysis));
+            assertEquals("הגבינות המשעממות ההן חמות", translation.translate(analysis, "FoodsHeb").get("FoodsHeb"));
+            assertFalse(translation.analyze(new Sentence("those boring cheeses are war"), "FoodsEng", grammar.getStartCat()).isComplete());
+        } catch (FileNotFoundException e) {
+            fail("File not found");
+        }
+    }
+
     /**
      * Tests the toString() method
      */